@@ -0,0 +1,194 @@
+package com.batch.config.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import feign.Client;
+import feign.Feign;
+import feign.Logger;
+import feign.RequestLine;
+import feign.hc5.ApacheHttp5Client;
+import feign.http2client.Http2Client;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tracking calls through Feign against a local stub carrier, by HTTP client and logging setup.
+ * Run with -prof gc to compare the allocations per call. Client and stub server share the CPUs: compare
+ * the call times only when their error margins do not overlap, on a machine with spare cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+// Without TCP_NODELAY the stub server response waits on delayed ACKs and every call takes ~40 ms
+@Fork(value = 3, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class FeignClientBenchmark {
+
+    @Param({"URL_CONNECTION", "HC5", "HC5_GZIP", "HTTP2"})
+    private HttpClientType clientType;
+
+    @Param({"NONE", "FULL", "SAMPLED"})
+    private LoggingMode loggingMode;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private CloseableHttpClient httpClient;
+    private TrackingApi trackingApi;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] payload = trackingPayload().getBytes(StandardCharsets.UTF_8);
+        byte[] gzippedPayload = gzip(payload);
+
+        serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/tracking", exchange -> respond(exchange, payload, gzippedPayload));
+        server.start();
+
+        trackingApi = Feign.builder()
+                .client(client())
+                .logger(new SampledFeignLogger(TrackingApi.class, loggingMode == LoggingMode.SAMPLED ? 0.01 : 1))
+                .logLevel(loggingMode == LoggingMode.NONE ? Logger.Level.NONE : Logger.Level.FULL)
+                .target(TrackingApi.class, "http://localhost:" + server.getAddress().getPort());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public String getTracking() {
+        return trackingApi.getTracking("TN-" + (next.incrementAndGet() & 1023));
+    }
+
+    private Client client() {
+        return switch (clientType) {
+            case URL_CONNECTION -> new Client.Default(null, null);
+            case HC5, HC5_GZIP -> {
+                // Same pool settings as the spring.cloud.openfeign.httpclient properties
+                HttpClientBuilder builder = HttpClients.custom()
+                        .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                                .setMaxConnTotal(200)
+                                .setMaxConnPerRoute(10)
+                                .build());
+                if (clientType == HttpClientType.HC5) {
+                    builder.disableContentCompression();
+                }
+                httpClient = builder.build();
+                yield new ApacheHttp5Client(httpClient);
+            }
+            case HTTP2 -> new Http2Client();
+        };
+    }
+
+    private static void respond(HttpExchange exchange, byte[] payload, byte[] gzippedPayload) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] response = payload;
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            response = gzippedPayload;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    /**
+     * A tracking response with a typical history of 20 events, about 3 KB.
+     */
+    private static String trackingPayload() {
+        return IntStream.range(0, 20)
+                .mapToObj(i -> "{\"label\":\"Colis en cours d'acheminement vers le site de distribution " + i
+                        + "\",\"eventType\":\"SHIPMENT_IN_PROGRESS\",\"date\":\"2024-06-" + (10 + i) + "T08:30:00\"}")
+                .collect(Collectors.joining(",", "{\"trackingNumber\":\"TN-1\",\"events\":[", "]}"));
+    }
+
+    private static byte[] gzip(byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    interface TrackingApi {
+
+        @RequestLine("GET /tracking/{trackingNumber}")
+        String getTracking(@feign.Param("trackingNumber") String trackingNumber);
+    }
+
+    public enum HttpClientType {
+        /**
+         * Feign default client, HttpURLConnection
+         */
+        URL_CONNECTION,
+        /**
+         * Pooled Apache HttpClient 5 without compression
+         */
+        HC5,
+        /**
+         * Pooled Apache HttpClient 5 negotiating gzip, as configured in the application
+         */
+        HC5_GZIP,
+        /**
+         * java.net.http client negotiating HTTP/2
+         */
+        HTTP2
+    }
+
+    public enum LoggingMode {
+        NONE,
+        /**
+         * Headers and bodies of every call, as with Logger.Level.FULL and debug enabled
+         */
+        FULL,
+        /**
+         * Headers and bodies of 1% of the calls
+         */
+        SAMPLED
+    }
+}
@@ -0,0 +1,118 @@
+package com.batch.domain.model;
+
+import com.batch.domain.enumeration.CarrierOption;
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.enumeration.Gender;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shipment to Mongo document conversion and back, with the converter setup Spring Boot uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShipmentMappingBenchmark {
+
+    private MappingMongoConverter converter;
+    private Shipment shipment;
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        shipment = shipment();
+        document = new Document();
+        converter.write(shipment, document);
+    }
+
+    @Benchmark
+    public Document write() {
+        Document target = new Document();
+        converter.write(shipment, target);
+        return target;
+    }
+
+    @Benchmark
+    public Shipment read() {
+        return converter.read(Shipment.class, document);
+    }
+
+    private static Shipment shipment() {
+        LocalDateTime now = LocalDateTime.now();
+        Shipment.Address address = Shipment.Address.builder()
+                .name("Jane Doe")
+                .company("Platana")
+                .street1("1 rue de la Paix")
+                .city("Paris")
+                .state("")
+                .zip("75002")
+                .country("FR")
+                .phone("+33100000000")
+                .email("jane.doe@example.com")
+                .gender(Gender.MS)
+                .build();
+        Shipment.Amount amount = Shipment.Amount.builder()
+                .value(new BigDecimal("129.90"))
+                .currencyCode(Currency.getInstance("EUR"))
+                .build();
+        return Shipment.builder()
+                .id("65f1c0ffee0000000000abcd")
+                .reference("REF-1")
+                .externalReference("EXT-1")
+                .toAddress(address)
+                .fromAddress(address.toBuilder().name("Warehouse").build())
+                .parcels(List.of(
+                        Shipment.Parcel.builder().purchasePrice(amount).code("P1").build(),
+                        Shipment.Parcel.builder().purchasePrice(amount).code("P2").build()))
+                .contentDescription("Electronics")
+                .carrierName("CHRONOPOST")
+                .carrierService("13H")
+                .carrierID("CHR-1")
+                .carrierOptions(List.of(CarrierOption.DANGER))
+                .insurance(amount)
+                .trackingNumber("XY123456789FR")
+                .reservationNumber("RES-1")
+                .trackingUrl("https://tracking.example.com/XY123456789FR")
+                .labelUrl("https://labels.example.com/XY123456789FR.pdf")
+                .creationDate(now.minusDays(2))
+                .lastUpdateDate(now.minusHours(2))
+                .lastEventType(EventType.SHIPMENT_IN_PROGRESS.name())
+                .processingInProgress(false)
+                .retryCount(0)
+                .nextCheckDate(now.plusHours(2))
+                .businessContext(Map.of("orderId", "ORD-1", "warehouse", "WH-PARIS"))
+                .build();
+    }
+}
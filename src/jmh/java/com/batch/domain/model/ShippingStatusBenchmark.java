@@ -0,0 +1,69 @@
+package com.batch.domain.model;
+
+import com.batch.domain.enumeration.EventType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest event selection over tracking histories of growing size, events in carrier (unsorted) order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShippingStatusBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    private int eventCount;
+
+    private ShippingStatus status;
+
+    @Setup
+    public void setUp() {
+        EventType[] eventTypes = EventType.values();
+        LocalDateTime start = LocalDateTime.now().minusDays(30);
+        List<ShippingStatus.ShippingEvent> events = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            events.add(ShippingStatus.ShippingEvent.builder()
+                    .label("Event " + i)
+                    .eventType(eventTypes[i % eventTypes.length])
+                    .date(start.plusMinutes(i * 17L))
+                    .build());
+        }
+        Collections.shuffle(events, new Random(42));
+        status = ShippingStatus.builder().trackingNumber("TN").events(events).build();
+    }
+
+    @Benchmark
+    public Optional<ShippingStatus.ShippingEvent> latestEvent() {
+        return status.getLatestEvent();
+    }
+
+    /**
+     * The selection as implemented in the job before getLatestEvent.
+     */
+    @Benchmark
+    public Optional<ShippingStatus.ShippingEvent> streamMaxLatestEvent() {
+        return status.getEvents().stream()
+                .max((e1, e2) -> e1.getDate().compareTo(e2.getDate()));
+    }
+}
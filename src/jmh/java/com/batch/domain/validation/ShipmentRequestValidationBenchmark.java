@@ -0,0 +1,146 @@
+package com.batch.domain.validation;
+
+import com.batch.api.dto.ShipmentRequest;
+import com.batch.domain.enumeration.ShipmentRequestViolation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of a bulk import of 1M synthetic shipment requests, about 1 in 10 invalid: the country lookup of
+ * the original validation, a set computed once, and the validator. Scores are per request, run with -prof gc to
+ * compare the allocations per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ShipmentRequestValidationBenchmark.REQUEST_COUNT)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ShipmentRequestValidationBenchmark {
+
+    static final int REQUEST_COUNT = 1_000_000;
+
+    private static final Set<String> ISO_COUNTRIES = Locale.getISOCountries(Locale.IsoCountryCode.PART1_ALPHA2);
+
+    private ShipmentRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> validCountries = new ArrayList<>(ISO_COUNTRIES);
+        String[] invalidCountries = {"XX", "fr", "FRA", "", null};
+
+        // Addresses shared between requests, as senders are in a bulk import
+        ShipmentRequest.Address[] addresses = new ShipmentRequest.Address[4096];
+        for (int i = 0; i < addresses.length; i++) {
+            String country = i % 20 == 0
+                    ? invalidCountries[random.nextInt(invalidCountries.length)]
+                    : validCountries.get(random.nextInt(validCountries.size()));
+            addresses[i] = ShipmentRequest.Address.builder()
+                    .name("Name " + i)
+                    .street1(i + " rue de la Paix")
+                    .city("Paris")
+                    .zip("75002")
+                    .country(country)
+                    .build();
+        }
+
+        requests = new ShipmentRequest[REQUEST_COUNT];
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            boolean missingAddress = random.nextInt(100) == 0;
+            requests[i] = ShipmentRequest.builder()
+                    .reference("REF-" + i)
+                    .fromAddress(missingAddress ? null : addresses[random.nextInt(addresses.length)])
+                    .toAddress(addresses[random.nextInt(addresses.length)])
+                    .build();
+        }
+    }
+
+    /**
+     * The country lookup of the original validation, sender country included: the ISO codes set of the JDK
+     * looked up per check.
+     */
+    @Benchmark
+    public int originalCountryLookup() {
+        int invalid = 0;
+        for (ShipmentRequest request : requests) {
+            if (firstError(request, country ->
+                    country == null || country.isBlank()
+                            || !Locale.getISOCountries(Locale.IsoCountryCode.PART1_ALPHA2).contains(country)) != null) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    @Benchmark
+    public int precomputedCountrySet() {
+        int invalid = 0;
+        for (ShipmentRequest request : requests) {
+            if (firstError(request, country -> country == null || !ISO_COUNTRIES.contains(country)) != null) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Every violation of every request.
+     */
+    @Benchmark
+    public int validator() {
+        int invalid = 0;
+        for (ShipmentRequest request : requests) {
+            if (ShipmentRequestValidator.validate(request) != 0) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    @Benchmark
+    public String validatorErrorCodes() {
+        String last = null;
+        for (ShipmentRequest request : requests) {
+            last = ShipmentRequestViolation.errorCode(ShipmentRequestValidator.validate(request));
+        }
+        return last;
+    }
+
+    private static String firstError(ShipmentRequest request, InvalidCountry invalidCountry) {
+        if (request.getFromAddress() == null) {
+            return "FROM_ADDRESS";
+        }
+        if (request.getToAddress() == null) {
+            return "TO_ADDRESS";
+        }
+        if (invalidCountry.test(request.getFromAddress().getCountry())
+                || invalidCountry.test(request.getToAddress().getCountry())) {
+            return "COUNTRY";
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface InvalidCountry {
+        boolean test(String country);
+    }
+}
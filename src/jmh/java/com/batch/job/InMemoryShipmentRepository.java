@@ -0,0 +1,155 @@
+package com.batch.job;
+
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingStatus;
+import com.batch.repository.BulkUpdateResult;
+import com.batch.repository.DueShipmentCursor;
+import com.batch.repository.ReactiveShipmentRepository;
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentStateUpdate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Just enough of {@link ShipmentRepository} for the status update job to run without Mongo.
+ * The {@link ReactiveShipmentRepository} view answers from the same store when subscribed.
+ * Any other repository method throws.
+ */
+final class InMemoryShipmentRepository implements InvocationHandler {
+
+    private static final int EVENT_HISTORY_SIZE = 50;
+    private static final Comparator<Shipment> DUE_ORDER = Comparator
+            .comparing(Shipment::getNextCheckDate)
+            .thenComparing(Shipment::getId);
+
+    private final Map<String, Shipment> shipmentsById = new ConcurrentHashMap<>();
+    private volatile List<Shipment> dueOrder = List.of();
+
+    static ShipmentRepository create(InMemoryShipmentRepository store) {
+        return (ShipmentRepository) Proxy.newProxyInstance(
+                ShipmentRepository.class.getClassLoader(), new Class<?>[]{ShipmentRepository.class}, store);
+    }
+
+    static ReactiveShipmentRepository createReactive(InMemoryShipmentRepository store) {
+        return (ReactiveShipmentRepository) Proxy.newProxyInstance(
+                ReactiveShipmentRepository.class.getClassLoader(), new Class<?>[]{ReactiveShipmentRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getReturnType() == Flux.class) {
+                        return Flux.defer(() -> Flux.fromIterable((List<?>) store.invoke(proxy, method, args)));
+                    }
+                    if (method.getReturnType() == Mono.class) {
+                        return Mono.fromSupplier(() -> store.invoke(proxy, method, args));
+                    }
+                    return store.invoke(proxy, method, args);
+                });
+    }
+
+    void reset(List<Shipment> shipments) {
+        shipmentsById.clear();
+        shipments.forEach(shipment -> shipmentsById.put(shipment.getId(), shipment));
+        dueOrder = shipments.stream().sorted(DUE_ORDER).toList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "releaseExpiredLeases" -> 0L;
+            case "countShipmentsForStatusUpdate" -> countShipmentsForStatusUpdate((LocalDateTime) args[0], (List<String>) args[1]);
+            case "findDueShipmentsAfter" -> findDueShipmentsAfter((DueShipmentCursor) args[0],
+                    (LocalDateTime) args[1], (List<String>) args[2], (int) args[3]);
+            case "claimShipments" -> claimShipments((Collection<String>) args[0],
+                    (LocalDateTime) args[1], (String) args[2], (LocalDateTime) args[3]);
+            case "updateShipmentStates" -> updateShipmentStates((List<ShipmentStateUpdate>) args[0]);
+            case "toString" -> InMemoryShipmentRepository.class.getSimpleName();
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(method.getName());
+        };
+    }
+
+    private List<DueShipmentCursor> findDueShipmentsAfter(
+            DueShipmentCursor cursor, LocalDateTime nextCheckDateBefore, List<String> excludedStatuses, int limit) {
+        List<DueShipmentCursor> dueShipments = new ArrayList<>(limit);
+        for (Shipment shipment : dueOrder) {
+            if (dueShipments.size() == limit) {
+                break;
+            }
+            DueShipmentCursor key = new DueShipmentCursor(shipment.getNextCheckDate(), shipment.getId());
+            if (isDue(shipment, nextCheckDateBefore)
+                    && !excludedStatuses.contains(shipment.getLastEventType())
+                    && (cursor == null || isAfter(key, cursor))) {
+                dueShipments.add(key);
+            }
+        }
+        return dueShipments;
+    }
+
+    private long countShipmentsForStatusUpdate(LocalDateTime nextCheckDateBefore, List<String> excludedStatuses) {
+        return dueOrder.stream()
+                .filter(shipment -> isDue(shipment, nextCheckDateBefore))
+                .filter(shipment -> !excludedStatuses.contains(shipment.getLastEventType()))
+                .count();
+    }
+
+    private List<Shipment> claimShipments(
+            Collection<String> shipmentIds, LocalDateTime nextCheckDateBefore, String leaseOwner, LocalDateTime leaseExpiresAt) {
+        List<Shipment> claimed = new ArrayList<>(shipmentIds.size());
+        for (String id : shipmentIds) {
+            Shipment shipment = shipmentsById.get(id);
+            if (shipment != null && isDue(shipment, nextCheckDateBefore)) {
+                shipment.setProcessingInProgress(true);
+                shipment.setLeaseOwner(leaseOwner);
+                shipment.setLeaseExpiresAt(leaseExpiresAt);
+                // Mongo hands out fresh documents, not the stored ones
+                claimed.add(shipment.toBuilder().build());
+            }
+        }
+        return claimed;
+    }
+
+    private BulkUpdateResult updateShipmentStates(List<ShipmentStateUpdate> updates) {
+        for (ShipmentStateUpdate update : updates) {
+            Shipment shipment = shipmentsById.get(update.id());
+            if (update.statusChanged()) {
+                shipment.setLastEventType(update.lastEventType());
+                shipment.setLastEventDate(update.lastEventDate());
+                shipment.setLastUpdateDate(update.lastUpdateDate());
+            }
+            shipment.setNextCheckDate(update.nextCheckDate());
+            shipment.setProcessingPriority(update.processingPriority());
+            shipment.setRetryCount(update.retryCount());
+            shipment.setProcessingInProgress(update.processingInProgress());
+            List<ShippingStatus.ShippingEvent> eventHistory = shipment.getEventHistory();
+            eventHistory.addAll(update.newEvents());
+            if (eventHistory.size() > EVENT_HISTORY_SIZE) {
+                eventHistory.subList(0, eventHistory.size() - EVENT_HISTORY_SIZE).clear();
+            }
+            shipment.setLeaseOwner(null);
+            shipment.setLeaseExpiresAt(null);
+        }
+        return new BulkUpdateResult(updates.size(), updates.size(), 0);
+    }
+
+    private static boolean isDue(Shipment shipment, LocalDateTime nextCheckDateBefore) {
+        return !Boolean.TRUE.equals(shipment.getProcessingInProgress())
+                && shipment.getNextCheckDate() != null
+                && !shipment.getNextCheckDate().isAfter(nextCheckDateBefore);
+    }
+
+    private static boolean isAfter(DueShipmentCursor key, DueShipmentCursor cursor) {
+        int byDate = key.nextCheckDate().compareTo(cursor.nextCheckDate());
+        return byDate > 0 || byDate == 0 && key.id().compareTo(cursor.id()) > 0;
+    }
+}
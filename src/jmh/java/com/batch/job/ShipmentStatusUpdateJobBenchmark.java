@@ -0,0 +1,185 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.repository.ReactiveShipmentRepository;
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentStatusRunRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierTrackingService;
+import com.batch.service.carrier.CarrierTrackingServiceFactory;
+import com.batch.service.carrier.NonBlockingStubCarrierTrackingService;
+import com.batch.service.carrier.ShippingStatusCache;
+import com.batch.service.carrier.ShippingStatusCacheProperties;
+import com.batch.service.carrier.StubCarrierTrackingService;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * End-to-end run of the status update job over an in-memory repository and stub carriers.
+ * REACTIVE runs {@link ReactiveShipmentStatusUpdateJob} against carriers answering on a timer,
+ * side by side with the blocking modes. Scores are shipments per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ShipmentStatusUpdateJobBenchmark.SHIPMENT_COUNT)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShipmentStatusUpdateJobBenchmark {
+
+    static final int SHIPMENT_COUNT = 1_000;
+    private static final String[] CARRIER_NAMES = {"CHRONOPOST", "COLISSIMO", "DHL", "UPS"};
+
+    @Param({"SEQUENTIAL", "PARALLEL", "REACTIVE"})
+    private ShipmentStatusUpdateJob.ExecutionMode executionMode;
+
+    @Param({"0", "2"})
+    private int carrierLatencyMillis;
+
+    @Param({"0.0", "0.1"})
+    private double carrierErrorRate;
+
+    @Param({"1", "50"})
+    private int carrierBatchSize;
+
+    private final InMemoryShipmentRepository store = new InMemoryShipmentRepository();
+    private ShipmentStatusUpdateJob job;
+    private ReactiveShipmentStatusUpdateJob reactiveJob;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (executionMode == ShipmentStatusUpdateJob.ExecutionMode.REACTIVE) {
+            List<CarrierTrackingService> carriers = Arrays.stream(CARRIER_NAMES)
+                    .map(carrierName -> (CarrierTrackingService) new NonBlockingStubCarrierTrackingService(carrierName,
+                            Duration.ofMillis(carrierLatencyMillis), carrierErrorRate, carrierBatchSize))
+                    .toList();
+            reactiveJob = newReactiveJob(InMemoryShipmentRepository.createReactive(store), carriers);
+        } else {
+            List<CarrierTrackingService> carriers = Arrays.stream(CARRIER_NAMES)
+                    .map(carrierName -> (CarrierTrackingService) new StubCarrierTrackingService(carrierName,
+                            Duration.ofMillis(carrierLatencyMillis), carrierErrorRate, carrierBatchSize))
+                    .toList();
+            job = newJob(InMemoryShipmentRepository.create(store), carriers, executionMode);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void resetShipments() {
+        LocalDateTime now = LocalDateTime.now();
+        store.reset(IntStream.range(0, SHIPMENT_COUNT)
+                .mapToObj(i -> Shipment.builder()
+                        .id(String.format("%024x", i))
+                        .trackingNumber("TN" + i)
+                        .carrierName(CARRIER_NAMES[i % CARRIER_NAMES.length])
+                        .lastEventType(EventType.SHIPMENT_HANDLED.name())
+                        .processingInProgress(false)
+                        .retryCount(0)
+                        .nextCheckDate(now.minusMinutes(i % 60 + 1))
+                        .build())
+                .toList());
+    }
+
+    @Benchmark
+    public ShipmentStatusRunResult processShipmentStatusUpdates() {
+        return executionMode == ShipmentStatusUpdateJob.ExecutionMode.REACTIVE
+                ? reactiveJob.processShipmentStatusUpdates()
+                : job.processShipmentStatusUpdates();
+    }
+
+    static ShipmentStatusUpdateJob newJob(
+            ShipmentRepository shipmentRepository,
+            List<CarrierTrackingService> carriers,
+            ShipmentStatusUpdateJob.ExecutionMode executionMode) {
+        ShipmentStatusMetrics metrics = new ShipmentStatusMetrics(new SimpleMeterRegistry());
+        ShipmentStatusUpdateJob job = new ShipmentStatusUpdateJob(
+                shipmentRepository,
+                newTransitions(carriers, metrics),
+                newCallGuard(),
+                newDisabledCache(),
+                metrics,
+                newDisabledLedger());
+        ReflectionTestUtils.setField(job, "executionMode", executionMode);
+        ReflectionTestUtils.setField(job, "fetchMode", ShipmentStatusUpdateJob.FetchMode.KEYSET);
+        ReflectionTestUtils.setField(job, "pageSize", 100);
+        ReflectionTestUtils.setField(job, "leaseDurationMinutes", 10);
+        return job;
+    }
+
+    static ReactiveShipmentStatusUpdateJob newReactiveJob(
+            ReactiveShipmentRepository shipmentRepository,
+            List<CarrierTrackingService> carriers) {
+        ShipmentStatusMetrics metrics = new ShipmentStatusMetrics(new SimpleMeterRegistry());
+        ReactiveShipmentStatusUpdateJob job = new ReactiveShipmentStatusUpdateJob(
+                shipmentRepository,
+                newTransitions(carriers, metrics),
+                newCallGuard(),
+                newDisabledCache(),
+                metrics,
+                newDisabledLedger());
+        ReflectionTestUtils.setField(job, "fetchMode", ShipmentStatusUpdateJob.FetchMode.KEYSET);
+        ReflectionTestUtils.setField(job, "pageSize", 100);
+        ReflectionTestUtils.setField(job, "leaseDurationMinutes", 10);
+        ReflectionTestUtils.setField(job, "writeBatchSize", 500);
+        ReflectionTestUtils.setField(job, "writeMaxDelay", Duration.ofSeconds(1));
+        return job;
+    }
+
+    private static ShipmentStatusTransitions newTransitions(List<CarrierTrackingService> carriers, ShipmentStatusMetrics metrics) {
+        ShipmentStatusTransitions transitions = new ShipmentStatusTransitions(
+                new CarrierTrackingServiceFactory(carriers), metrics, new FixedNextCheckPolicy(Duration.ofHours(2)));
+        ReflectionTestUtils.setField(transitions, "maxRetry", 3);
+        ReflectionTestUtils.setField(transitions, "retryDelayHours", 2);
+        ReflectionTestUtils.setField(transitions, "carrierUnavailableDelay", Duration.ofMinutes(5));
+        return transitions;
+    }
+
+    private static CarrierCallGuard newCallGuard() {
+        return new CarrierCallGuard(
+                CircuitBreakerRegistry.ofDefaults(),
+                RateLimiterRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom()
+                        .maxConcurrentCalls(10)
+                        .maxWaitDuration(Duration.ofMinutes(1))
+                        .build()));
+    }
+
+    private static ShipmentStatusRunLedger newDisabledLedger() {
+        // Not enabled, the run ledger is not written: one Mongo write per page, not what is measured here
+        return new ShipmentStatusRunLedger(mock(ShipmentStatusRunRepository.class));
+    }
+
+    private static ShippingStatusCache newDisabledCache() {
+        // Every invocation polls the same tracking numbers, the cache would answer instead of the carriers
+        ShippingStatusCacheProperties cacheProperties = new ShippingStatusCacheProperties();
+        cacheProperties.setEnabled(false);
+        return new ShippingStatusCache(cacheProperties, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,98 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.model.ShippingStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Carrier lookup cost as the number of registered carriers grows, registry against the former stream scan.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarrierTrackingServiceFactoryBenchmark {
+
+    @Param({"1", "8", "64"})
+    private int carrierCount;
+
+    private List<CarrierTrackingService> trackingServices;
+    private CarrierTrackingServiceFactory factory;
+    private String[] carrierNames;
+    private String[] lowerCaseCarrierNames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        trackingServices = IntStream.range(0, carrierCount)
+                .mapToObj(i -> (CarrierTrackingService) new NamedCarrierTrackingService("CARRIER_" + i))
+                .toList();
+        factory = new CarrierTrackingServiceFactory(trackingServices);
+        carrierNames = trackingServices.stream().map(CarrierTrackingService::getCarrierName).toArray(String[]::new);
+        lowerCaseCarrierNames = IntStream.range(0, carrierCount)
+                .mapToObj(i -> carrierNames[i].toLowerCase(Locale.ROOT))
+                .toArray(String[]::new);
+    }
+
+    @Benchmark
+    public CarrierTrackingService registryLookup() {
+        return factory.findTrackingService(carrierNames[nextIndex()]);
+    }
+
+    @Benchmark
+    public CarrierTrackingService registryLookupNormalized() {
+        return factory.findTrackingService(lowerCaseCarrierNames[nextIndex()]);
+    }
+
+    @Benchmark
+    public Optional<CarrierTrackingService> registryLookupOptional() {
+        return factory.getTrackingService(carrierNames[nextIndex()]);
+    }
+
+    /**
+     * The lookup as implemented before the registry.
+     */
+    @Benchmark
+    public Optional<CarrierTrackingService> streamScanLookup() {
+        String carrierName = carrierNames[nextIndex()];
+        return trackingServices.stream()
+                .filter(service -> carrierName.equalsIgnoreCase(service.getCarrierName()))
+                .findFirst();
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == carrierCount ? 0 : index + 1;
+        return index;
+    }
+
+    private record NamedCarrierTrackingService(String carrierName) implements CarrierTrackingService {
+
+        @Override
+        public String getCarrierName() {
+            return carrierName;
+        }
+
+        @Override
+        public ShippingStatus getShippingStatus(String trackingNumber) {
+            return ShippingStatus.builder().trackingNumber(trackingNumber).build();
+        }
+    }
+}
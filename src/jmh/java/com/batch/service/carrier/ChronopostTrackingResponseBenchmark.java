@@ -0,0 +1,148 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.model.ShippingStatus;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracking response parsing from the fixtures of src/test/resources/chronopost, JAXB object graph then converted
+ * as the generated client does, against the streaming parser. Run with -prof gc to compare the allocations per response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChronopostTrackingResponseBenchmark {
+
+    @Param({"trackSkybillV2-in-transit.xml", "trackSkybillV2-delivered.xml", "trackSkybillV2-multi-parcel.xml"})
+    private String fixture;
+
+    private byte[] response;
+    private LocalDateTime lastKnownEventDate;
+    private JAXBContext jaxbContext;
+    private XMLInputFactory inputFactory;
+    private ChronopostTrackingResponseParser parser;
+
+    @Setup
+    public void setUp() throws IOException, JAXBException {
+        try (InputStream in = getClass().getResourceAsStream("/chronopost/" + fixture)) {
+            response = in.readAllBytes();
+        }
+        // Made once per application, as CXF caches it per service
+        jaxbContext = JAXBContext.newInstance(Result.class);
+        inputFactory = XMLInputFactory.newFactory();
+        parser = new ChronopostTrackingResponseParser();
+        // Polled again after the latest event: nothing new
+        lastKnownEventDate = parser.parse(new ByteArrayInputStream(response), "TN", null)
+                .getLatestEvent().orElseThrow().getDate();
+    }
+
+    /**
+     * The response unmarshalled into the generated classes, every event converted then the latest one picked.
+     */
+    @Benchmark
+    public Optional<ShippingStatus.ShippingEvent> jaxbObjectGraph() throws JAXBException, XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(response));
+        while (!(reader.isStartElement() && "return".equals(reader.getLocalName()))) {
+            reader.next();
+        }
+        Result result = jaxbContext.createUnmarshaller().unmarshal(reader, Result.class).getValue();
+        reader.close();
+
+        List<ShippingStatus.ShippingEvent> events = new ArrayList<>();
+        for (EventInfoComp parcel : result.listEventInfoComp) {
+            for (Event event : parcel.events) {
+                events.add(ShippingStatus.ShippingEvent.builder()
+                        .label(event.eventLabel)
+                        .eventType(ChronopostTrackingResponseParser.eventType(event.code))
+                        .date(event.eventDate.toGregorianCalendar().toZonedDateTime()
+                                .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime())
+                        .build());
+            }
+        }
+        return ShippingStatus.builder().trackingNumber("TN").events(events).build().getLatestEvent();
+    }
+
+    @Benchmark
+    public Optional<ShippingStatus.ShippingEvent> streamingAllEvents() {
+        return parser.parse(new ByteArrayInputStream(response), "TN", null).getLatestEvent();
+    }
+
+    @Benchmark
+    public Optional<ShippingStatus.ShippingEvent> streamingSinceLastKnownEvent() {
+        return parser.parse(new ByteArrayInputStream(response), "TN", lastKnownEventDate).getLatestEvent();
+    }
+
+    /**
+     * Shaped like the wsdl2java classes of resultTrackSkybillV2.
+     */
+    @XmlAccessorType(XmlAccessType.FIELD)
+    @XmlType(name = "resultTrackSkybillV2")
+    public static class Result {
+        private int errorCode;
+        private String errorMessage;
+        @XmlElement(nillable = true)
+        private List<EventInfoComp> listEventInfoComp = new ArrayList<>();
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    @XmlType(name = "eventInfoComp")
+    public static class EventInfoComp {
+        @XmlElement(nillable = true)
+        private List<Event> events = new ArrayList<>();
+        private String skybillNumber;
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    @XmlType(name = "event")
+    public static class Event {
+        private String code;
+        private XMLGregorianCalendar eventDate;
+        private String eventLabel;
+        private boolean highPriority;
+        @XmlElement(name = "NPC")
+        private String npc;
+        private String officeLabel;
+        private String zipCode;
+        @XmlElement(nillable = true)
+        private List<InfoComp> infoCompList = new ArrayList<>();
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    @XmlType(name = "infoComp")
+    public static class InfoComp {
+        private String name;
+        private String value;
+    }
+}
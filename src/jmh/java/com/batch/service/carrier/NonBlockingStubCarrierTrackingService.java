@@ -0,0 +1,27 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.model.ShippingStatus;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * {@link StubCarrierTrackingService} answering on a timer instead of a sleeping thread, like a carrier
+ * called through WebClient.
+ */
+public class NonBlockingStubCarrierTrackingService extends StubCarrierTrackingService implements ReactiveCarrierTrackingService {
+
+    public NonBlockingStubCarrierTrackingService(String carrierName, Duration latency, double errorRate, int maxBatchSize) {
+        super(carrierName, latency, errorRate, maxBatchSize);
+    }
+
+    @Override
+    public Mono<Map<String, ShippingStatus>> trackShippingStatuses(Collection<String> trackingNumbers) {
+        Duration latency = getLatency();
+        return latency.isZero()
+                ? Mono.fromSupplier(() -> answer(trackingNumbers))
+                : Mono.delay(latency).map(tick -> answer(trackingNumbers));
+    }
+}
@@ -0,0 +1,144 @@
+package com.batch.service.carrier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.jws.WebMethod;
+import javax.jws.WebParam;
+import javax.jws.WebResult;
+import javax.jws.WebService;
+import javax.jws.soap.SOAPBinding;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tracking calls through CXF against a local stub SOAP service, pooled port proxies created at startup against
+ * a port proxy created for each call, as a client built lazily per call or per batch would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without TCP_NODELAY the stub server response waits on delayed ACKs and every call takes ~40 ms
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class SoapPortPoolBenchmark {
+
+    private static final String NAMESPACE = "http://stub.carrier.batch.com/";
+
+    @Param({"4", "10"})
+    private int poolSize;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ChronopostSoapProperties properties;
+    private SoapPortPool<TrackingStub> pool;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] response = trackingResponse().getBytes(StandardCharsets.UTF_8);
+
+        serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/tracking", exchange -> respond(exchange, response));
+        server.start();
+
+        properties = new ChronopostSoapProperties();
+        properties.setPoolSize(poolSize);
+        properties.setTracking(new ChronopostSoapProperties.Port(
+                TrackingStub.class.getName(),
+                "http://localhost:" + server.getAddress().getPort() + "/tracking",
+                "classpath:wsdl/stub/TrackingStub.wsdl"));
+        pool = SoapPortPool.create("STUB", TrackingStub.class, properties.getTracking(), properties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public String pooledPort() {
+        String skybillNumber = nextSkybillNumber();
+        return pool.call(port -> port.trackSkybill(skybillNumber));
+    }
+
+    @Benchmark
+    public String portPerCall() {
+        try (SoapPortPool<TrackingStub> singlePort = newSinglePortPool()) {
+            String skybillNumber = nextSkybillNumber();
+            return singlePort.call(port -> port.trackSkybill(skybillNumber));
+        }
+    }
+
+    private SoapPortPool<TrackingStub> newSinglePortPool() {
+        ChronopostSoapProperties singlePortProperties = new ChronopostSoapProperties();
+        singlePortProperties.setPoolSize(1);
+        return SoapPortPool.create("STUB", TrackingStub.class, properties.getTracking(), singlePortProperties);
+    }
+
+    private String nextSkybillNumber() {
+        return "XY" + (next.incrementAndGet() & 1023) + "FR";
+    }
+
+    private static void respond(HttpExchange exchange, byte[] response) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/xml;charset=UTF-8");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    /**
+     * A tracking response with a typical history of 20 events, about 3 KB.
+     */
+    private static String trackingResponse() {
+        String events = IntStream.range(0, 20)
+                .mapToObj(i -> "2024-06-" + (10 + i) + "T08:30:00 Colis en cours d'acheminement vers le site de distribution " + i)
+                .collect(Collectors.joining(";"));
+        return "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                + "<ns:trackingEvents xmlns:ns=\"" + NAMESPACE + "\">" + events + "</ns:trackingEvents>"
+                + "</soap:Body></soap:Envelope>";
+    }
+
+    @WebService(name = "TrackingStub", targetNamespace = NAMESPACE)
+    @SOAPBinding(parameterStyle = SOAPBinding.ParameterStyle.BARE)
+    public interface TrackingStub {
+
+        @WebMethod
+        @WebResult(name = "trackingEvents", targetNamespace = NAMESPACE, partName = "trackingEvents")
+        String trackSkybill(@WebParam(name = "skybillNumber", targetNamespace = NAMESPACE, partName = "skybillNumber")
+                            String skybillNumber);
+    }
+}
@@ -0,0 +1,98 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.ShippingStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Carrier stand-in for benchmarks: answers after a fixed latency per request and fails a share of them.
+ */
+public class StubCarrierTrackingService implements CarrierTrackingService {
+
+    private final String carrierName;
+    private final Duration latency;
+    private final double errorRate;
+    private final int maxBatchSize;
+
+    public StubCarrierTrackingService(String carrierName, Duration latency, double errorRate, int maxBatchSize) {
+        this.carrierName = carrierName;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public String getCarrierName() {
+        return carrierName;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public ShippingStatus getShippingStatus(String trackingNumber) {
+        respond();
+        return answer(List.of(trackingNumber)).get(trackingNumber);
+    }
+
+    @Override
+    public Map<String, ShippingStatus> getShippingStatuses(Collection<String> trackingNumbers) {
+        respond();
+        return answer(trackingNumbers);
+    }
+
+    Duration getLatency() {
+        return latency;
+    }
+
+    /**
+     * The response once the latency elapsed, or the injected failure.
+     */
+    Map<String, ShippingStatus> answer(Collection<String> trackingNumbers) {
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            throw new IllegalStateException("Injected " + carrierName + " failure");
+        }
+        Map<String, ShippingStatus> statuses = new HashMap<>();
+        trackingNumbers.forEach(trackingNumber -> statuses.put(trackingNumber, status(trackingNumber)));
+        return statuses;
+    }
+
+    private void respond() {
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static ShippingStatus status(String trackingNumber) {
+        LocalDateTime now = LocalDateTime.now();
+        return ShippingStatus.builder()
+                .trackingNumber(trackingNumber)
+                .events(List.of(
+                        event(EventType.SHIPMENT_READY, now.minusDays(2)),
+                        event(EventType.SHIPMENT_HANDLED, now.minusDays(1)),
+                        event(EventType.SHIPMENT_IN_PROGRESS, now.minusHours(3))))
+                .build();
+    }
+
+    private static ShippingStatus.ShippingEvent event(EventType eventType, LocalDateTime date) {
+        return ShippingStatus.ShippingEvent.builder()
+                .eventType(eventType)
+                .label(eventType.name())
+                .date(date)
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.batch.api.controller;
+
+import com.batch.api.dto.BulkShipmentResult;
+import com.batch.api.dto.ShipmentRequest;
+import com.batch.domain.exception.DomainErrorCodes;
+import com.batch.domain.service.ShipmentCreationService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/shipments")
+@RequiredArgsConstructor
+public class ShipmentCreationController {
+
+    private final ShipmentCreationService shipmentCreationService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Create shipments from a JSON array or newline-delimited JSON, read one shipment request at a time as they are
+     * reserved, and stream back one newline-delimited result per shipment request as soon as it is known.
+     * A body unreadable from some point on ends the stream with a SHIPMENT_REQUEST_NOT_READABLE result, at the
+     * index of the first unread shipment request; the ones read before are still created.
+     */
+    @PostMapping(value = "/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BulkShipmentResult> createShipments(HttpServletRequest request) {
+        AtomicLong read = new AtomicLong();
+        AtomicReference<Throwable> readError = new AtomicReference<>();
+
+        // Read on demand off the request thread: the servlet input stream blocks
+        Flux<ShipmentRequest> shipmentRequests = Flux.using(
+                        () -> objectMapper.readerFor(ShipmentRequest.class).<ShipmentRequest>readValues(request.getInputStream()),
+                        iterator -> Flux.fromIterable(() -> iterator),
+                        ShipmentCreationController::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(shipmentRequest -> read.incrementAndGet())
+                // Shipments already read are still reserved and saved
+                .onErrorResume(e -> {
+                    readError.set(e);
+                    return Flux.empty();
+                });
+
+        return shipmentCreationService.createShipments(shipmentRequests)
+                .concatWith(Mono.fromSupplier(() -> unreadable(read.get(), readError.get())));
+    }
+
+    private static void closeQuietly(MappingIterator<ShipmentRequest> iterator) {
+        try {
+            iterator.close();
+        } catch (IOException e) {
+            log.debug("Error closing bulk shipment request body: {}", e.getMessage());
+        }
+    }
+
+    private static BulkShipmentResult unreadable(long index, Throwable readError) {
+        if (readError == null) {
+            return null;
+        }
+        log.warn("Bulk shipment creation stopped at shipment request {}: {}", index, readError.getMessage());
+        return BulkShipmentResult.builder()
+                .index(index)
+                .errorCode(DomainErrorCodes.SHIPMENT_REQUEST_NOT_READABLE)
+                .build();
+    }
+}
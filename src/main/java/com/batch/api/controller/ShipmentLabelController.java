@@ -0,0 +1,178 @@
+package com.batch.api.controller;
+
+import com.batch.domain.exception.DomainErrorCodes;
+import com.batch.domain.service.ShipmentLabelService;
+import com.batch.service.carrier.CarrierUnavailableException;
+import com.batch.service.label.ShipmentLabelStore;
+import com.batch.service.label.StoredLabel;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/shipments")
+@RequiredArgsConstructor
+public class ShipmentLabelController {
+
+    private final ShipmentLabelService shipmentLabelService;
+
+    @Value("${batch.shipment.label.merge-max-labels:100}")
+    private int mergeMaxLabels;
+
+    /**
+     * Get the label of a shipment. Its ETag is the digest of the label, If-None-Match and a single Range are
+     * honored. The label file is opened before the response is committed and transferred from its file channel,
+     * never held in heap. Not handed to the connector sendfile support: the connector would open the file by
+     * name once the response is committed, after the label may have been evicted.
+     */
+    @GetMapping("/{trackingNumber}/label")
+    public void getLabel(@PathVariable String trackingNumber, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        try (OpenLabel label = openLabel(trackingNumber,
+                stored -> new OpenLabel(stored, FileChannel.open(stored.path(), StandardOpenOption.READ)))) {
+            sendLabel(label, request, response);
+        }
+    }
+
+    private static void sendLabel(OpenLabel openLabel, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        StoredLabel label = openLabel.label();
+        String etag = "\"" + label.digest() + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long length = label.size();
+        long start = 0;
+        long end = length;
+        HttpRange range = range(request, etag);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length) + 1;
+            if (start >= end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+        response.setContentLengthLong(end - start);
+        if (!HttpMethod.HEAD.matches(request.getMethod())) {
+            transfer(openLabel.channel(), start, end, response);
+        }
+    }
+
+    /**
+     * Merge the labels of shipments into a single PDF print job, in the given order. Labels not stored yet are
+     * downloaded first, all of them are opened before the response is committed, then the print job is streamed
+     * without holding the labels in heap. At most batch.shipment.label.merge-max-labels labels are merged by a request.
+     */
+    @PostMapping(value = "/labels/merge", produces = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<StreamingResponseBody> mergeLabels(@RequestBody List<String> trackingNumbers) throws IOException {
+        if (trackingNumbers.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    DomainErrorCodes.UNABLE_TO_GET_SHIPMENT_LABEL_INVALID_TRACKING_NUMBER);
+        }
+        if (trackingNumbers.size() > mergeMaxLabels) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, DomainErrorCodes.TOO_MANY_SHIPMENT_LABELS);
+        }
+        List<RandomAccessRead> sources = new ArrayList<>(trackingNumbers.size());
+        try {
+            for (String trackingNumber : trackingNumbers) {
+                sources.add(openLabel(trackingNumber, ShipmentLabelService::openMergeSource));
+            }
+        } catch (IOException | RuntimeException e) {
+            sources.forEach(IOUtils::closeQuietly);
+            throw e;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline().filename("labels.pdf").build().toString())
+                .body(output -> shipmentLabelService.mergeLabels(sources, output));
+    }
+
+    private <T> T openLabel(String trackingNumber, ShipmentLabelService.LabelOpener<T> opener) throws IOException {
+        if (!ShipmentLabelStore.isValidTrackingNumber(trackingNumber)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    DomainErrorCodes.UNABLE_TO_GET_SHIPMENT_LABEL_INVALID_TRACKING_NUMBER);
+        }
+        try {
+            return shipmentLabelService.openLabel(trackingNumber, opener)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            DomainErrorCodes.NO_SHIPMENT_LABEL_FOR_THE_GIVEN_TRACKING_NUMBER));
+        } catch (CarrierUnavailableException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The single range to send, null to send the whole label: no range, an invalid one, multiple ones,
+     * or a range of another version of the label
+     */
+    @Nullable
+    private static HttpRange range(HttpServletRequest request, String etag) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader == null || (ifRange != null && !ifRange.equals(etag))) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void transfer(FileChannel channel, long start, long end, HttpServletResponse response)
+            throws IOException {
+        WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+        long position = start;
+        while (position < end) {
+            position += channel.transferTo(position, end - position, output);
+        }
+    }
+
+    /**
+     * A label with its file open, read even if the label is evicted meanwhile.
+     */
+    private record OpenLabel(StoredLabel label, FileChannel channel) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
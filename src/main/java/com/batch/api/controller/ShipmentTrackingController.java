@@ -0,0 +1,31 @@
+package com.batch.api.controller;
+
+import com.batch.domain.exception.DomainErrorCodes;
+import com.batch.domain.model.ShippingStatus;
+import com.batch.domain.service.ShippingStatusLookupService;
+import com.batch.service.carrier.CarrierUnavailableException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api/shipments")
+@RequiredArgsConstructor
+public class ShipmentTrackingController {
+
+    private final ShippingStatusLookupService shippingStatusLookupService;
+
+    @GetMapping("/{trackingNumber}/tracking")
+    public ShippingStatus getShippingStatus(@PathVariable String trackingNumber) {
+        try {
+            return shippingStatusLookupService.findShippingStatus(trackingNumber)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, DomainErrorCodes.TRACKING_NUMBER_NOT_FOUND));
+        } catch (CarrierUnavailableException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+        }
+    }
+}
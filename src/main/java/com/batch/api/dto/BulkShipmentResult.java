@@ -0,0 +1,32 @@
+package com.batch.api.dto;
+
+import com.batch.domain.enumeration.ShipmentRequestViolation;
+import com.batch.domain.model.ShippingReservationResult;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Outcome of one shipment of a bulk creation, streamed back as soon as it is known.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkShipmentResult {
+
+    // Position of the shipment request in the submitted array or stream, from 0
+    private long index;
+    private String reference;
+    // The reservation, set as soon as the carrier made it, even when the shipment could not be saved afterwards
+    private ShippingReservationResult reservation;
+    // One of DomainErrorCodes, null when the shipment was reserved and saved
+    private String errorCode;
+    // Every violation of the shipment request when it is not valid, errorCode being the first one
+    private Set<ShipmentRequestViolation> violations;
+}
@@ -1,19 +1,19 @@
 package com.batch.api.dto;
 
+import com.batch.domain.enumeration.CarrierOption;
+import com.batch.domain.enumeration.Gender;
+import com.batch.domain.enumeration.ShipmentRequestViolation;
+import com.batch.domain.model.OrganizationConfiguration;
+import com.batch.domain.validation.ShipmentRequestValidator;
 import com.fasterxml.jackson.annotation.JsonInclude;
-import fr.platana.shipment.domain.enumeration.CarrierOption;
-import fr.platana.shipment.domain.enumeration.Gender;
-import fr.platana.shipment.domain.model.OrganizationConfiguration;
 import lombok.*;
 import org.apache.commons.lang3.StringUtils;
 
 import java.math.BigDecimal;
 import java.util.*;
 
-import static fr.platana.shipment.domain.exception.DomainErrorCodes.*;
 import static org.apache.commons.lang3.ObjectUtils.isNotEmpty;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
-import static org.apache.commons.lang3.StringUtils.isBlank;
 
 @Data
 @AllArgsConstructor
@@ -78,11 +78,7 @@ public class ShipmentRequest {
         }
 
         public boolean hasInValidCountryCode() {
-            if (isBlank(country)) {
-                return true;
-            }
-            return !Locale.getISOCountries(Locale.IsoCountryCode.PART1_ALPHA2)
-                    .contains(country);
+            return !ShipmentRequestValidator.isValidCountryCode(country);
         }
 
         public void replaceWithOrganizationContact(OrganizationConfiguration.Contact organizationContact) {
@@ -135,19 +131,12 @@ public class ShipmentRequest {
         }
     }
 
+    /**
+     * @return The error code of the first violation of the request, null when it is valid
+     * @see ShipmentRequestValidator#validate(ShipmentRequest) for all of them at once
+     */
     public String validateShipmentContact() {
-        if (isNotEmpty(fromAddress)) {
-            return SHIPMENT_INFORMATION_FROM_ADDRESS_NOT_FOUND;
-        }
-
-        if (isNotEmpty(toAddress)) {
-            return SHIPMENT_INFORMATION_TO_ADDRESS_NOT_FOUND;
-        }
-
-        if (toAddress.hasInValidCountryCode() || toAddress.hasInValidCountryCode()) {
-            return COUNTRY_CODE_NOT_VALID;
-        }
-        return null;
+        return ShipmentRequestViolation.errorCode(ShipmentRequestValidator.validate(this));
     }
 
     public boolean isInternational() {
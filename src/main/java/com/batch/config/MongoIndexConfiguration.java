@@ -0,0 +1,70 @@
+package com.batch.config;
+
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShipmentStatusRun;
+import com.batch.repository.ShipmentRepositoryCustom;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the indexes declared on {@link Shipment} and drops the ones they replaced, then the lookup
+ * indexes of the archive collection and the indexes declared on {@link ShipmentStatusRun}.
+ * Replaced indexes are dropped once the new ones exist, queries always have an index to use.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "batch.mongo.manage-indexes", havingValue = "true", matchIfMissing = true)
+public class MongoIndexConfiguration {
+
+    // Indexes without a query, or replaced by the partial indexes
+    static final List<String> OBSOLETE_SHIPMENT_INDEXES = List.of(
+            "carrier_status_idx",
+            "status_date_idx",
+            "creationDate",
+            "carrier_processing_idx",
+            "pending_updates_idx"
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureShipmentIndexes() {
+        IndexOperations indexOperations = mongoTemplate.indexOps(Shipment.class);
+        MongoPersistentEntityIndexResolver indexResolver =
+                new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        indexResolver.resolveIndexFor(Shipment.class).forEach(indexOperations::ensureIndex);
+
+        Set<String> existingIndexes = indexOperations.getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet());
+        for (String obsoleteIndex : OBSOLETE_SHIPMENT_INDEXES) {
+            if (existingIndexes.contains(obsoleteIndex)) {
+                indexOperations.dropIndex(obsoleteIndex);
+                log.info("[Mongo] Dropped obsolete index {} of {}", obsoleteIndex, mongoTemplate.getCollectionName(Shipment.class));
+            }
+        }
+
+        // Archived shipments are only looked up, by tracking number or reference
+        IndexOperations archiveIndexOperations = mongoTemplate.indexOps(ShipmentRepositoryCustom.ARCHIVE_COLLECTION);
+        archiveIndexOperations.ensureIndex(new Index().on("trackingNumber", Sort.Direction.ASC).named("trackingNumber"));
+        archiveIndexOperations.ensureIndex(new Index().on("reference", Sort.Direction.ASC).named("reference"));
+
+        IndexOperations runIndexOperations = mongoTemplate.indexOps(ShipmentStatusRun.class);
+        indexResolver.resolveIndexFor(ShipmentStatusRun.class).forEach(runIndexOperations::ensureIndex);
+    }
+}
@@ -0,0 +1,34 @@
+package com.batch.config;
+
+import com.batch.job.EventAwareNextCheckPolicy;
+import com.batch.job.FixedNextCheckPolicy;
+import com.batch.job.NextCheckPolicy;
+import com.batch.job.NextCheckProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Next check policy of the status update job. Declare a {@link NextCheckPolicy} bean to replace it.
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(NextCheckProperties.class)
+public class NextCheckConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public NextCheckPolicy nextCheckPolicy(NextCheckProperties properties,
+                                           @Value("${batch.shipment.status.update.retry-delay-hours:2}") int retryDelayHours) {
+        log.info("[NextCheck] Initializing {} next check policy", properties.getPolicy());
+        return switch (properties.getPolicy()) {
+            case FIXED -> new FixedNextCheckPolicy(Duration.ofHours(retryDelayHours));
+            case EVENT_AWARE -> new EventAwareNextCheckPolicy(properties);
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.batch.config;
+
+import com.batch.service.label.ShipmentLabelStore;
+import com.batch.service.label.ShipmentLabelStoreProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ShipmentLabelStoreProperties.class)
+public class ShipmentLabelStoreConfiguration {
+
+    @Bean
+    public ShipmentLabelStore shipmentLabelStore(ShipmentLabelStoreProperties properties) {
+        log.info("[Label] Initializing shipment label store in {}, up to {}",
+                properties.getDirectory(), properties.getMaxSize());
+        return new ShipmentLabelStore(properties);
+    }
+}
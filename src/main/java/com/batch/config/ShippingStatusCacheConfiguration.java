@@ -0,0 +1,22 @@
+package com.batch.config;
+
+import com.batch.service.carrier.ShippingStatusCache;
+import com.batch.service.carrier.ShippingStatusCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ShippingStatusCacheProperties.class)
+public class ShippingStatusCacheConfiguration {
+
+    @Bean
+    public ShippingStatusCache shippingStatusCache(ShippingStatusCacheProperties properties, MeterRegistry meterRegistry) {
+        log.info("[Cache] Initializing shipping status cache: enabled {}, up to {} entries",
+                properties.isEnabled(), properties.getMaximumSize());
+        return new ShippingStatusCache(properties, meterRegistry);
+    }
+}
@@ -0,0 +1,46 @@
+package com.batch.config.http;
+
+import com.batch.service.carrier.ChronopostSoapProperties;
+import com.batch.service.carrier.SoapPortPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Port proxies of the Chronopost Shipping and Tracking SOAP services, created at startup rather than on the first
+ * call of a run. The service interfaces are the ones generated by wsdl2java, named in the carrier.chronopost.soap
+ * properties.
+ * <p>
+ * Off unless carrier.chronopost.soap.enabled is set: the generated interfaces and the javax JAXB runtime CXF needs
+ * are not part of the build yet. HttpURLConnection keeps 5 idle connections per host unless the JVM is started with
+ * -Dhttp.maxConnections set to at least the pool size.
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ChronopostSoapProperties.class)
+@ConditionalOnProperty(name = "carrier.chronopost.soap.enabled", havingValue = "true")
+public class ChronopostSoapConfiguration {
+
+    private static final String CARRIER_NAME = "CHRONOPOST";
+
+    @Bean(destroyMethod = "close")
+    public SoapPortPool<?> chronopostShippingPorts(ChronopostSoapProperties properties) {
+        return portPool("shipping", properties.getShipping(), properties);
+    }
+
+    @Bean(destroyMethod = "close")
+    public SoapPortPool<?> chronopostTrackingPorts(ChronopostSoapProperties properties) {
+        return portPool("tracking", properties.getTracking(), properties);
+    }
+
+    private SoapPortPool<?> portPool(String service, ChronopostSoapProperties.Port port, ChronopostSoapProperties properties) {
+        Class<?> serviceInterface = ClassUtils.resolveClassName(port.getServiceInterface(), getClass().getClassLoader());
+        log.info("[CXF] Initializing {} {} port proxies at {}, connect timeout {}, receive timeout {}",
+                properties.getPoolSize(), service, port.getAddress(),
+                properties.getConnectTimeout(), properties.getReceiveTimeout());
+        return SoapPortPool.create(CARRIER_NAME, serviceInterface, port, properties);
+    }
+}
@@ -4,16 +4,24 @@ package com.batch.config.http;
 import feign.Logger;
 import feign.Request;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.openfeign.FeignLoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+
+/**
+ * Global Feign settings. Connection pooling, compression and per carrier timeouts are set
+ * through the spring.cloud.openfeign properties, which take precedence over these beans.
+ * All Feign clients share one connection pool, bounded per carrier host by max-connections-per-route.
+ */
 @Slf4j
 @Configuration
 public class FeignConfiguration {
 
-    private static final Duration CONNECT_TIMEOUT_DURATION = Duration.ofSeconds(30);
-    private static final Duration READ_TIMEOUT_DURATION = Duration.ofSeconds(30);
+    private static final Duration CONNECT_TIMEOUT_DURATION = Duration.ofSeconds(2);
+    private static final Duration READ_TIMEOUT_DURATION = Duration.ofSeconds(5);
 
     @Bean
     public Request.Options requestOptions() {
@@ -23,11 +31,17 @@ public class FeignConfiguration {
 
     /**
      * https://docs.spring.io/spring-cloud-openfeign/docs/current/reference/html/#feign-logging
+     * FULL only applies to the calls sampled by {@link SampledFeignLogger}.
      */
     @Bean
     public Logger.Level feignLoggerLevel() {
         log.info("[Feign] Initializing logging level");
         return Logger.Level.FULL;
     }
-}
 
+    @Bean
+    public FeignLoggerFactory feignLoggerFactory(@Value("${batch.http.feign.full-log-sample-rate:0.01}") double sampleRate) {
+        log.info("[Feign] Initializing sampled logger, {} of the calls logged in full", sampleRate);
+        return type -> new SampledFeignLogger(type, sampleRate);
+    }
+}
@@ -0,0 +1,63 @@
+package com.batch.config.http;
+
+import feign.Logger;
+import feign.Request;
+import feign.Response;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Slf4j Feign logger that only logs headers and bodies for a sample of the calls and for error responses,
+ * the other calls are logged at BASIC level. Nothing is formatted nor buffered unless debug is enabled.
+ */
+public class SampledFeignLogger extends Logger {
+
+    private final org.slf4j.Logger logger;
+    private final double sampleRate;
+    // Whether the call in flight on this thread is logged in full, decided when its request is logged
+    private final ThreadLocal<Boolean> fullLog = new ThreadLocal<>();
+
+    public SampledFeignLogger(Class<?> type, double sampleRate) {
+        this.logger = LoggerFactory.getLogger(type);
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    protected void logRequest(String configKey, Level logLevel, Request request) {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+        boolean sampled = logLevel.compareTo(Level.BASIC) <= 0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        fullLog.set(sampled);
+        super.logRequest(configKey, sampled ? logLevel : Level.BASIC, request);
+    }
+
+    @Override
+    protected Response logAndRebufferResponse(String configKey, Level logLevel, Response response, long elapsedTime)
+            throws IOException {
+        if (!logger.isDebugEnabled()) {
+            return response;
+        }
+        boolean sampled = Boolean.TRUE.equals(fullLog.get()) || response.status() >= 400;
+        fullLog.remove();
+        return super.logAndRebufferResponse(configKey, sampled ? logLevel : Level.BASIC, response, elapsedTime);
+    }
+
+    @Override
+    protected IOException logIOException(String configKey, Level logLevel, IOException ioe, long elapsedTime) {
+        fullLog.remove();
+        if (!logger.isDebugEnabled()) {
+            return ioe;
+        }
+        return super.logIOException(configKey, logLevel, ioe, elapsedTime);
+    }
+
+    @Override
+    protected void log(String configKey, String format, Object... args) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format(methodTag(configKey) + format, args));
+        }
+    }
+}
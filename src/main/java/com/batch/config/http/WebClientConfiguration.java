@@ -0,0 +1,51 @@
+package com.batch.config.http;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Reactor Netty connector of the auto-configured WebClient.Builder, used by the carriers called from the
+ * reactive pipeline. Sized and timed out like the Feign clients, from the same spring.cloud.openfeign properties.
+ */
+@Slf4j
+@Configuration
+public class WebClientConfiguration {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider carrierConnectionProvider(
+            @Value("${spring.cloud.openfeign.httpclient.max-connections-per-route:50}") int maxConnectionsPerHost,
+            @Value("${spring.cloud.openfeign.httpclient.time-to-live:300}") long timeToLiveSeconds,
+            @Value("${spring.cloud.openfeign.httpclient.hc5.connection-request-timeout:2}") long pendingAcquireTimeoutSeconds) {
+        log.info("[WebClient] Initializing connection pool, {} connections per carrier host", maxConnectionsPerHost);
+        // Reactor Netty pools per remote host, which is what the Feign per route limit bounds
+        return ConnectionProvider.builder("carriers")
+                .maxConnections(maxConnectionsPerHost)
+                .maxLifeTime(Duration.ofSeconds(timeToLiveSeconds))
+                .pendingAcquireTimeout(Duration.ofSeconds(pendingAcquireTimeoutSeconds))
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public ReactorClientHttpConnector carrierClientHttpConnector(
+            ConnectionProvider carrierConnectionProvider,
+            @Value("${spring.cloud.openfeign.client.config.default.connect-timeout:2000}") int connectTimeoutMillis,
+            @Value("${spring.cloud.openfeign.client.config.default.read-timeout:5000}") long readTimeoutMillis) {
+        log.info("[WebClient] Initializing connector, connect timeout {} ms, response timeout {} ms",
+                connectTimeoutMillis, readTimeoutMillis);
+        HttpClient httpClient = HttpClient.create(carrierConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(Duration.ofMillis(readTimeoutMillis))
+                .compress(true);
+        return new ReactorClientHttpConnector(httpClient);
+    }
+}
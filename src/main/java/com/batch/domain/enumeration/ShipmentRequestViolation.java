@@ -0,0 +1,55 @@
+package com.batch.domain.enumeration;
+
+import com.batch.domain.exception.DomainErrorCodes;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Violations of a shipment request, reported together as a bit mask: bit n is the violation of ordinal n.
+ * Declared by priority, the first one found is the error code of the request.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ShipmentRequestViolation {
+    FROM_ADDRESS_MISSING(DomainErrorCodes.SHIPMENT_INFORMATION_FROM_ADDRESS_NOT_FOUND),
+    TO_ADDRESS_MISSING(DomainErrorCodes.SHIPMENT_INFORMATION_TO_ADDRESS_NOT_FOUND),
+    FROM_COUNTRY_CODE_NOT_VALID(DomainErrorCodes.COUNTRY_CODE_NOT_VALID),
+    TO_COUNTRY_CODE_NOT_VALID(DomainErrorCodes.COUNTRY_CODE_NOT_VALID);
+
+    private static final ShipmentRequestViolation[] VALUES = values();
+
+    private final String errorCode;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public boolean isIn(int violations) {
+        return (violations & bit()) != 0;
+    }
+
+    /**
+     * @param violations A bit mask of violations
+     * @return The error code of the first violation, null when there is none
+     */
+    public static String errorCode(int violations) {
+        return violations == 0 ? null : VALUES[Integer.numberOfTrailingZeros(violations)].errorCode;
+    }
+
+    /**
+     * @param violations A bit mask of violations
+     * @return The violations
+     */
+    public static Set<ShipmentRequestViolation> of(int violations) {
+        EnumSet<ShipmentRequestViolation> set = EnumSet.noneOf(ShipmentRequestViolation.class);
+        for (ShipmentRequestViolation violation : VALUES) {
+            if (violation.isIn(violations)) {
+                set.add(violation);
+            }
+        }
+        return set;
+    }
+}
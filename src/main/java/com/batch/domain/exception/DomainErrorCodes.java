@@ -10,4 +10,10 @@ public interface DomainErrorCodes {
     String INVALID_CARRIER_ID = "INVALID_CARRIER_ID";
     String UNABLE_TO_GET_SHIPMENT_LABEL_INVALID_TRACKING_NUMBER = "UNABLE_TO_GET_SHIPMENT_LABEL_INVALID_TRACKING_NUMBER";
     String NO_SHIPMENT_LABEL_FOR_THE_GIVEN_TRACKING_NUMBER = "NO_SHIPMENT_LABEL_FOR_THE_GIVEN_TRACKING_NUMBER";
+    String TOO_MANY_SHIPMENT_LABELS = "TOO_MANY_SHIPMENT_LABELS";
+    String SHIPMENT_REQUEST_NOT_READABLE = "SHIPMENT_REQUEST_NOT_READABLE";
+    String CARRIER_UNAVAILABLE = "CARRIER_UNAVAILABLE";
+    String SHIPMENT_RESERVATION_FAILED = "SHIPMENT_RESERVATION_FAILED";
+    String SHIPMENT_ALREADY_EXISTS = "SHIPMENT_ALREADY_EXISTS";
+    String SHIPMENT_NOT_SAVED = "SHIPMENT_NOT_SAVED";
 }
@@ -1,6 +1,7 @@
 package com.batch.domain.model;
 
 import com.batch.domain.enumeration.CarrierOption;
+import com.batch.domain.enumeration.EventType;
 import com.batch.domain.enumeration.Gender;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
@@ -17,6 +18,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
 
+/**
+ * Shipment request and its tracking state. Indexes follow the repository queries: terminal shipments have
+ * no nextCheckDate and retried shipments are a small fraction, partial indexes leave the others out.
+ * They are created, and the ones they replace dropped, at startup by MongoIndexConfiguration.
+ */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,10 +30,30 @@ import java.util.*;
 @Document(collection = "shipment_requests")
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @CompoundIndexes({
-        @CompoundIndex(name = "carrier_status_idx", def = "{'carrierName': 1, 'lastEventType': 1}"),
-        @CompoundIndex(name = "status_date_idx", def = "{'lastEventType': 1, 'lastUpdateDate': -1}"),
-        @CompoundIndex(name = "carrier_processing_idx", def = "{'carrierName': 1, 'processingInProgress': 1, 'nextCheckDate': 1}"),
-        @CompoundIndex(name = "pending_updates_idx", def = "{'processingInProgress': 1, 'lastUpdateDate': 1, 'retryCount': 1}")
+        // findShipmentsForStatusUpdate, countShipmentsForStatusUpdate and findDueShipmentsAfter
+        @CompoundIndex(name = "due_shipments_open_idx",
+                def = "{'processingInProgress': 1, 'nextCheckDate': 1, '_id': 1, 'lastEventType': 1}",
+                partialFilter = "{'nextCheckDate': {'$exists': true}}"),
+        // findPrioritizedDueShipmentsAfter
+        @CompoundIndex(name = "prioritized_due_shipments_open_idx",
+                def = "{'processingInProgress': 1, 'processingPriority': -1, 'nextCheckDate': 1, '_id': 1, 'lastEventType': 1}",
+                partialFilter = "{'nextCheckDate': {'$exists': true}}"),
+        // findShipmentsByCarrierForProcessing
+        @CompoundIndex(name = "carrier_due_shipments_open_idx",
+                def = "{'carrierName': 1, 'processingInProgress': 1, 'nextCheckDate': 1}",
+                partialFilter = "{'nextCheckDate': {'$exists': true}}"),
+        // findPendingUpdateShipments, equality then the few retry counts then the date range
+        @CompoundIndex(name = "retried_shipments_idx",
+                def = "{'processingInProgress': 1, 'retryCount': 1, 'lastUpdateDate': 1}",
+                partialFilter = "{'retryCount': {'$gt': 0}}"),
+        // releaseExpiredLeases
+        @CompoundIndex(name = "leased_shipments_idx",
+                def = "{'processingInProgress': 1, 'leaseExpiresAt': 1}",
+                partialFilter = "{'processingInProgress': true}"),
+        // findArchivableShipmentIds, terminal shipments stay until archived
+        @CompoundIndex(name = "terminal_shipments_idx",
+                def = "{'lastUpdateDate': 1, 'lastEventType': 1, '_id': 1}",
+                partialFilter = "{'lastEventType': {'$in': ['SHIPMENT_DELIVERED', 'UNKNOWN']}}")
 })
 public class Shipment {
 
@@ -66,19 +92,33 @@ public class Shipment {
     private String labelUrl;
 
     // Processing & Status information
-    @Indexed
     private LocalDateTime creationDate;
 
     private LocalDateTime lastUpdateDate;
 
     private String lastEventType;
 
+    // Date of the last event seen, with lastEventType the fingerprint of the last poll
+    private LocalDateTime lastEventDate;
+
     private Boolean processingInProgress;
 
     private Integer retryCount;
 
     private LocalDateTime nextCheckDate;
 
+    // Order of processing in PRIORITY fetch mode, higher first, recomputed whenever the processing state is written
+    private Integer processingPriority;
+
+    // Lease held by the worker currently processing the shipment
+    private String leaseOwner;
+
+    private LocalDateTime leaseExpiresAt;
+
+    // Most recent tracking events, oldest first, bounded by batch.shipment.status.update.event-history-size
+    @Builder.Default
+    private List<ShippingStatus.ShippingEvent> eventHistory = new ArrayList<>();
+
     // External information
     @Builder.Default
     private Map<String, Object> businessContext = new HashMap<>();
@@ -143,6 +183,32 @@ public class Shipment {
         return !fromAddress.getCountry().equalsIgnoreCase(toAddress.getCountry());
     }
 
+    /**
+     * Compute the processing priority, higher first. Shipments in transit come first as they are close
+     * to delivery, then picked up ones, then the ones never polled and the ones waiting for pickup.
+     * Each retry lowers the priority. Stored along with the shipment, it only depends on its state:
+     * among shipments of the same priority, the most overdue are processed first.
+     * @return The priority, 0 at least
+     */
+    public int computeProcessingPriority() {
+        int priority;
+        if (lastEventType == null) {
+            priority = 20;
+        } else if (EventType.SHIPMENT_IN_PROGRESS.name().equals(lastEventType)) {
+            priority = 40;
+        } else if (EventType.SHIPMENT_HANDLED.name().equals(lastEventType)) {
+            priority = 30;
+        } else if (EventType.SHIPMENT_READY.name().equals(lastEventType)) {
+            priority = 10;
+        } else {
+            priority = 0;
+        }
+        if (retryCount != null) {
+            priority -= 10 * retryCount;
+        }
+        return Math.max(priority, 0);
+    }
+
     public boolean isProductDanger() {
         return carrierOptions.stream()
                 .anyMatch(carrierOption -> carrierOption == CarrierOption.DANGER);
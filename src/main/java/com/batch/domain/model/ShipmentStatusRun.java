@@ -0,0 +1,107 @@
+package com.batch.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ledger entry of a shipment status update run: how far it got, what it did and how long it took.
+ * Written at start, at each checkpoint and at the end, so a run cut short by a restart leaves a trace
+ * and can be resumed. Entries expire 90 days after their start.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Document(collection = "shipment_status_runs")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+// takeOverInterruptedRun: only the runs still flagged as running are indexed
+@CompoundIndex(name = "running_runs_idx",
+        def = "{'fetchMode': 1, 'heartbeatDate': 1}",
+        partialFilter = "{'status': 'RUNNING'}")
+public class ShipmentStatusRun {
+
+    @Id
+    private String id;
+
+    // Bumped on every write: a run taken over by another worker can no longer overwrite its entry
+    @Version
+    private Long version;
+
+    private String workerId;
+    private String executionMode;
+    private String fetchMode;
+    private Status status;
+
+    @Indexed(name = "start_date_ttl_idx", expireAfter = "90d")
+    private LocalDateTime startDate;
+
+    private LocalDateTime heartbeatDate;
+    private LocalDateTime endDate;
+
+    // Upper bound of nextCheckDate of the run, kept when the run is resumed
+    private LocalDateTime nextCheckDateBefore;
+
+    // Last page claimed by the run: the shipments before it were processed, or are leased by the run
+    private Checkpoint checkpoint;
+
+    private String resumedFrom;
+    private String resumedBy;
+
+    private long processedShipments;
+    private Long remainingShipments;
+
+    // Shipments by outcome: updated, unchanged, deferred, retried, unknown, and failed writes
+    @Builder.Default
+    private Map<String, Long> outcomes = new HashMap<>();
+
+    @Builder.Default
+    private Map<String, Long> stageMillis = new HashMap<>();
+
+    @Builder.Default
+    private Map<String, CarrierTiming> carrierTimings = new HashMap<>();
+
+    private String error;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        /**
+         * Stopped without completing, e.g. by a restart, and taken over by the run in resumedBy
+         */
+        INTERRUPTED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Checkpoint {
+        private Integer processingPriority;
+        private LocalDateTime nextCheckDate;
+        private String shipmentId;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CarrierTiming {
+        private long calls;
+        private long failedCalls;
+        private long totalMillis;
+        private long maxMillis;
+    }
+}
@@ -1,6 +1,7 @@
 package com.batch.domain.model;
 
 import com.batch.domain.enumeration.EventType;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -9,6 +10,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Data
 @NoArgsConstructor
@@ -20,6 +22,23 @@ public class ShippingStatus {
     private List<ShippingEvent> events = new ArrayList<>();
     private String trackingNumber;
 
+    /**
+     * Get the most recent event, in a single pass without sorting. Events without date are ignored.
+     * @return The most recent event, or empty if there is none
+     */
+    @JsonIgnore
+    public Optional<ShippingEvent> getLatestEvent() {
+        ShippingEvent latestEvent = null;
+        if (events != null) {
+            for (ShippingEvent event : events) {
+                if (event.getDate() != null
+                        && (latestEvent == null || event.getDate().isAfter(latestEvent.getDate()))) {
+                    latestEvent = event;
+                }
+            }
+        }
+        return Optional.ofNullable(latestEvent);
+    }
 
     @Data
     @NoArgsConstructor
@@ -0,0 +1,223 @@
+package com.batch.domain.service;
+
+import com.batch.api.dto.BulkShipmentResult;
+import com.batch.api.dto.ShipmentRequest;
+import com.batch.domain.enumeration.ShipmentRequestViolation;
+import com.batch.domain.exception.DomainErrorCodes;
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingReservationResult;
+import com.batch.domain.validation.ShipmentRequestValidator;
+import com.batch.repository.BulkInsertResult;
+import com.batch.repository.ReactiveShipmentRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierReservationService;
+import com.batch.service.carrier.CarrierReservationServiceFactory;
+import com.batch.service.carrier.CarrierUnavailableException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Creates shipments in bulk: each shipment request is validated, reserved with its carrier and saved, and its
+ * result is emitted as soon as it is known rather than once the whole batch is done.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShipmentCreationService {
+
+    private final CarrierReservationServiceFactory carrierReservationServiceFactory;
+    private final CarrierCallGuard carrierCallGuard;
+    private final ReactiveShipmentRepository reactiveShipmentRepository;
+
+    @Value("${batch.shipment.bulk.max-concurrent-reservations:20}")
+    private int maxConcurrentReservations;
+
+    @Value("${batch.shipment.bulk.insert-batch-size:100}")
+    private int insertBatchSize;
+
+    @Value("${batch.shipment.bulk.insert-max-wait:500ms}")
+    private Duration insertMaxWait;
+
+    /**
+     * Validate, reserve and save shipments as they are read. At most max-concurrent-reservations carrier calls
+     * are in flight, and the requests are read no faster than they are reserved. Reserved shipments are saved
+     * in bulks of insert-batch-size, or of what was reserved within insert-max-wait.
+     * @param shipmentRequests The shipment requests, in submission order
+     * @return One result per shipment request, in completion order
+     */
+    public Flux<BulkShipmentResult> createShipments(Flux<ShipmentRequest> shipmentRequests) {
+        return shipmentRequests
+                .index()
+                .flatMap(request -> reserve(request.getT1(), request.getT2()), maxConcurrentReservations)
+                .publish(reservations -> Flux.merge(
+                        reservations.filter(reservation -> reservation.shipment() == null)
+                                .map(Reservation::result),
+                        reservations.filter(reservation -> reservation.shipment() != null)
+                                // Fair: a bulk timing out behind a slow insert waits for demand instead of failing
+                                .bufferTimeout(insertBatchSize, insertMaxWait, true)
+                                .concatMap(this::save)));
+    }
+
+    private Mono<Reservation> reserve(long index, ShipmentRequest request) {
+        BulkShipmentResult result = BulkShipmentResult.builder()
+                .index(index)
+                .reference(request.getReference())
+                .build();
+
+        int violations = ShipmentRequestValidator.validate(request);
+        if (violations != 0) {
+            BulkShipmentResult invalid = result.toBuilder().violations(ShipmentRequestViolation.of(violations)).build();
+            return Mono.just(Reservation.failed(invalid, ShipmentRequestViolation.errorCode(violations)));
+        }
+        CarrierReservationService reservationService =
+                carrierReservationServiceFactory.findReservationService(request.getCarrierName());
+        if (reservationService == null) {
+            return Mono.just(Reservation.failed(result, DomainErrorCodes.INVALID_CARRIER_ID));
+        }
+
+        String carrierName = reservationService.getCarrierName();
+        return Mono.fromCallable(() -> carrierCallGuard.execute(carrierName, () -> reservationService.reserve(request)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(reservation -> reserved(result, request, reservation))
+                .onErrorResume(e -> Mono.just(reservationFailed(result, carrierName, e)));
+    }
+
+    private static Reservation reserved(BulkShipmentResult result, ShipmentRequest request,
+                                        ShippingReservationResult reservation) {
+        BulkShipmentResult reservedResult = result.toBuilder().reservation(reservation).build();
+        if (reservation.getShipmentErrorMessage() != null || StringUtils.isBlank(reservation.getTrackingNumber())) {
+            log.warn("Shipment {} refused by carrier {}: {}",
+                    request.getReference(), request.getCarrierName(), reservation.getShipmentErrorMessage());
+            return Reservation.failed(reservedResult, DomainErrorCodes.SHIPMENT_RESERVATION_FAILED);
+        }
+        return new Reservation(reservedResult, toShipment(request, reservation, LocalDateTime.now()));
+    }
+
+    private static Reservation reservationFailed(BulkShipmentResult result, String carrierName, Throwable error) {
+        if (error instanceof CarrierUnavailableException) {
+            log.warn("Shipment {} not reserved: {}", result.getReference(), error.getMessage());
+            return Reservation.failed(result, DomainErrorCodes.CARRIER_UNAVAILABLE);
+        }
+        log.error("Error reserving shipment {} with carrier {}: {}", result.getReference(), carrierName, error.getMessage(), error);
+        return Reservation.failed(result, DomainErrorCodes.SHIPMENT_RESERVATION_FAILED);
+    }
+
+    private Flux<BulkShipmentResult> save(List<Reservation> reservations) {
+        List<Shipment> shipments = reservations.stream().map(Reservation::shipment).toList();
+        return reactiveShipmentRepository.insertShipments(shipments)
+                .onErrorResume(e -> {
+                    log.error("Error saving {} reserved shipments: {}", shipments.size(), e.getMessage(), e);
+                    Set<Integer> positions = IntStream.range(0, shipments.size()).boxed().collect(Collectors.toSet());
+                    return Mono.just(new BulkInsertResult(shipments.size(), Set.of(), positions));
+                })
+                .flatMapIterable(insertResult -> IntStream.range(0, reservations.size())
+                        .mapToObj(position -> saved(reservations.get(position).result(), insertResult, position))
+                        .toList());
+    }
+
+    private static BulkShipmentResult saved(BulkShipmentResult result, BulkInsertResult insertResult, int position) {
+        String errorCode = insertResult.duplicates().contains(position) ? DomainErrorCodes.SHIPMENT_ALREADY_EXISTS
+                : insertResult.failed().contains(position) ? DomainErrorCodes.SHIPMENT_NOT_SAVED
+                : null;
+        if (errorCode == null) {
+            return result;
+        }
+        // Reserved with the carrier but not saved: the caller gets the reservation back to cancel it
+        log.warn("Shipment {} reserved as {} but not saved: {}",
+                result.getReference(), result.getReservation().getTrackingNumber(), errorCode);
+        return result.toBuilder().errorCode(errorCode).build();
+    }
+
+    /**
+     * A new shipment, due for its first status update on the next run.
+     */
+    static Shipment toShipment(ShipmentRequest request, ShippingReservationResult reservation, LocalDateTime now) {
+        Shipment shipment = Shipment.builder()
+                .reference(request.getReference())
+                .externalReference(request.getExternalReference())
+                .toAddress(toAddress(request.getToAddress()))
+                .fromAddress(toAddress(request.getFromAddress()))
+                .parcels(request.getParcels() == null ? new ArrayList<>()
+                        : request.getParcels().stream().map(ShipmentCreationService::toParcel).collect(Collectors.toList()))
+                .contentDescription(request.getContentDescription())
+                .carrierName(request.getCarrierName())
+                .carrierService(request.getCarrierService())
+                .carrierID(request.getCarrierID())
+                .carrierOptions(request.getCarrierOptions() == null ? new ArrayList<>() : new ArrayList<>(request.getCarrierOptions()))
+                .insurance(toAmount(request.getInsurance()))
+                .trackingNumber(reservation.getTrackingNumber())
+                .reservationNumber(reservation.getReservationNumber())
+                .trackingUrl(reservation.getTrackingUrl())
+                .labelUrl(reservation.getLabelUrl())
+                .creationDate(now)
+                .lastUpdateDate(now)
+                .processingInProgress(false)
+                .retryCount(0)
+                .nextCheckDate(now)
+                .businessContext(request.getBusinessContext() == null ? new HashMap<>() : new HashMap<>(request.getBusinessContext()))
+                .build();
+        shipment.setProcessingPriority(shipment.computeProcessingPriority());
+        return shipment;
+    }
+
+    private static Shipment.Address toAddress(ShipmentRequest.Address address) {
+        if (address == null) {
+            return null;
+        }
+        return Shipment.Address.builder()
+                .name(address.getName())
+                .company(address.getCompany())
+                .street1(address.getStreet1())
+                .street2(address.getStreet2())
+                .city(address.getCity())
+                .state(address.getState())
+                .zip(address.getZip())
+                .country(address.getCountry())
+                .phone(address.getPhone())
+                .email(address.getEmail())
+                .gender(address.getGender())
+                .build();
+    }
+
+    private static Shipment.Parcel toParcel(ShipmentRequest.Parcel parcel) {
+        return Shipment.Parcel.builder()
+                .length(parcel.getLength())
+                .width(parcel.getWidth())
+                .height(parcel.getHeight())
+                .weight(parcel.getWeight())
+                .unitWeight(parcel.getUnitWeight())
+                .purchasePrice(toAmount(parcel.getPurchasePrice()))
+                .originCountry(parcel.getOriginCountry())
+                .code(parcel.getCode())
+                .build();
+    }
+
+    private static Shipment.Amount toAmount(ShipmentRequest.Amount amount) {
+        return amount == null ? null : new Shipment.Amount(amount.getValue(), amount.getCurrencyCode());
+    }
+
+    /**
+     * A shipment request once reserved, the shipment to save when the reservation succeeded.
+     */
+    private record Reservation(BulkShipmentResult result, Shipment shipment) {
+
+        static Reservation failed(BulkShipmentResult result, String errorCode) {
+            return new Reservation(result.toBuilder().errorCode(errorCode).build(), null);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.batch.domain.service;
+
+import com.batch.api.dto.ShipmentLabelRequest;
+import com.batch.domain.model.Shipment;
+import com.batch.repository.ShipmentRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierUnavailableException;
+import com.batch.service.label.ShipmentLabelStore;
+import com.batch.service.label.StoredLabel;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves the shipment labels from the label store, a label is only downloaded from its carrier the first time
+ * it is asked for, straight to disk.
+ */
+@Slf4j
+@Service
+public class ShipmentLabelService {
+
+    private static final byte[] PDF_SIGNATURE = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    // A label evicted between its lookup and its opening is looked up, or downloaded, once more
+    private static final int MAX_OPEN_ATTEMPTS = 2;
+
+    private final ShipmentRepository shipmentRepository;
+    private final CarrierCallGuard carrierCallGuard;
+    private final ShipmentLabelStore shipmentLabelStore;
+    private final WebClient webClient;
+
+    @Value("${batch.shipment.label.download-timeout:30s}")
+    private Duration downloadTimeout;
+
+    public ShipmentLabelService(ShipmentRepository shipmentRepository,
+                                CarrierCallGuard carrierCallGuard,
+                                ShipmentLabelStore shipmentLabelStore,
+                                WebClient.Builder webClientBuilder) {
+        this.shipmentRepository = shipmentRepository;
+        this.carrierCallGuard = carrierCallGuard;
+        this.shipmentLabelStore = shipmentLabelStore;
+        this.webClient = webClientBuilder.build();
+    }
+
+    /**
+     * Get the label of a shipment.
+     * @param trackingNumber The tracking number of the shipment, valid for {@link ShipmentLabelStore#isValidTrackingNumber}
+     * @return The stored label, or empty if the shipment is unknown or its carrier has no PDF label for it
+     * @throws CarrierUnavailableException If the label is not stored and the carrier cannot be called right now,
+     * fails or does not answer within the download timeout
+     */
+    public Optional<StoredLabel> findLabel(String trackingNumber) {
+        Optional<StoredLabel> stored = shipmentLabelStore.find(trackingNumber);
+        if (stored.isPresent()) {
+            return stored;
+        }
+        return shipmentRepository.findByTrackingNumber(trackingNumber)
+                .filter(shipment -> StringUtils.isNoneBlank(shipment.getLabelUrl(), shipment.getCarrierName()))
+                .flatMap(this::download);
+    }
+
+    /**
+     * Open the label of a shipment, downloaded first if not stored. Open labels before committing a response:
+     * once open, a label evicted from the store is still read from its open file, while a label only found may
+     * be deleted before it is read.
+     * @param trackingNumber The tracking number of the shipment, valid for {@link ShipmentLabelStore#isValidTrackingNumber}
+     * @param opener Opens the label file, failing with a {@link NoSuchFileException} when it was evicted
+     * @return The open label, or empty if the shipment is unknown or its carrier has no PDF label for it
+     * @throws CarrierUnavailableException If the label is not stored and the carrier cannot be called right now,
+     * fails or does not answer within the download timeout
+     */
+    public <T> Optional<T> openLabel(String trackingNumber, LabelOpener<T> opener) throws IOException {
+        NoSuchFileException evicted = null;
+        for (int attempt = 0; attempt < MAX_OPEN_ATTEMPTS; attempt++) {
+            Optional<StoredLabel> label = findLabel(trackingNumber);
+            if (label.isEmpty()) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(opener.open(label.get()));
+            } catch (NoSuchFileException e) {
+                log.debug("Label of {} evicted before it was opened", trackingNumber);
+                evicted = e;
+            }
+        }
+        throw evicted;
+    }
+
+    /**
+     * Open a label as a source of {@link #mergeLabels}.
+     */
+    public static RandomAccessRead openMergeSource(StoredLabel label) throws IOException {
+        return new RandomAccessReadBufferedFile(label.path());
+    }
+
+    /**
+     * Write labels as a single PDF print job, in the given order. Each label is read from its open file as its
+     * pages are copied and the merged document is buffered in a temporary file: no label is held in heap.
+     * @param sources The labels, from {@link #openMergeSource}, closed once merged
+     * @param output The print job
+     */
+    public void mergeLabels(List<RandomAccessRead> sources, OutputStream output) throws IOException {
+        try {
+            PDFMergerUtility merger = new PDFMergerUtility();
+            merger.addSources(sources);
+            merger.setDestinationStream(output);
+            merger.mergeDocuments(IOUtils.createTempFileOnlyStreamCache());
+        } finally {
+            for (RandomAccessRead source : sources) {
+                IOUtils.closeQuietly(source);
+            }
+        }
+    }
+
+    /**
+     * Opens a stored label file.
+     */
+    @FunctionalInterface
+    public interface LabelOpener<T> {
+        T open(StoredLabel label) throws IOException;
+    }
+
+    private Optional<StoredLabel> download(Shipment shipment) {
+        ShipmentLabelRequest labelRequest = ShipmentLabelRequest.builder()
+                .reservationNumber(shipment.getReservationNumber())
+                .trackingNumber(shipment.getTrackingNumber())
+                .labelUrl(shipment.getLabelUrl())
+                .build();
+        Path file = null;
+        try {
+            file = shipmentLabelStore.createTempFile();
+            Path downloaded = file;
+            if (!carrierCallGuard.execute(shipment.getCarrierName(),
+                    () -> write(shipment.getCarrierName(), labelRequest.getLabelUrl(), downloaded))) {
+                log.warn("No label of {} at {}", labelRequest.getTrackingNumber(), labelRequest.getLabelUrl());
+                return Optional.empty();
+            }
+            if (!isPdf(downloaded)) {
+                log.warn("Label of {} at {} is not a PDF document", labelRequest.getTrackingNumber(), labelRequest.getLabelUrl());
+                return Optional.empty();
+            }
+            StoredLabel label = shipmentLabelStore.put(labelRequest.getTrackingNumber(), downloaded);
+            log.debug("Label of {} downloaded, {} bytes", label.trackingNumber(), label.size());
+            return Optional.of(label);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store the label of " + labelRequest.getTrackingNumber(), e);
+        } finally {
+            // Moved into the store, or left by a failed download
+            deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Download a label to a file. A missing label is an answer of the carrier, not a failure of the call:
+     * the carrier call guard records it as a success.
+     * @return False if the carrier has no label at this URL
+     * @throws CarrierUnavailableException If the carrier fails or does not answer within the download timeout
+     */
+    private boolean write(String carrierName, String labelUrl, Path file) {
+        try {
+            DataBufferUtils.write(webClient.get().uri(labelUrl).retrieve().bodyToFlux(DataBuffer.class), file)
+                    .block(downloadTimeout);
+            return true;
+        } catch (WebClientResponseException.NotFound e) {
+            return false;
+        } catch (WebClientException | IllegalStateException e) {
+            // block throws an IllegalStateException once the timeout elapsed
+            throw new CarrierUnavailableException(carrierName, e);
+        }
+    }
+
+    private static boolean isPdf(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return Arrays.equals(input.readNBytes(PDF_SIGNATURE.length), PDF_SIGNATURE);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Unable to delete {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
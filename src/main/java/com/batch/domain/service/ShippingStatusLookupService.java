@@ -0,0 +1,51 @@
+package com.batch.domain.service;
+
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingStatus;
+import com.batch.repository.ShipmentRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierTrackingService;
+import com.batch.service.carrier.CarrierTrackingServiceFactory;
+import com.batch.service.carrier.ShippingStatusCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Looks up the current shipping status of a shipment through the status cache, the carrier is only
+ * called when the status is not cached.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShippingStatusLookupService {
+
+    private final ShipmentRepository shipmentRepository;
+    private final CarrierTrackingServiceFactory carrierTrackingServiceFactory;
+    private final CarrierCallGuard carrierCallGuard;
+    private final ShippingStatusCache shippingStatusCache;
+
+    /**
+     * Get the shipping status of a shipment.
+     * @param trackingNumber The tracking number of the shipment
+     * @return The shipping status, or empty if the shipment is unknown, its carrier has no tracking service
+     * or the carrier returned nothing
+     * @throws com.batch.service.carrier.CarrierUnavailableException If the status is not cached and the carrier
+     * cannot be called right now
+     */
+    public Optional<ShippingStatus> findShippingStatus(String trackingNumber) {
+        Optional<Shipment> shipment = shipmentRepository.findByTrackingNumber(trackingNumber);
+        if (shipment.isEmpty()) {
+            return Optional.empty();
+        }
+        CarrierTrackingService trackingService = carrierTrackingServiceFactory.findTrackingService(shipment.get().getCarrierName());
+        if (trackingService == null) {
+            return Optional.empty();
+        }
+
+        String carrierName = trackingService.getCarrierName();
+        return shippingStatusCache.getShippingStatus(carrierName, trackingNumber,
+                missingTrackingNumber -> carrierCallGuard.execute(carrierName,
+                        () -> trackingService.getShippingStatus(missingTrackingNumber)));
+    }
+}
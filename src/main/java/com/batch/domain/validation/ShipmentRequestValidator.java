@@ -0,0 +1,70 @@
+package com.batch.domain.validation;
+
+import com.batch.api.dto.ShipmentRequest;
+import com.batch.domain.enumeration.ShipmentRequestViolation;
+
+import java.util.Locale;
+
+/**
+ * Validation of the shipment requests against lookup tables computed once: every check is made in a single pass
+ * and nothing is allocated, bulk imports validate their requests as an IntStream of violation masks.
+ */
+public final class ShipmentRequestValidator {
+
+    private static final int LETTERS = 26;
+
+    // ISO 3166-1 alpha-2 codes, bit (first letter - 'A') * 26 + (second letter - 'A') set for each one. Never written
+    // after class initialization
+    private static final long[] COUNTRY_CODES = countryCodes();
+
+    private ShipmentRequestValidator() {
+    }
+
+    /**
+     * Validate a shipment request.
+     * @param request The shipment request
+     * @return The violations, as bits of {@link ShipmentRequestViolation}, 0 when the request is valid
+     */
+    public static int validate(ShipmentRequest request) {
+        int violations = 0;
+        ShipmentRequest.Address fromAddress = request.getFromAddress();
+        if (fromAddress == null) {
+            violations |= ShipmentRequestViolation.FROM_ADDRESS_MISSING.bit();
+        } else if (!isValidCountryCode(fromAddress.getCountry())) {
+            violations |= ShipmentRequestViolation.FROM_COUNTRY_CODE_NOT_VALID.bit();
+        }
+        ShipmentRequest.Address toAddress = request.getToAddress();
+        if (toAddress == null) {
+            violations |= ShipmentRequestViolation.TO_ADDRESS_MISSING.bit();
+        } else if (!isValidCountryCode(toAddress.getCountry())) {
+            violations |= ShipmentRequestViolation.TO_COUNTRY_CODE_NOT_VALID.bit();
+        }
+        return violations;
+    }
+
+    /**
+     * @param country A country code
+     * @return True if the country code is an ISO 3166-1 alpha-2 code, in upper case
+     */
+    public static boolean isValidCountryCode(String country) {
+        if (country == null || country.length() != 2) {
+            return false;
+        }
+        int first = country.charAt(0) - 'A';
+        int second = country.charAt(1) - 'A';
+        if (first < 0 || first >= LETTERS || second < 0 || second >= LETTERS) {
+            return false;
+        }
+        int index = first * LETTERS + second;
+        return (COUNTRY_CODES[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static long[] countryCodes() {
+        long[] codes = new long[(LETTERS * LETTERS + 63) / 64];
+        for (String country : Locale.getISOCountries(Locale.IsoCountryCode.PART1_ALPHA2)) {
+            int index = (country.charAt(0) - 'A') * LETTERS + (country.charAt(1) - 'A');
+            codes[index >>> 6] |= 1L << index;
+        }
+        return codes;
+    }
+}
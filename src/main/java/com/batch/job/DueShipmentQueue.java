@@ -0,0 +1,149 @@
+package com.batch.job;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shipments waiting for their nextCheckDate, each one at most once, at its latest nextCheckDate.
+ * Bounded in size and in time: the shipments beyond capacity or horizon are left to the sweep runs.
+ * Entries are ordered by due time and indexed by shipment id under a single lock: rescheduling a shipment
+ * is logarithmic in the queue size, and a shipment taken while it is scheduled again is never lost.
+ */
+class DueShipmentQueue {
+
+    private static final Comparator<DueShipment> DUE_ORDER =
+            Comparator.comparingLong(DueShipment::dueNanos).thenComparingLong(DueShipment::sequence);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Signalled when the first entry changes, the dispatcher waits until it comes due
+    private final Condition firstChanged = lock.newCondition();
+
+    // Guarded by lock
+    private final NavigableSet<DueShipment> queue = new TreeSet<>(DUE_ORDER);
+
+    // Latest entry by shipment id, the entries it replaces are taken out of the queue. Guarded by lock
+    private final Map<String, DueShipment> scheduled = new HashMap<>();
+
+    // Orders the entries due at the same time, guarded by lock
+    private long sequence;
+
+    private final int capacity;
+    private final Duration horizon;
+    private final Clock clock;
+
+    DueShipmentQueue(int capacity, Duration horizon, Clock clock) {
+        this.capacity = capacity;
+        this.horizon = horizon;
+        this.clock = clock;
+    }
+
+    /**
+     * Queue a shipment, or move it to its new nextCheckDate.
+     * @return False when the shipment is left to the sweep runs: queue full or due beyond the horizon
+     */
+    boolean schedule(String shipmentId, LocalDateTime nextCheckDate) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        lock.lock();
+        try {
+            if (nextCheckDate.isAfter(now.plus(horizon))) {
+                unqueue(scheduled.remove(shipmentId));
+                return false;
+            }
+            if (scheduled.size() >= capacity && !scheduled.containsKey(shipmentId)) {
+                return false;
+            }
+
+            DueShipment dueShipment = new DueShipment(
+                    shipmentId, Duration.between(now, nextCheckDate).toNanos() + System.nanoTime(), sequence++);
+            DueShipment replaced = scheduled.put(shipmentId, dueShipment);
+            queue.add(dueShipment);
+            unqueue(replaced);
+            if (queue.first() == dueShipment) {
+                firstChanged.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unqueue a shipment no longer due, e.g. delivered.
+     */
+    void remove(String shipmentId) {
+        lock.lock();
+        try {
+            unqueue(scheduled.remove(shipmentId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unqueue(DueShipment replaced) {
+        if (replaced != null) {
+            queue.remove(replaced);
+        }
+    }
+
+    /**
+     * Wait for at least one shipment to come due, then take the ones due at that time.
+     * @param maxShipments The maximum number of shipments taken
+     * @return The ids of the due shipments
+     */
+    List<String> takeDue(int maxShipments) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty() || queue.first().delayNanos() > 0) {
+                if (queue.isEmpty()) {
+                    firstChanged.await();
+                } else {
+                    firstChanged.awaitNanos(queue.first().delayNanos());
+                }
+            }
+
+            List<String> shipmentIds = new ArrayList<>();
+            while (shipmentIds.size() < maxShipments && !queue.isEmpty() && queue.first().delayNanos() <= 0) {
+                DueShipment dueShipment = queue.pollFirst();
+                scheduled.remove(dueShipment.shipmentId());
+                shipmentIds.add(dueShipment.shipmentId());
+            }
+            if (!queue.isEmpty()) {
+                firstChanged.signal();
+            }
+            return shipmentIds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param dueNanos The System.nanoTime at which the shipment comes due
+     * @param sequence Unique per entry, so that the entries due at the same time are all kept
+     */
+    private record DueShipment(String shipmentId, long dueNanos, long sequence) {
+
+        long delayNanos() {
+            return dueNanos - System.nanoTime();
+        }
+    }
+}
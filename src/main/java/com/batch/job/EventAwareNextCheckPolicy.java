@@ -0,0 +1,80 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * Next check delay by event type, optionally overridden per carrier, then backed off with the age of
+ * the latest event and spread with jitter.
+ * A parcel that moved recently is checked after its event type delay, a parcel idle for two days after half a day.
+ */
+public class EventAwareNextCheckPolicy implements NextCheckPolicy {
+
+    private final Duration defaultDelay;
+    private final Map<EventType, Duration> delays;
+    // Normalized carrier name -> delays with the carrier overrides applied
+    private final Map<String, Map<EventType, Duration>> carrierDelays;
+    private final Duration idleAfter;
+    private final double idleBackoffRatio;
+    private final Duration maxDelay;
+    private final double jitter;
+    // Called concurrently by the workers: a generator of the calling thread for each draw
+    private final Supplier<RandomGenerator> random;
+
+    public EventAwareNextCheckPolicy(NextCheckProperties properties) {
+        this(properties, ThreadLocalRandom::current);
+    }
+
+    /**
+     * @param random The generator of the jitter draws, seeded ones make simulations repeatable
+     */
+    EventAwareNextCheckPolicy(NextCheckProperties properties, Supplier<RandomGenerator> random) {
+        if (properties.getJitter() < 0 || properties.getJitter() >= 1) {
+            throw new IllegalArgumentException("Next check jitter must be in [0, 1): " + properties.getJitter());
+        }
+        this.defaultDelay = properties.getDefaultDelay();
+        this.delays = new EnumMap<>(EventType.class);
+        this.delays.putAll(properties.getDelays());
+        Map<String, Map<EventType, Duration>> overrides = new HashMap<>();
+        properties.getCarriers().forEach((carrierName, carrierOverrides) -> {
+            Map<EventType, Duration> merged = new EnumMap<>(delays);
+            merged.putAll(carrierOverrides);
+            overrides.put(carrierName.toLowerCase(Locale.ROOT), merged);
+        });
+        this.carrierDelays = Map.copyOf(overrides);
+        this.idleAfter = properties.getIdleAfter();
+        this.idleBackoffRatio = properties.getIdleBackoffRatio();
+        this.maxDelay = properties.getMaxDelay();
+        this.jitter = properties.getJitter();
+        this.random = random;
+    }
+
+    @Override
+    public Duration nextCheckDelay(String carrierName, EventType eventType, Duration eventAge) {
+        long delayMillis = baseDelay(carrierName, eventType).toMillis();
+        if (eventAge.compareTo(idleAfter) > 0) {
+            delayMillis = Math.max(delayMillis, (long) (eventAge.toMillis() * idleBackoffRatio));
+        }
+        delayMillis = Math.min(delayMillis, maxDelay.toMillis());
+        if (jitter > 0) {
+            delayMillis += (long) (delayMillis * jitter * (2 * random.get().nextDouble() - 1));
+        }
+        return Duration.ofMillis(delayMillis);
+    }
+
+    private Duration baseDelay(String carrierName, EventType eventType) {
+        Map<EventType, Duration> eventDelays = delays;
+        if (carrierName != null && !carrierDelays.isEmpty()) {
+            eventDelays = carrierDelays.getOrDefault(carrierName.toLowerCase(Locale.ROOT), delays);
+        }
+        return eventDelays.getOrDefault(eventType, defaultDelay);
+    }
+}
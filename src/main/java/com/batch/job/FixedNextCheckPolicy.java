@@ -0,0 +1,16 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+
+import java.time.Duration;
+
+/**
+ * Checks every shipment again after the same delay.
+ */
+public record FixedNextCheckPolicy(Duration delay) implements NextCheckPolicy {
+
+    @Override
+    public Duration nextCheckDelay(String carrierName, EventType eventType, Duration eventAge) {
+        return delay;
+    }
+}
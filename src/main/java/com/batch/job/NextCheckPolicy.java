@@ -0,0 +1,34 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+
+import java.time.Duration;
+
+/**
+ * Decides when a shipment with a non-terminal event is checked again.
+ */
+public interface NextCheckPolicy {
+
+    /**
+     * Compute the delay before the next status check of a shipment.
+     * @param carrierName The carrier of the shipment
+     * @param eventType The type of the latest event
+     * @param eventAge The time elapsed since the latest event, zero if the event is in the future
+     * @return The delay before the next check
+     */
+    Duration nextCheckDelay(String carrierName, EventType eventType, Duration eventAge);
+
+    /**
+     * The available policies, selected with batch.shipment.status.update.next-check.policy.
+     */
+    enum Type {
+        /**
+         * The same delay for every event, batch.shipment.status.update.retry-delay-hours
+         */
+        FIXED,
+        /**
+         * A delay per event type and carrier, backed off when the parcel is idle, with jitter
+         */
+        EVENT_AWARE
+    }
+}
@@ -0,0 +1,59 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the next check policy.
+ */
+@Data
+@ConfigurationProperties(prefix = "batch.shipment.status.update.next-check")
+public class NextCheckProperties {
+
+    private NextCheckPolicy.Type policy = NextCheckPolicy.Type.EVENT_AWARE;
+
+    /**
+     * Delay for the event types without a delay of their own
+     */
+    private Duration defaultDelay = Duration.ofHours(2);
+
+    /**
+     * Delay by event type
+     */
+    private Map<EventType, Duration> delays = new EnumMap<>(Map.of(
+            EventType.SHIPMENT_READY, Duration.ofHours(12),
+            EventType.SHIPMENT_HANDLED, Duration.ofHours(6),
+            EventType.SHIPMENT_IN_PROGRESS, Duration.ofHours(2)));
+
+    /**
+     * Delay by event type overriding the defaults for a carrier, keyed by carrier name
+     */
+    private Map<String, Map<EventType, Duration>> carriers = new HashMap<>();
+
+    /**
+     * Age of the latest event after which a parcel is considered idle
+     */
+    private Duration idleAfter = Duration.ofHours(6);
+
+    /**
+     * Fraction of the latest event age used as delay of idle parcels when it exceeds the event type delay,
+     * so that parcels that have not moved for a while are checked less often
+     */
+    private double idleBackoffRatio = 0.25;
+
+    /**
+     * Upper bound of the delay, jitter excluded
+     */
+    private Duration maxDelay = Duration.ofHours(24);
+
+    /**
+     * Random spread of the delay, as a fraction of it, so that due dates do not clump together
+     */
+    private double jitter = 0.1;
+}
@@ -0,0 +1,381 @@
+package com.batch.job;
+
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShipmentStatusRun;
+import com.batch.domain.model.ShippingStatus;
+import com.batch.repository.BulkUpdateResult;
+import com.batch.repository.DueShipmentCursor;
+import com.batch.repository.ReactiveShipmentRepository;
+import com.batch.repository.ShipmentStateUpdate;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierTrackingService;
+import com.batch.service.carrier.ReactiveCarrierTrackingService;
+import com.batch.service.carrier.ShippingStatusCache;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Reactive variant of {@link ShipmentStatusUpdateJob}, run instead of it when execution-mode is REACTIVE.
+ * Due shipments are streamed from Mongo, claimed page by page, tracked with at most as many calls in flight
+ * per carrier as its bulkhead allows, and written back in bulks. Every stage only requests what the next one
+ * can take: a slow carrier or a slow Mongo holds the reads back instead of filling buffers.
+ * Claims, leases, cache, call guards and state transitions are the ones of the blocking job.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReactiveShipmentStatusUpdateJob {
+
+    private final ReactiveShipmentRepository reactiveShipmentRepository;
+    private final ShipmentStatusTransitions shipmentStatusTransitions;
+    private final CarrierCallGuard carrierCallGuard;
+    private final ShippingStatusCache shippingStatusCache;
+    private final ShipmentStatusMetrics shipmentStatusMetrics;
+    private final ShipmentStatusRunLedger shipmentStatusRunLedger;
+
+    // Identifies this worker in the shipment leases
+    private final String leaseOwner = UUID.randomUUID().toString();
+
+    // A single active run per instance, whatever triggers it
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // PAGED is read as KEYSET, offsets do not stream
+    @Value("${batch.shipment.status.update.fetch-mode:KEYSET}")
+    private ShipmentStatusUpdateJob.FetchMode fetchMode;
+
+    @Value("${batch.shipment.status.update.page-size:100}")
+    private int pageSize;
+
+    @Value("${batch.shipment.status.update.lease-duration-minutes:10}")
+    private int leaseDurationMinutes;
+
+    // 0 drains everything due in a single run
+    @Value("${batch.shipment.status.update.max-shipments-per-run:0}")
+    private long maxShipmentsPerRun;
+
+    @Value("${batch.shipment.status.update.reactive.write-batch-size:500}")
+    private int writeBatchSize;
+
+    // Longest time a state update waits for its bulk to fill up
+    @Value("${batch.shipment.status.update.reactive.write-max-delay:1s}")
+    private Duration writeMaxDelay;
+
+    /**
+     * Process shipments pending status updates, blocking the calling thread until the run completes.
+     * Skipped when a run is already active on this instance.
+     * @return The outcome of the run
+     */
+    public ShipmentStatusRunResult processShipmentStatusUpdates() {
+        return run().block();
+    }
+
+    /**
+     * Process shipments pending status updates once subscribed.
+     * Skipped when a run is already active on this instance.
+     * @return The outcome of the run
+     */
+    public Mono<ShipmentStatusRunResult> run() {
+        return Mono.defer(() -> {
+            if (!running.compareAndSet(false, true)) {
+                log.warn("Shipment status update batch job already running, skipping this trigger");
+                return Mono.just(ShipmentStatusRunResult.SKIPPED);
+            }
+            return runShipmentStatusUpdates().doFinally(signal -> running.set(false));
+        });
+    }
+
+    private Mono<ShipmentStatusRunResult> runShipmentStatusUpdates() {
+        log.info("Starting reactive shipment status update batch job");
+
+        long startTime = System.nanoTime();
+        AtomicLong processedShipments = new AtomicLong();
+        Timer.Sample runSample = shipmentStatusMetrics.startRun();
+        ShipmentStatusRunTally tally = new ShipmentStatusRunTally();
+
+        return fromLedger(() -> shipmentStatusRunLedger.start(
+                        leaseOwner, ShipmentStatusUpdateJob.ExecutionMode.REACTIVE, keysetFetchMode(), LocalDateTime.now()))
+                .flatMap(run -> reactiveShipmentRepository.releaseExpiredLeases(LocalDateTime.now())
+                        .doOnNext(releasedShipments -> {
+                            if (releasedShipments > 0) {
+                                log.warn("Released {} shipments whose lease expired", releasedShipments);
+                            }
+                        })
+                        .then(recordBacklog())
+                        .then(Mono.defer(() -> processDueShipments(run, tally, processedShipments)))
+                        .doFinally(signal -> shipmentStatusMetrics.stopRun(runSample))
+                        .then(recordBacklog())
+                        .flatMap(remainingShipments -> {
+                            Duration elapsed = Duration.ofNanos(System.nanoTime() - startTime);
+                            log.info("Completed reactive shipment status update batch job: {} shipments in {} ms ({} shipments/sec), {} still due",
+                                    processedShipments.get(), elapsed.toMillis(),
+                                    processedShipments.get() * 1_000 / Math.max(elapsed.toMillis(), 1), remainingShipments);
+
+                            return toLedger(() -> shipmentStatusRunLedger.complete(
+                                            run, processedShipments.get(), remainingShipments, tally))
+                                    .thenReturn(new ShipmentStatusRunResult(true, processedShipments.get(),
+                                            remainingShipments, elapsed, tally.averageCarrierLatency()));
+                        })
+                        .onErrorResume(e -> toLedger(() -> shipmentStatusRunLedger.fail(
+                                        run, processedShipments.get(), tally, e))
+                                .then(Mono.error(e))));
+    }
+
+    private Mono<Long> recordBacklog() {
+        return reactiveShipmentRepository.countShipmentsForStatusUpdate(
+                        LocalDateTime.now(), ShipmentStatusUpdateJob.TERMINAL_STATUSES)
+                .doOnNext(shipmentStatusMetrics::backlog);
+    }
+
+    private Mono<Void> processDueShipments(ShipmentStatusRun run, ShipmentStatusRunTally tally, AtomicLong processedShipments) {
+        // Upper bound fixed for the whole run: shipments rescheduled by this run are left to the next one.
+        // A run resuming an interrupted one keeps its bound and starts after its checkpoint.
+        LocalDateTime runStartDate = run.getNextCheckDateBefore();
+
+        WrittenPages writtenPages = new WrittenPages();
+
+        Flux<TrackingChunk> chunks = dueShipments(shipmentStatusRunLedger.resumeCursor(run), runStartDate)
+                .buffer(pageSize)
+                // One claim at a time, the next page is claimed while the current one is tracked
+                .concatMap(page -> claimShipments(page, runStartDate, tally)
+                        .map(shipments -> new ClaimedPage(
+                                page.getLast(), shipments, processedShipments.addAndGet(shipments.size()))), 1)
+                .takeUntil(page -> isRunLimitReached(page.processedShipments()))
+                .doOnNext(writtenPages::claimed)
+                .concatMap(page -> groupIntoTrackingChunks(page.shipments(), tally, writtenPages), 1)
+                .concatMapIterable(Function.identity());
+
+        return chunks
+                .groupBy(TrackingChunk::carrierName)
+                // Carriers are few, each group is drained concurrently with its own bound
+                .flatMap(carrierChunks -> trackCarrierChunks(carrierChunks, tally), Integer.MAX_VALUE)
+                .bufferTimeout(writeBatchSize, writeMaxDelay, true)
+                // The checkpoint is the last page whose updates are all written, as are those of the pages before it
+                .concatMap(updates -> writeUpdates(updates, tally)
+                        .then(Mono.fromSupplier(() -> writtenPages.written(updates).takeCheckpoint()))
+                        .flatMap(page -> toLedger(() -> shipmentStatusRunLedger.checkpoint(
+                                run, page.cursor(), page.processedShipments(), tally))), 1)
+                .then();
+    }
+
+    private boolean isRunLimitReached(long processedShipments) {
+        return maxShipmentsPerRun > 0 && processedShipments >= maxShipmentsPerRun;
+    }
+
+    private ShipmentStatusUpdateJob.FetchMode keysetFetchMode() {
+        return fetchMode == ShipmentStatusUpdateJob.FetchMode.PRIORITY
+                ? ShipmentStatusUpdateJob.FetchMode.PRIORITY
+                : ShipmentStatusUpdateJob.FetchMode.KEYSET;
+    }
+
+    /**
+     * Keyset pages of due shipments, the next page being read only once the previous one was consumed.
+     */
+    private Flux<DueShipmentCursor> dueShipments(DueShipmentCursor resumeCursor, LocalDateTime runStartDate) {
+        Function<DueShipmentCursor, Mono<List<DueShipmentCursor>>> nextPage = cursor -> {
+            Mono<List<DueShipmentCursor>> page = keysetFetchMode() == ShipmentStatusUpdateJob.FetchMode.PRIORITY
+                    ? reactiveShipmentRepository.findPrioritizedDueShipmentsAfter(
+                            cursor, runStartDate, ShipmentStatusUpdateJob.TERMINAL_STATUSES, pageSize)
+                    : reactiveShipmentRepository.findDueShipmentsAfter(
+                            cursor, runStartDate, ShipmentStatusUpdateJob.TERMINAL_STATUSES, pageSize);
+            return page.filter(dueShipments -> !dueShipments.isEmpty());
+        };
+
+        return nextPage.apply(resumeCursor)
+                .expand(dueShipments -> dueShipments.size() < pageSize ? Mono.empty() : nextPage.apply(dueShipments.getLast()))
+                .concatMapIterable(Function.identity());
+    }
+
+    private Mono<List<Shipment>> claimShipments(List<DueShipmentCursor> dueShipments, LocalDateTime nextCheckDateBefore,
+                                                ShipmentStatusRunTally tally) {
+        return Mono.defer(() -> {
+            List<String> shipmentIds = dueShipments.stream().map(DueShipmentCursor::id).toList();
+            long start = System.nanoTime();
+            LocalDateTime leaseExpiresAt = LocalDateTime.now().plusMinutes(leaseDurationMinutes);
+            return reactiveShipmentRepository.claimShipments(shipmentIds, nextCheckDateBefore, leaseOwner, leaseExpiresAt)
+                    .collectList()
+                    .doOnNext(shipments -> {
+                        shipmentStatusMetrics.recordClaim(tally, Duration.ofNanos(System.nanoTime() - start));
+                        if (shipments.size() < shipmentIds.size()) {
+                            log.debug("{} of {} due shipments were claimed by another worker",
+                                    shipmentIds.size() - shipments.size(), shipmentIds.size());
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Split a claimed page in carrier chunks, the shipments that cannot be tracked are written right away.
+     */
+    private Mono<List<TrackingChunk>> groupIntoTrackingChunks(List<Shipment> shipments, ShipmentStatusRunTally tally,
+                                                             WrittenPages writtenPages) {
+        List<ShipmentStateUpdate> rejected = new ArrayList<>();
+        List<TrackingChunk> chunks = shipmentStatusTransitions.groupIntoTrackingChunks(shipments, tally, rejected::add);
+        return rejected.isEmpty()
+                ? Mono.just(chunks)
+                : writeUpdates(rejected, tally)
+                        .then(Mono.fromRunnable(() -> writtenPages.written(rejected)))
+                        .thenReturn(chunks);
+    }
+
+    private Flux<ShipmentStateUpdate> trackCarrierChunks(GroupedFlux<String, TrackingChunk> carrierChunks,
+                                                         ShipmentStatusRunTally tally) {
+        int maxConcurrentCalls = Math.max(carrierCallGuard.maxConcurrentCalls(carrierChunks.key()), 1);
+        return carrierChunks.flatMap(chunk -> trackChunk(chunk, tally), maxConcurrentCalls);
+    }
+
+    private Flux<ShipmentStateUpdate> trackChunk(TrackingChunk chunk, ShipmentStatusRunTally tally) {
+        String carrierName = chunk.carrierName();
+
+        // Get updated shipping statuses, one carrier request for the tracking numbers of the chunk not cached
+        return shippingStatusCache.getShippingStatusesReactive(carrierName, chunk.trackingNumbers(),
+                        missingTrackingNumbers -> carrierCallGuard.execute(carrierName, recordCarrierCall(tally, carrierName,
+                                callCarrier(chunk.trackingService(), missingTrackingNumbers))))
+                .map(statuses -> shipmentStatusTransitions.chunkTracked(chunk, statuses, tally))
+                .onErrorResume(e -> Mono.just(shipmentStatusTransitions.chunkFailed(chunk, e, tally)))
+                .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Call a carrier without blocking, carriers with a blocking client get a bounded elastic thread per call.
+     */
+    private static Mono<Map<String, ShippingStatus>> callCarrier(
+            CarrierTrackingService trackingService,
+            Collection<String> trackingNumbers) {
+        Mono<Map<String, ShippingStatus>> call = trackingService instanceof ReactiveCarrierTrackingService reactiveTrackingService
+                ? Mono.defer(() -> reactiveTrackingService.trackShippingStatuses(trackingNumbers))
+                : Mono.fromCallable(() -> trackingService.getShippingStatuses(trackingNumbers))
+                        .subscribeOn(Schedulers.boundedElastic());
+        return call.defaultIfEmpty(Map.of());
+    }
+
+    private <T> Mono<T> recordCarrierCall(ShipmentStatusRunTally tally, String carrierName, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            // Recorded before the response goes down the pipeline, the run may complete right after
+            return call
+                    .doOnSuccess(response -> shipmentStatusMetrics.recordCarrierCall(
+                            tally, carrierName, Duration.ofNanos(System.nanoTime() - start), false))
+                    .doOnError(e -> shipmentStatusMetrics.recordCarrierCall(
+                            tally, carrierName, Duration.ofNanos(System.nanoTime() - start), true));
+        });
+    }
+
+    /**
+     * Ledger writes are blocking Mongo calls, run off the pipeline threads.
+     */
+    private static <T> Mono<T> fromLedger(Callable<T> ledgerCall) {
+        return Mono.fromCallable(ledgerCall).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Mono<Void> toLedger(Runnable ledgerCall) {
+        return Mono.<Void>fromRunnable(ledgerCall).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Shipments claimed from a page of due shipments.
+     * @param cursor The last due shipment of the page
+     * @param processedShipments The shipments claimed by the run so far, this page included
+     */
+    private record ClaimedPage(DueShipmentCursor cursor, List<Shipment> shipments, long processedShipments) {
+    }
+
+    /**
+     * Claimed pages in claim order, each one with the updates of its shipments not written yet. Pages of
+     * different carriers complete out of order: a run resumed from the last page of the written prefix
+     * leaves no claimed shipment behind.
+     */
+    private static final class WrittenPages {
+
+        private final Deque<PendingPage> pendingPages = new ArrayDeque<>();
+        private final Map<String, PendingPage> pendingPageByShipmentId = new HashMap<>();
+        private ClaimedPage checkpoint;
+
+        synchronized void claimed(ClaimedPage page) {
+            PendingPage pendingPage = new PendingPage(page);
+            pendingPages.add(pendingPage);
+            page.shipments().forEach(shipment -> pendingPageByShipmentId.put(shipment.getId(), pendingPage));
+            advance();
+        }
+
+        /**
+         * One update per claimed shipment, whether it was tracked, failed or rejected.
+         */
+        synchronized WrittenPages written(List<ShipmentStateUpdate> updates) {
+            for (ShipmentStateUpdate update : updates) {
+                PendingPage pendingPage = pendingPageByShipmentId.remove(update.id());
+                if (pendingPage != null) {
+                    pendingPage.pendingUpdates--;
+                }
+            }
+            advance();
+            return this;
+        }
+
+        /**
+         * @return The last page written since the previous checkpoint, null if none
+         */
+        @Nullable
+        synchronized ClaimedPage takeCheckpoint() {
+            ClaimedPage page = checkpoint;
+            checkpoint = null;
+            return page;
+        }
+
+        private void advance() {
+            while (!pendingPages.isEmpty() && pendingPages.peek().pendingUpdates == 0) {
+                checkpoint = pendingPages.poll().page;
+            }
+        }
+
+        private static final class PendingPage {
+
+            private final ClaimedPage page;
+            private int pendingUpdates;
+
+            private PendingPage(ClaimedPage page) {
+                this.page = page;
+                this.pendingUpdates = page.shipments().size();
+            }
+        }
+    }
+
+    private Mono<BulkUpdateResult> writeUpdates(List<ShipmentStateUpdate> updates, ShipmentStatusRunTally tally) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return reactiveShipmentRepository.updateShipmentStates(updates)
+                    .doOnNext(result -> {
+                        shipmentStatusMetrics.recordSave(tally, Duration.ofNanos(System.nanoTime() - start));
+                        if (result.failed() > 0) {
+                            shipmentStatusMetrics.writesFailed(tally, result.failed());
+                            log.warn("Wrote {} shipment state updates: {} updated, {} failed",
+                                    result.requested(), result.updated(), result.failed());
+                        } else {
+                            log.info("Wrote {} shipment state updates: {} updated", result.requested(), result.updated());
+                        }
+                    });
+        });
+    }
+}
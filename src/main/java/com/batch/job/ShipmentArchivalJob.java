@@ -0,0 +1,71 @@
+package com.batch.job;
+
+import com.batch.repository.ShipmentRepository;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves terminal shipments no longer updated to the archive collection, so that the shipment collection
+ * and its indexes only grow with the active shipments. Archived shipments are still found by tracking
+ * number and reference. Only scheduled when batch.shipment.archive.enabled is true.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "batch.shipment.archive.enabled", havingValue = "true")
+public class ShipmentArchivalJob {
+
+    private final ShipmentRepository shipmentRepository;
+    private final ShipmentArchiveMetrics shipmentArchiveMetrics;
+
+    // Terminal shipments last updated longer ago than this are archived
+    @Value("${batch.shipment.archive.min-age:30d}")
+    private Duration minAge;
+
+    @Value("${batch.shipment.archive.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Archive the terminal shipments older than the minimum age, batch after batch until none is left.
+     * @return The number of archived shipments
+     */
+    @Scheduled(cron = "${batch.shipment.archive.cron:0 0 3 * * ?}")
+    public long archiveTerminalShipments() {
+        LocalDateTime lastUpdateBefore = LocalDateTime.now().minus(minAge);
+        log.info("Starting shipment archival of terminal shipments last updated before {}", lastUpdateBefore);
+
+        long startTime = System.nanoTime();
+        long archivedShipments = 0;
+        Timer.Sample runSample = shipmentArchiveMetrics.startRun();
+        try {
+            List<String> shipmentIds;
+            do {
+                shipmentIds = shipmentRepository.findArchivableShipmentIds(
+                        lastUpdateBefore, ShipmentStatusUpdateJob.TERMINAL_STATUSES, batchSize);
+                if (shipmentIds.isEmpty()) {
+                    break;
+                }
+
+                long archived = shipmentRepository.archiveShipments(
+                        shipmentIds, lastUpdateBefore, ShipmentStatusUpdateJob.TERMINAL_STATUSES);
+                shipmentArchiveMetrics.shipmentsArchived(archived);
+                archivedShipments += archived;
+            } while (shipmentIds.size() == batchSize);
+        } finally {
+            shipmentArchiveMetrics.stopRun(runSample);
+        }
+
+        log.info("Completed shipment archival: {} shipments in {} ms", archivedShipments,
+                Duration.ofNanos(System.nanoTime() - startTime).toMillis());
+        return archivedShipments;
+    }
+}
@@ -0,0 +1,53 @@
+package com.batch.job;
+
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentRepositoryCustom;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer meters of the shipment archival, exposed on the actuator metrics endpoint.
+ */
+@Component
+public class ShipmentArchiveMetrics {
+
+    private static final String PREFIX = "batch.shipment.archive";
+
+    private final MeterRegistry meterRegistry;
+    private final Timer runTimer;
+    private final Counter archivedShipments;
+
+    public ShipmentArchiveMetrics(MeterRegistry meterRegistry, ShipmentRepository shipmentRepository) {
+        this.meterRegistry = meterRegistry;
+        this.runTimer = Timer.builder(PREFIX + ".run")
+                .description("Duration of an archival run")
+                .register(meterRegistry);
+        this.archivedShipments = Counter.builder(PREFIX + ".shipments")
+                .description("Shipments moved to the archive collection")
+                .register(meterRegistry);
+        // Estimated from the collection metadata on each scrape, no scan
+        Gauge.builder("batch.shipment.collection.size", shipmentRepository, ShipmentRepository::estimatedShipmentCount)
+                .description("Documents in the shipment collections")
+                .tag("collection", "shipment_requests")
+                .register(meterRegistry);
+        Gauge.builder("batch.shipment.collection.size", shipmentRepository, ShipmentRepository::estimatedArchivedShipmentCount)
+                .description("Documents in the shipment collections")
+                .tag("collection", ShipmentRepositoryCustom.ARCHIVE_COLLECTION)
+                .register(meterRegistry);
+    }
+
+    public Timer.Sample startRun() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopRun(Timer.Sample sample) {
+        sample.stop(runTimer);
+    }
+
+    public void shipmentsArchived(long count) {
+        archivedShipments.increment(count);
+    }
+}
@@ -0,0 +1,128 @@
+package com.batch.job;
+
+import com.batch.repository.NextCheckDateChange;
+import com.batch.repository.ReactiveShipmentRepository;
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Processes shipments when their nextCheckDate is reached instead of on the next run.
+ * New shipments and nextCheckDate changes are read from the change stream of the shipments into a delay queue,
+ * a dispatcher thread hands the shipments coming due to {@link ShipmentStatusUpdateJob} page by page.
+ * The scheduled runs remain as a sweep, for what the queue missed: shipments due beyond the horizon or the capacity,
+ * changes made while the application was down or the stream interrupted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "batch.shipment.status.update.change-stream.enabled", havingValue = "true")
+public class ShipmentChangeStreamScheduler implements SmartLifecycle {
+
+    // ChangeStreamHistoryLost: the resume token is no longer in the oplog
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final ReactiveShipmentRepository reactiveShipmentRepository;
+    private final ShipmentStatusUpdateJob shipmentStatusUpdateJob;
+    private final DueShipmentQueue dueShipmentQueue;
+    private final int pageSize;
+
+    private volatile BsonValue resumeToken;
+    private volatile Disposable subscription;
+    private volatile Thread dispatcher;
+
+    public ShipmentChangeStreamScheduler(
+            ReactiveShipmentRepository reactiveShipmentRepository,
+            ShipmentStatusUpdateJob shipmentStatusUpdateJob,
+            @Value("${batch.shipment.status.update.change-stream.capacity:100000}") int capacity,
+            @Value("${batch.shipment.status.update.change-stream.horizon:24h}") Duration horizon,
+            @Value("${batch.shipment.status.update.page-size:100}") int pageSize) {
+        this.reactiveShipmentRepository = reactiveShipmentRepository;
+        this.shipmentStatusUpdateJob = shipmentStatusUpdateJob;
+        this.dueShipmentQueue = new DueShipmentQueue(capacity, horizon, Clock.systemDefaultZone());
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void start() {
+        subscription = Flux.defer(() -> reactiveShipmentRepository.watchNextCheckDateChanges(resumeToken))
+                .doOnNext(this::schedule)
+                .doOnError(this::onStreamError)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                .subscribe();
+        dispatcher = Thread.ofPlatform()
+                .name("shipment-due-dispatcher")
+                .daemon()
+                .start(this::dispatchDueShipments);
+        log.info("Listening to shipment changes, dispatching shipments as they come due");
+    }
+
+    @Override
+    public void stop() {
+        Disposable currentSubscription = subscription;
+        if (currentSubscription != null) {
+            currentSubscription.dispose();
+        }
+        Thread currentDispatcher = dispatcher;
+        if (currentDispatcher != null) {
+            currentDispatcher.interrupt();
+        }
+        subscription = null;
+        dispatcher = null;
+        log.info("Stopped listening to shipment changes, {} queued shipments left to the sweep runs", dueShipmentQueue.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return subscription != null;
+    }
+
+    int queuedShipments() {
+        return dueShipmentQueue.size();
+    }
+
+    void schedule(NextCheckDateChange change) {
+        resumeToken = change.resumeToken();
+        if (change.nextCheckDate() == null || ShipmentStatusUpdateJob.TERMINAL_STATUSES.contains(change.lastEventType())) {
+            dueShipmentQueue.remove(change.id());
+        } else if (!dueShipmentQueue.schedule(change.id(), change.nextCheckDate())) {
+            log.debug("Shipment {} due at {} left to the sweep runs", change.id(), change.nextCheckDate());
+        }
+    }
+
+    private void onStreamError(Throwable e) {
+        if (NestedExceptionUtils.getMostSpecificCause(e) instanceof MongoException mongoException
+                && mongoException.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+            // The changes missed in the meantime are left to the sweep runs
+            resumeToken = null;
+        }
+        log.warn("Shipment change stream failed, listening again", e);
+    }
+
+    private void dispatchDueShipments() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<String> dueShipmentIds = dueShipmentQueue.takeDue(pageSize);
+                int processedShipments = shipmentStatusUpdateJob.processDueShipments(dueShipmentIds);
+                log.debug("Dispatched {} due shipments, {} processed, {} still queued",
+                        dueShipmentIds.size(), processedShipments, dueShipmentQueue.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Not queued again: the sweep runs pick them up
+                log.error("Failed to process due shipments", e);
+            }
+        }
+    }
+}
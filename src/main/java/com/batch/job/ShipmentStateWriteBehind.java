@@ -0,0 +1,69 @@
+package com.batch.job;
+
+import com.batch.repository.BulkUpdateResult;
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentStateUpdate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects the processing state transitions of shipments and writes them
+ * to Mongo as one unordered bulk per batch instead of one save per shipment.
+ * Created for each batch: a flush only writes the updates of its own batch.
+ * Safe to feed from the virtual threads of a parallel batch.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class ShipmentStateWriteBehind {
+
+    private final ShipmentRepository shipmentRepository;
+
+    private final Queue<ShipmentStateUpdate> pendingUpdates = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Record a processing state transition, written on the next flush.
+     * @param update The state update of a shipment
+     */
+    public void enqueue(ShipmentStateUpdate update) {
+        pendingUpdates.add(update);
+    }
+
+    /**
+     * Record the processing state transitions of several shipments, written on the next flush.
+     * @param updates The state updates
+     */
+    public void enqueueAll(Collection<ShipmentStateUpdate> updates) {
+        pendingUpdates.addAll(updates);
+    }
+
+    /**
+     * Write all the pending state updates.
+     * @return How many documents were updated and how many failed
+     */
+    public BulkUpdateResult flush() {
+        List<ShipmentStateUpdate> updates = new ArrayList<>();
+        ShipmentStateUpdate update;
+        while ((update = pendingUpdates.poll()) != null) {
+            updates.add(update);
+        }
+
+        if (updates.isEmpty()) {
+            return BulkUpdateResult.EMPTY;
+        }
+
+        BulkUpdateResult result = shipmentRepository.updateShipmentStates(updates);
+        if (result.failed() > 0) {
+            log.warn("Flushed {} shipment state updates: {} updated, {} failed",
+                    result.requested(), result.updated(), result.failed());
+        } else {
+            log.info("Flushed {} shipment state updates: {} updated", result.requested(), result.updated());
+        }
+        return result;
+    }
+}
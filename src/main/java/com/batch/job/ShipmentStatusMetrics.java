@@ -0,0 +1,180 @@
+package com.batch.job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of the shipment status pipeline, exposed on the actuator metrics endpoint.
+ * Each recording also goes to the tally of the run or call it belongs to, created by the caller.
+ */
+@Component
+public class ShipmentStatusMetrics {
+
+    private static final String PREFIX = "batch.shipment.status";
+
+    private final MeterRegistry meterRegistry;
+    private final Timer runTimer;
+    private final Timer fetchTimer;
+    private final Timer claimTimer;
+    private final Timer saveTimer;
+    private final Counter updatedShipments;
+    private final Counter unchangedShipments;
+    private final Counter deferredShipments;
+    private final Counter retriedShipments;
+    private final Counter unknownShipments;
+    private final Counter failedWrites;
+    private final AtomicLong backlog = new AtomicLong();
+    private final ConcurrentMap<String, Timer> carrierCallTimers = new ConcurrentHashMap<>();
+
+    public ShipmentStatusMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.runTimer = Timer.builder(PREFIX + ".run")
+                .description("Duration of a status update run")
+                .register(meterRegistry);
+        this.fetchTimer = stageTimer("fetch");
+        this.claimTimer = stageTimer("claim");
+        this.saveTimer = stageTimer("save");
+        this.updatedShipments = shipmentCounter("updated");
+        this.unchangedShipments = shipmentCounter("unchanged");
+        this.deferredShipments = shipmentCounter("deferred");
+        this.retriedShipments = shipmentCounter("retried");
+        this.unknownShipments = shipmentCounter("unknown");
+        this.failedWrites = Counter.builder(PREFIX + ".write.failed")
+                .description("State updates that failed or lost their lease")
+                .register(meterRegistry);
+        Gauge.builder(PREFIX + ".backlog", backlog, AtomicLong::get)
+                .description("Shipments due for a status update and not processed yet")
+                .register(meterRegistry);
+    }
+
+    public Timer.Sample startRun() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopRun(Timer.Sample sample) {
+        sample.stop(runTimer);
+    }
+
+    public <T> T recordFetch(ShipmentStatusRunTally tally, Supplier<T> fetch) {
+        return recordStage(tally, "fetch", fetchTimer, fetch);
+    }
+
+    public <T> T recordClaim(ShipmentStatusRunTally tally, Supplier<T> claim) {
+        return recordStage(tally, "claim", claimTimer, claim);
+    }
+
+    public <T> T recordSave(ShipmentStatusRunTally tally, Supplier<T> save) {
+        return recordStage(tally, "save", saveTimer, save);
+    }
+
+    public void recordClaim(ShipmentStatusRunTally tally, Duration duration) {
+        claimTimer.record(duration);
+        tally.stage("claim", duration.toNanos());
+    }
+
+    public void recordSave(ShipmentStatusRunTally tally, Duration duration) {
+        saveTimer.record(duration);
+        tally.stage("save", duration.toNanos());
+    }
+
+    /**
+     * Time a carrier call, published as a percentile histogram per carrier.
+     */
+    public <T> T recordCarrierCall(ShipmentStatusRunTally tally, String carrierName, Supplier<T> call) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            recordCarrierCall(tally, carrierName, Duration.ofNanos(System.nanoTime() - start), failed);
+        }
+    }
+
+    /**
+     * Record the latency of a carrier call that completed asynchronously.
+     */
+    public void recordCarrierCall(ShipmentStatusRunTally tally, String carrierName, Duration duration, boolean failed) {
+        carrierCallTimers.computeIfAbsent(carrierName, this::carrierCallTimer).record(duration);
+        tally.carrierCall(carrierName, duration.toNanos(), failed);
+    }
+
+    public void shipmentUpdated(ShipmentStatusRunTally tally) {
+        updatedShipments.increment();
+        tally.outcome("updated", 1);
+    }
+
+    public void shipmentUnchanged(ShipmentStatusRunTally tally) {
+        unchangedShipments.increment();
+        tally.outcome("unchanged", 1);
+    }
+
+    public void shipmentDeferred(ShipmentStatusRunTally tally) {
+        deferredShipments.increment();
+        tally.outcome("deferred", 1);
+    }
+
+    public void shipmentRetried(ShipmentStatusRunTally tally) {
+        retriedShipments.increment();
+        tally.outcome("retried", 1);
+    }
+
+    public void shipmentMarkedUnknown(ShipmentStatusRunTally tally) {
+        unknownShipments.increment();
+        tally.outcome("unknown", 1);
+    }
+
+    public void writesFailed(ShipmentStatusRunTally tally, int count) {
+        failedWrites.increment(count);
+        tally.outcome("writeFailed", count);
+    }
+
+    public void backlog(long dueShipments) {
+        backlog.set(dueShipments);
+    }
+
+    private <T> T recordStage(ShipmentStatusRunTally tally, String stage, Timer timer, Supplier<T> operation) {
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            long nanos = System.nanoTime() - start;
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+            tally.stage(stage, nanos);
+        }
+    }
+
+    private Timer carrierCallTimer(String carrierName) {
+        return Timer.builder(PREFIX + ".carrier.call")
+                .description("Latency of carrier tracking calls")
+                .tag("carrier", carrierName)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder(PREFIX + ".stage")
+                .description("Duration of the Mongo stages of a run")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private Counter shipmentCounter(String outcome) {
+        return Counter.builder(PREFIX + ".shipments")
+                .description("Shipments processed by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
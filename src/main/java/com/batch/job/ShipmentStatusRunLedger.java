@@ -0,0 +1,165 @@
+package com.batch.job;
+
+import com.batch.domain.model.ShipmentStatusRun;
+import com.batch.repository.DueShipmentCursor;
+import com.batch.repository.ShipmentStatusRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Records the status update runs in the shipment_status_runs collection: start, checkpoints, outcome counts
+ * and carrier timings. A run starting after one that stopped reporting takes it over and resumes after its
+ * checkpoint, with the same nextCheckDate bound, instead of reading the due shipments again from the start.
+ * Ledger writes never fail a run: they are logged and skipped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShipmentStatusRunLedger {
+
+    private final ShipmentStatusRunRepository shipmentStatusRunRepository;
+
+    @Value("${batch.shipment.status.update.ledger.enabled:true}")
+    private boolean enabled;
+
+    // A run without heartbeat for that long is considered stopped, its leases expired too
+    @Value("${batch.shipment.status.update.ledger.stale-after:10m}")
+    private Duration staleAfter;
+
+    /**
+     * Record the start of a run, resuming the most recent run of the same fetch mode that stopped reporting.
+     * @param workerId The lease owner of the worker
+     * @param executionMode The execution mode of the run
+     * @param fetchMode The order in which due shipments are read, PAGED runs are never resumed
+     * @param nextCheckDateBefore The nextCheckDate bound of a new run
+     * @return The run, with the checkpoint and nextCheckDate bound to resume from when it resumes another one
+     */
+    public ShipmentStatusRun start(
+            String workerId,
+            ShipmentStatusUpdateJob.ExecutionMode executionMode,
+            ShipmentStatusUpdateJob.FetchMode fetchMode,
+            LocalDateTime nextCheckDateBefore) {
+        LocalDateTime now = LocalDateTime.now();
+        ShipmentStatusRun run = ShipmentStatusRun.builder()
+                .id(UUID.randomUUID().toString())
+                .workerId(workerId)
+                .executionMode(executionMode.name())
+                .fetchMode(fetchMode.name())
+                .status(ShipmentStatusRun.Status.RUNNING)
+                .startDate(now)
+                .heartbeatDate(now)
+                .nextCheckDateBefore(nextCheckDateBefore)
+                .build();
+        if (!enabled) {
+            return run;
+        }
+
+        try {
+            // Offset pages shift as shipments are processed, a PAGED checkpoint cannot be resumed
+            if (fetchMode != ShipmentStatusUpdateJob.FetchMode.PAGED) {
+                shipmentStatusRunRepository.takeOverInterruptedRun(fetchMode.name(), now.minus(staleAfter), run.getId())
+                        .ifPresent(interruptedRun -> {
+                            log.warn("Resuming shipment status update run {} started {} by {}, interrupted after {} shipments",
+                                    interruptedRun.getId(), interruptedRun.getStartDate(), interruptedRun.getWorkerId(),
+                                    interruptedRun.getProcessedShipments());
+                            run.setResumedFrom(interruptedRun.getId());
+                            run.setNextCheckDateBefore(interruptedRun.getNextCheckDateBefore());
+                            run.setCheckpoint(interruptedRun.getCheckpoint());
+                        });
+            }
+            save(run);
+        } catch (RuntimeException e) {
+            log.warn("Could not record the start of shipment status update run {}", run.getId(), e);
+        }
+        return run;
+    }
+
+    /**
+     * Keyset position to resume from, null to read the due shipments from the start.
+     */
+    public DueShipmentCursor resumeCursor(ShipmentStatusRun run) {
+        ShipmentStatusRun.Checkpoint checkpoint = run.getCheckpoint();
+        return checkpoint == null
+                ? null
+                : new DueShipmentCursor(checkpoint.getProcessingPriority(), checkpoint.getNextCheckDate(), checkpoint.getShipmentId());
+    }
+
+    /**
+     * Record the progress of a run.
+     * @param cursor The last due shipment of the last page written back, along with the pages before it,
+     * null when the fetch mode has no keyset
+     */
+    public void checkpoint(ShipmentStatusRun run, DueShipmentCursor cursor, long processedShipments, ShipmentStatusRunTally tally) {
+        if (cursor != null) {
+            run.setCheckpoint(new ShipmentStatusRun.Checkpoint(cursor.processingPriority(), cursor.nextCheckDate(), cursor.id()));
+        }
+        record(run, processedShipments, tally);
+    }
+
+    public void complete(ShipmentStatusRun run, long processedShipments, long remainingShipments, ShipmentStatusRunTally tally) {
+        run.setRemainingShipments(remainingShipments);
+        end(run, ShipmentStatusRun.Status.COMPLETED, processedShipments, tally);
+    }
+
+    public void fail(ShipmentStatusRun run, long processedShipments, ShipmentStatusRunTally tally, Throwable error) {
+        run.setError(error.toString());
+        end(run, ShipmentStatusRun.Status.FAILED, processedShipments, tally);
+    }
+
+    /**
+     * The most recent runs, latest first.
+     */
+    public List<ShipmentStatusRun> recentRuns(int limit) {
+        return shipmentStatusRunRepository.findAllByOrderByStartDateDesc(PageRequest.of(0, limit));
+    }
+
+    public Optional<ShipmentStatusRun> findRun(String runId) {
+        return shipmentStatusRunRepository.findById(runId);
+    }
+
+    private void end(ShipmentStatusRun run, ShipmentStatusRun.Status status, long processedShipments, ShipmentStatusRunTally tally) {
+        if (run.getStatus() != ShipmentStatusRun.Status.RUNNING) {
+            return;
+        }
+        run.setEndDate(LocalDateTime.now());
+        run.setStatus(status);
+        record(run, processedShipments, tally);
+    }
+
+    private void record(ShipmentStatusRun run, long processedShipments, ShipmentStatusRunTally tally) {
+        run.setHeartbeatDate(LocalDateTime.now());
+        run.setProcessedShipments(processedShipments);
+        run.setOutcomes(tally.outcomes());
+        run.setStageMillis(tally.stageMillis());
+        run.setCarrierTimings(tally.carrierTimings());
+        if (!enabled || run.getVersion() == null) {
+            // Not recorded at start, nor later
+            return;
+        }
+
+        try {
+            save(run);
+        } catch (OptimisticLockingFailureException e) {
+            // Taken over by a worker that saw no heartbeat for too long: its entry is no longer ours to write
+            log.warn("Shipment status update run {} was taken over by another worker, no longer recorded", run.getId());
+            run.setStatus(ShipmentStatusRun.Status.INTERRUPTED);
+            run.setVersion(null);
+        } catch (RuntimeException e) {
+            log.warn("Could not record shipment status update run {}", run.getId(), e);
+        }
+    }
+
+    private void save(ShipmentStatusRun run) {
+        run.setVersion(shipmentStatusRunRepository.save(run).getVersion());
+    }
+}
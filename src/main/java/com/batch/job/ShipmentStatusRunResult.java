@@ -0,0 +1,22 @@
+package com.batch.job;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a status update run, used to plan the next one.
+ * @param executed False when the run was skipped because another one was active
+ * @param processedShipments The number of shipments claimed and processed
+ * @param remainingShipments The number of shipments still due when the run ended
+ * @param elapsed The run duration
+ * @param averageCarrierLatency The average duration of the carrier calls of the run
+ */
+public record ShipmentStatusRunResult(
+        boolean executed,
+        long processedShipments,
+        long remainingShipments,
+        Duration elapsed,
+        Duration averageCarrierLatency) {
+
+    public static final ShipmentStatusRunResult SKIPPED =
+            new ShipmentStatusRunResult(false, 0, 0, Duration.ZERO, Duration.ZERO);
+}
@@ -0,0 +1,93 @@
+package com.batch.job;
+
+import com.batch.domain.model.ShipmentStatusRun;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and timings of a single run, or of a single change stream dispatch, recorded along with the cumulative
+ * meters of {@link ShipmentStatusMetrics}. The one of a run is copied to the run ledger and gives the carrier
+ * latency the adaptive trigger reads. Safe to feed from the virtual threads of a parallel batch.
+ */
+public class ShipmentStatusRunTally {
+
+    private final ConcurrentMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> stageNanos = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CarrierTally> carriers = new ConcurrentHashMap<>();
+
+    void outcome(String outcome, long count) {
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).add(count);
+    }
+
+    void stage(String stage, long nanos) {
+        stageNanos.computeIfAbsent(stage, key -> new LongAdder()).add(nanos);
+    }
+
+    void carrierCall(String carrierName, long nanos, boolean failed) {
+        carriers.computeIfAbsent(carrierName, key -> new CarrierTally()).record(nanos, failed);
+    }
+
+    public Map<String, Long> outcomes() {
+        Map<String, Long> counts = new TreeMap<>();
+        outcomes.forEach((outcome, count) -> counts.put(outcome, count.sum()));
+        return counts;
+    }
+
+    public Map<String, Long> stageMillis() {
+        Map<String, Long> millis = new TreeMap<>();
+        stageNanos.forEach((stage, nanos) -> millis.put(stage, TimeUnit.NANOSECONDS.toMillis(nanos.sum())));
+        return millis;
+    }
+
+    public Map<String, ShipmentStatusRun.CarrierTiming> carrierTimings() {
+        Map<String, ShipmentStatusRun.CarrierTiming> timings = new TreeMap<>();
+        carriers.forEach((carrierName, tally) -> timings.put(carrierName, tally.toCarrierTiming()));
+        return timings;
+    }
+
+    /**
+     * Average duration of the carrier calls of the run, all carriers together.
+     */
+    public Duration averageCarrierLatency() {
+        long calls = 0;
+        long nanos = 0;
+        for (CarrierTally tally : carriers.values()) {
+            calls += tally.calls.sum();
+            nanos += tally.nanos.sum();
+        }
+        return calls == 0 ? Duration.ZERO : Duration.ofNanos(nanos / calls);
+    }
+
+    private static final class CarrierTally {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failedCalls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long callNanos, boolean failed) {
+            calls.increment();
+            if (failed) {
+                failedCalls.increment();
+            }
+            nanos.add(callNanos);
+            maxNanos.accumulate(callNanos);
+        }
+
+        ShipmentStatusRun.CarrierTiming toCarrierTiming() {
+            return ShipmentStatusRun.CarrierTiming.builder()
+                    .calls(calls.sum())
+                    .failedCalls(failedCalls.sum())
+                    .totalMillis(TimeUnit.NANOSECONDS.toMillis(nanos.sum()))
+                    .maxMillis(TimeUnit.NANOSECONDS.toMillis(maxNanos.get()))
+                    .build();
+        }
+    }
+}
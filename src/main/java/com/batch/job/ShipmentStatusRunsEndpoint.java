@@ -0,0 +1,40 @@
+package com.batch.job;
+
+import com.batch.domain.model.ShipmentStatusRun;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint over the run ledger: /actuator/shipmentruns for the latest runs,
+ * /actuator/shipmentruns/{id} for one of them.
+ */
+@Component
+@Endpoint(id = "shipmentruns")
+@RequiredArgsConstructor
+public class ShipmentStatusRunsEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 200;
+
+    private final ShipmentStatusRunLedger shipmentStatusRunLedger;
+
+    @ReadOperation
+    public List<ShipmentStatusRun> recentRuns(@Nullable Integer limit) {
+        int runs = limit == null ? DEFAULT_LIMIT : Math.clamp(limit, 1, MAX_LIMIT);
+        return shipmentStatusRunLedger.recentRuns(runs);
+    }
+
+    /**
+     * @return The run, null (404) when unknown or expired
+     */
+    @ReadOperation
+    public ShipmentStatusRun run(@Selector String id) {
+        return shipmentStatusRunLedger.findRun(id).orElse(null);
+    }
+}
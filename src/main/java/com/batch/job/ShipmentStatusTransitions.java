@@ -0,0 +1,262 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingStatus;
+import com.batch.repository.ShipmentStateUpdate;
+import com.batch.service.carrier.CarrierTrackingService;
+import com.batch.service.carrier.CarrierTrackingServiceFactory;
+import com.batch.service.carrier.CarrierUnavailableException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * State transitions of a claimed shipment once its carrier was polled, failed or was not called,
+ * shared by the blocking and the reactive status update jobs so both apply the same retry rules.
+ * Every transition releases the shipment and is counted in {@link ShipmentStatusMetrics} and in the tally
+ * of the run or call it belongs to.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShipmentStatusTransitions {
+
+    private final CarrierTrackingServiceFactory carrierTrackingServiceFactory;
+    private final ShipmentStatusMetrics shipmentStatusMetrics;
+    private final NextCheckPolicy nextCheckPolicy;
+
+    @Value("${batch.shipment.status.update.max-retry:3}")
+    private int maxRetry;
+
+    @Value("${batch.shipment.status.update.retry-delay-hours:2}")
+    private int retryDelayHours;
+
+    // Delay before shipments of an unavailable carrier are checked again
+    @Value("${batch.shipment.status.update.carrier-unavailable-delay:5m}")
+    private Duration carrierUnavailableDelay;
+
+    /**
+     * Group the shipments by carrier and split each group in chunks of the carrier batch size.
+     * Shipments without tracking service or tracking number are handled as errors right away.
+     * @param shipments The claimed shipments
+     * @param tally The tally of the run
+     * @param rejected Receives the updates of the shipments that cannot be tracked
+     * @return The chunks, one carrier request each
+     */
+    List<TrackingChunk> groupIntoTrackingChunks(List<Shipment> shipments, ShipmentStatusRunTally tally,
+                                                Consumer<ShipmentStateUpdate> rejected) {
+        Map<CarrierTrackingService, List<Shipment>> shipmentsByService = new LinkedHashMap<>();
+
+        for (Shipment shipment : shipments) {
+            // Get tracking service for this carrier
+            CarrierTrackingService trackingService =
+                    carrierTrackingServiceFactory.findTrackingService(shipment.getCarrierName());
+
+            if (trackingService == null) {
+                rejected.accept(processingFailed(shipment, "No tracking service found for carrier: " + shipment.getCarrierName(), tally));
+                continue;
+            }
+
+            String trackingNumber = shipment.getTrackingNumber();
+            if (trackingNumber == null || trackingNumber.isBlank()) {
+                rejected.accept(processingFailed(shipment, "Missing tracking number for shipment: " + shipment.getId(), tally));
+                continue;
+            }
+
+            shipmentsByService.computeIfAbsent(trackingService, service -> new ArrayList<>()).add(shipment);
+        }
+
+        List<TrackingChunk> chunks = new ArrayList<>();
+        shipmentsByService.forEach((trackingService, carrierShipments) -> {
+            int chunkSize = Math.max(trackingService.getMaxBatchSize(), 1);
+            for (int from = 0; from < carrierShipments.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, carrierShipments.size());
+                chunks.add(new TrackingChunk(trackingService, carrierShipments.subList(from, to)));
+            }
+        });
+        return chunks;
+    }
+
+    /**
+     * Apply the statuses returned for a chunk, shipments the carrier returned nothing for are retried.
+     * @param chunk The tracked chunk
+     * @param statuses The statuses by tracking number
+     * @param tally The tally of the run
+     * @return One update per shipment of the chunk
+     */
+    List<ShipmentStateUpdate> chunkTracked(TrackingChunk chunk, Map<String, ShippingStatus> statuses,
+                                           ShipmentStatusRunTally tally) {
+        List<ShipmentStateUpdate> updates = new ArrayList<>(chunk.shipments().size());
+        for (Shipment shipment : chunk.shipments()) {
+            try {
+                ShippingStatus status = statuses.get(shipment.getTrackingNumber());
+                if (status == null) {
+                    updates.add(processingFailed(shipment, "No shipping status returned for tracking number: "
+                            + shipment.getTrackingNumber(), tally));
+                    continue;
+                }
+                updates.add(statusReceived(shipment, status, tally));
+            } catch (Exception e) {
+                log.error("Error processing shipment {}: {}", shipment.getId(), e.getMessage(), e);
+                updates.add(processingFailed(shipment, e.getMessage(), tally));
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * Handle a failed tracking request: the shipments are deferred when the carrier was not called,
+     * each one spends a retry otherwise.
+     * @param chunk The chunk of the request
+     * @param error The failure
+     * @param tally The tally of the run
+     * @return One update per shipment of the chunk
+     */
+    List<ShipmentStateUpdate> chunkFailed(TrackingChunk chunk, Throwable error, ShipmentStatusRunTally tally) {
+        if (error instanceof CarrierUnavailableException) {
+            log.warn("Deferring {} shipments: {}", chunk.shipments().size(), error.getMessage());
+            return chunk.shipments().stream().map(shipment -> deferred(shipment, tally)).toList();
+        }
+
+        log.error("Error tracking {} shipments with carrier {}: {}",
+                chunk.shipments().size(), chunk.carrierName(), error.getMessage(), error);
+        return chunk.shipments().stream()
+                .map(shipment -> processingFailed(shipment, error.getMessage(), tally))
+                .toList();
+    }
+
+    /**
+     * Record the latest event returned by the carrier and schedule the next check.
+     * @param shipment The claimed shipment
+     * @param status The status returned by the carrier
+     * @param tally The tally of the run
+     * @return The update releasing the shipment
+     */
+    ShipmentStateUpdate statusReceived(Shipment shipment, ShippingStatus status, ShipmentStatusRunTally tally) {
+        // Get the most recent event
+        Optional<ShippingStatus.ShippingEvent> latestEvent = status.getLatestEvent();
+
+        if (latestEvent.isEmpty()) {
+            // No events found, set to retry later
+            return processingFailed(shipment, "No shipping events found", tally);
+        }
+
+        ShippingStatus.ShippingEvent event = latestEvent.get();
+        // Mongo stores dates to the millisecond, compare the fingerprint at that precision
+        LocalDateTime eventDate = event.getDate().truncatedTo(ChronoUnit.MILLIS);
+        boolean statusChanged = !eventDate.equals(shipment.getLastEventDate())
+                || !event.getEventType().name().equals(shipment.getLastEventType());
+        List<ShippingStatus.ShippingEvent> newEvents = statusChanged
+                ? eventsAfter(status, shipment.getLastEventDate())
+                : List.of();
+
+        // For terminal statuses, no more checks needed
+        boolean isTerminal = EventType.SHIPMENT_DELIVERED == event.getEventType() ||
+                EventType.UNKNOWN == event.getEventType();
+
+        LocalDateTime now = LocalDateTime.now();
+        shipment.setLastEventType(event.getEventType().name());
+        shipment.setLastEventDate(eventDate);
+        shipment.setProcessingInProgress(false);
+        shipment.setRetryCount(0);
+        if (statusChanged) {
+            shipment.setLastUpdateDate(now);
+        }
+
+        // If not terminal, schedule next check according to the event and how long ago it happened
+        if (!isTerminal) {
+            Duration eventAge = Duration.between(eventDate, now);
+            Duration nextCheckDelay = nextCheckPolicy.nextCheckDelay(shipment.getCarrierName(),
+                    event.getEventType(), eventAge.isNegative() ? Duration.ZERO : eventAge);
+            shipment.setNextCheckDate(now.plus(nextCheckDelay));
+        } else {
+            shipment.setNextCheckDate(null);  // No more checks for terminal statuses
+        }
+
+        if (!statusChanged) {
+            // Same event as the last poll: only reschedule and release the shipment
+            shipmentStatusMetrics.shipmentUnchanged(tally);
+            log.debug("No new event for shipment {}: {}", shipment.getId(), shipment.getLastEventType());
+            return ShipmentStateUpdate.unchanged(shipment);
+        }
+
+        shipmentStatusMetrics.shipmentUpdated(tally);
+        log.info("Updated status for shipment {}: {} ({} new events)",
+                shipment.getId(), shipment.getLastEventType(), newEvents.size());
+        return ShipmentStateUpdate.of(shipment, newEvents);
+    }
+
+    /**
+     * Check the shipment again later without spending a retry, the carrier was not called.
+     * @param shipment The claimed shipment
+     * @param tally The tally of the run
+     * @return The update releasing the shipment
+     */
+    ShipmentStateUpdate deferred(Shipment shipment, ShipmentStatusRunTally tally) {
+        shipment.setProcessingInProgress(false);
+        shipment.setNextCheckDate(LocalDateTime.now().plus(carrierUnavailableDelay));
+
+        shipmentStatusMetrics.shipmentDeferred(tally);
+        return ShipmentStateUpdate.unchanged(shipment);
+    }
+
+    /**
+     * Spend a retry, backing off the next check, or mark the shipment as unknown once the retries are exhausted.
+     * @param shipment The claimed shipment
+     * @param errorMessage Why the shipment could not be tracked
+     * @param tally The tally of the run
+     * @return The update releasing the shipment
+     */
+    ShipmentStateUpdate processingFailed(Shipment shipment, String errorMessage, ShipmentStatusRunTally tally) {
+        Integer retryCount = shipment.getRetryCount();
+        retryCount = retryCount == null ? 1 : retryCount + 1;
+        shipment.setRetryCount(retryCount);
+
+        // If exceeded max retries, mark as unknown
+        if (retryCount >= maxRetry) {
+            shipment.setLastEventType(EventType.UNKNOWN.name());
+            shipment.setNextCheckDate(null);  // No more checks
+            shipmentStatusMetrics.shipmentMarkedUnknown(tally);
+        } else {
+            shipmentStatusMetrics.shipmentRetried(tally);
+            // Exponential backoff for retries
+            int delayHours = retryDelayHours * retryCount;
+            shipment.setNextCheckDate(LocalDateTime.now().plusHours(delayHours));
+        }
+
+        shipment.setProcessingInProgress(false);
+        shipment.setLastUpdateDate(LocalDateTime.now());
+
+        log.warn("Processing error for shipment {}: {}. Retry count: {}",
+                shipment.getId(), errorMessage, retryCount);
+        return ShipmentStateUpdate.of(shipment);
+    }
+
+    /**
+     * Events more recent than the last one seen, oldest first.
+     */
+    private static List<ShippingStatus.ShippingEvent> eventsAfter(ShippingStatus status, LocalDateTime lastEventDate) {
+        List<ShippingStatus.ShippingEvent> newEvents = new ArrayList<>();
+        for (ShippingStatus.ShippingEvent event : status.getEvents()) {
+            if (event.getDate() != null
+                    && (lastEventDate == null || event.getDate().truncatedTo(ChronoUnit.MILLIS).isAfter(lastEventDate))) {
+                newEvents.add(event);
+            }
+        }
+        newEvents.sort(Comparator.comparing(ShippingStatus.ShippingEvent::getDate));
+        return newEvents;
+    }
+}
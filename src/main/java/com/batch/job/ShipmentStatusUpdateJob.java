@@ -2,65 +2,222 @@ package com.batch.job;
 
 import com.batch.domain.enumeration.EventType;
 import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShipmentStatusRun;
 import com.batch.domain.model.ShippingStatus;
+import com.batch.repository.BulkUpdateResult;
+import com.batch.repository.DueShipmentCursor;
 import com.batch.repository.ShipmentRepository;
+import com.batch.service.carrier.CarrierCallGuard;
 import com.batch.service.carrier.CarrierTrackingService;
-import com.batch.service.carrier.CarrierTrackingServiceFactory;
+import com.batch.service.carrier.CarrierUnavailableException;
+import com.batch.service.carrier.ShippingStatusCache;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ShipmentStatusUpdateJob {
 
+    static final List<String> TERMINAL_STATUSES = List.of(
+            EventType.SHIPMENT_DELIVERED.name(),
+            EventType.UNKNOWN.name()
+    );
+
     private final ShipmentRepository shipmentRepository;
-    private final CarrierTrackingServiceFactory carrierTrackingServiceFactory;
+    private final ShipmentStatusTransitions shipmentStatusTransitions;
+    private final CarrierCallGuard carrierCallGuard;
+    private final ShippingStatusCache shippingStatusCache;
+    private final ShipmentStatusMetrics shipmentStatusMetrics;
+    private final ShipmentStatusRunLedger shipmentStatusRunLedger;
+
+    // Identifies this worker in the shipment leases
+    private final String leaseOwner = UUID.randomUUID().toString();
+
+    // A single active run per instance, whatever triggers it
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    // Chunks of a carrier tracked at the same time in PARALLEL mode, runs and change stream dispatches together.
+    // Sized as the carrier bulkhead: chunks wait here for a call slot instead of timing out on the bulkhead.
+    private final ConcurrentMap<String, Semaphore> carrierCallSlots = new ConcurrentHashMap<>();
+
+    @Value("${batch.shipment.status.update.execution-mode:SEQUENTIAL}")
+    private ExecutionMode executionMode;
+
+    @Value("${batch.shipment.status.update.fetch-mode:KEYSET}")
+    private FetchMode fetchMode;
 
     @Value("${batch.shipment.status.update.page-size:100}")
     private int pageSize;
 
-    @Value("${batch.shipment.status.update.max-retry:3}")
-    private int maxRetry;
+    @Value("${batch.shipment.status.update.lease-duration-minutes:10}")
+    private int leaseDurationMinutes;
 
-    @Value("${batch.shipment.status.update.retry-delay-hours:2}")
-    private int retryDelayHours;
+    // 0 drains everything due in a single run
+    @Value("${batch.shipment.status.update.max-shipments-per-run:0}")
+    private long maxShipmentsPerRun;
 
     /**
-     * Scheduled job to process shipments pending status updates
-     * Runs every 30 minutes by default
+     * Process shipments pending status updates, triggered by {@link ShipmentStatusUpdateScheduler}.
+     * Skipped when a run is already active on this instance.
+     * @return The outcome of the run
      */
-    @Scheduled(cron = "${batch.shipment.status.update.cron:0 0/30 * * * ?}")
-    public void processShipmentStatusUpdates() {
-        log.info("Starting shipment status update batch job");
+    public ShipmentStatusRunResult processShipmentStatusUpdates() {
+        if (!runLock.tryLock()) {
+            log.warn("Shipment status update batch job already running, skipping this trigger");
+            return ShipmentStatusRunResult.SKIPPED;
+        }
+        try {
+            return runShipmentStatusUpdates();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * Claim and process shipments as they come due, outside of any run: used by {@link ShipmentChangeStreamScheduler}.
+     * Shipments rescheduled since, or claimed by a run, are skipped.
+     * Counted in the meters but not in the tally of a run running at the same time.
+     * @param shipmentIds The ids of the due shipments
+     * @return The number of shipments claimed and processed
+     */
+    public int processDueShipments(List<String> shipmentIds) {
+        return claimAndProcessShipments(shipmentIds, LocalDateTime.now(), new ShipmentStatusRunTally());
+    }
+
+    private ShipmentStatusRunResult runShipmentStatusUpdates() {
+        log.info("Starting shipment status update batch job in {} mode", executionMode);
+
+        long startTime = System.nanoTime();
+        long processedShipments;
 
+        Timer.Sample runSample = shipmentStatusMetrics.startRun();
+        ShipmentStatusRunTally tally = new ShipmentStatusRunTally();
+        ShipmentStatusRun run = shipmentStatusRunLedger.start(leaseOwner, executionMode, fetchMode, LocalDateTime.now());
+        try {
+            long releasedShipments = shipmentRepository.releaseExpiredLeases(LocalDateTime.now());
+            if (releasedShipments > 0) {
+                log.warn("Released {} shipments whose lease expired", releasedShipments);
+            }
+            recordBacklog();
+
+            processedShipments = switch (fetchMode) {
+                case KEYSET -> processDueShipmentsByKeyset(run, tally, shipmentRepository::findDueShipmentsAfter);
+                case PRIORITY -> processDueShipmentsByKeyset(run, tally, shipmentRepository::findPrioritizedDueShipmentsAfter);
+                case PAGED -> processDueShipmentsByPage(run, tally);
+            };
+        } catch (RuntimeException e) {
+            shipmentStatusRunLedger.fail(run, run.getProcessedShipments(), tally, e);
+            throw e;
+        } finally {
+            shipmentStatusMetrics.stopRun(runSample);
+        }
+        long remainingShipments = recordBacklog();
+        shipmentStatusRunLedger.complete(run, processedShipments, remainingShipments, tally);
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startTime);
+        log.info("Completed shipment status update batch job: {} shipments in {} ms ({} shipments/sec, {} mode), {} still due",
+                processedShipments, elapsed.toMillis(), throughput(processedShipments, elapsed), executionMode,
+                remainingShipments);
+
+        return new ShipmentStatusRunResult(
+                true, processedShipments, remainingShipments, elapsed, tally.averageCarrierLatency());
+    }
+
+    private long recordBacklog() {
+        long dueShipments = shipmentRepository.countShipmentsForStatusUpdate(LocalDateTime.now(), TERMINAL_STATUSES);
+        shipmentStatusMetrics.backlog(dueShipments);
+        return dueShipments;
+    }
+
+    private boolean isRunLimitReached(long processedShipments) {
+        return maxShipmentsPerRun > 0 && processedShipments >= maxShipmentsPerRun;
+    }
+
+    private long processDueShipmentsByPage(ShipmentStatusRun run, ShipmentStatusRunTally tally) {
+        long processedShipments = 0;
         boolean hasMoreShipments = true;
         int pageNumber = 0;
 
         while (hasMoreShipments) {
-            Page<Shipment> shipments = findShipmentsForProcessing(pageNumber, pageSize);
+            int page = pageNumber;
+            Page<Shipment> shipments = shipmentStatusMetrics.recordFetch(tally, () -> findShipmentsForProcessing(page, pageSize));
 
             if (shipments.isEmpty()) {
                 hasMoreShipments = false;
                 continue;
             }
 
-            processShipmentBatch(shipments.getContent());
+            processedShipments += claimAndProcessShipments(
+                    shipments.map(Shipment::getId).getContent(), LocalDateTime.now(), tally);
+            // Heartbeat and counts only, offset pages are not resumed
+            shipmentStatusRunLedger.checkpoint(run, null, processedShipments, tally);
 
             pageNumber++;
-            hasMoreShipments = !shipments.isLast();
+            hasMoreShipments = !shipments.isLast() && !isRunLimitReached(processedShipments);
+        }
+        return processedShipments;
+    }
+
+    private long processDueShipmentsByKeyset(ShipmentStatusRun run, ShipmentStatusRunTally tally,
+                                             DueShipmentFinder dueShipmentFinder) {
+        // Upper bound fixed for the whole run: shipments rescheduled by this run are left to the next one.
+        // A run resuming an interrupted one keeps its bound and starts after its checkpoint.
+        LocalDateTime runStartDate = run.getNextCheckDateBefore();
+        long processedShipments = 0;
+        DueShipmentCursor cursor = shipmentStatusRunLedger.resumeCursor(run);
+        List<DueShipmentCursor> dueShipments;
+
+        do {
+            DueShipmentCursor after = cursor;
+            dueShipments = shipmentStatusMetrics.recordFetch(tally, () -> dueShipmentFinder.find(
+                    after, runStartDate, TERMINAL_STATUSES, pageSize));
+
+            if (dueShipments.isEmpty()) {
+                break;
+            }
+
+            cursor = dueShipments.getLast();
+            processedShipments += claimAndProcessShipments(
+                    dueShipments.stream().map(DueShipmentCursor::id).toList(), runStartDate, tally);
+            shipmentStatusRunLedger.checkpoint(run, cursor, processedShipments, tally);
+        } while (dueShipments.size() == pageSize && !isRunLimitReached(processedShipments));
+
+        return processedShipments;
+    }
+
+    private int claimAndProcessShipments(List<String> shipmentIds, LocalDateTime nextCheckDateBefore,
+                                         ShipmentStatusRunTally tally) {
+        LocalDateTime leaseExpiresAt = LocalDateTime.now().plusMinutes(leaseDurationMinutes);
+        List<Shipment> shipments = shipmentStatusMetrics.recordClaim(tally, () -> shipmentRepository.claimShipments(
+                shipmentIds, nextCheckDateBefore, leaseOwner, leaseExpiresAt));
+
+        if (shipments.size() < shipmentIds.size()) {
+            log.debug("{} of {} due shipments were claimed by another worker",
+                    shipmentIds.size() - shipments.size(), shipmentIds.size());
         }
 
-        log.info("Completed shipment status update batch job");
+        if (!shipments.isEmpty()) {
+            processShipmentBatch(shipments, tally);
+        }
+        return shipments.size();
     }
 
     private Page<Shipment> findShipmentsForProcessing(int pageNumber, int pageSize) {
@@ -69,101 +226,127 @@ public class ShipmentStatusUpdateJob {
         return shipmentRepository.findShipmentsForStatusUpdate(
                 false,                              // processingInProgress = false
                 now,                                // nextCheckDate before or equal to now
-                List.of(                            // exclude terminal statuses
-                        EventType.SHIPMENT_DELIVERED.name(),
-                        EventType.UNKNOWN.name()
-                ),
+                TERMINAL_STATUSES,                  // exclude terminal statuses
                 PageRequest.of(pageNumber, pageSize)
         );
     }
 
-    private void processShipmentBatch(List<Shipment> shipments) {
+    private void processShipmentBatch(List<Shipment> shipments, ShipmentStatusRunTally tally) {
         log.info("Processing batch of {} shipments", shipments.size());
 
-        for (Shipment shipment : shipments) {
-            try {
-                // Mark shipment as processing to prevent concurrent updates
-                shipment.setProcessingInProgress(true);
-                shipmentRepository.save(shipment);
-
-                // Get tracking service for this carrier
-                Optional<CarrierTrackingService> trackingService =
-                        carrierTrackingServiceFactory.getTrackingService(shipment.getCarrierName());
-
-                if (trackingService.isEmpty()) {
-                    handleProcessingError(shipment, "No tracking service found for carrier: " + shipment.getCarrierName());
-                    continue;
-                }
-
-                // Get updated shipping status
-                String trackingNumber = shipment.getTrackingNumber();
-                if (trackingNumber == null || trackingNumber.isBlank()) {
-                    handleProcessingError(shipment, "Missing tracking number for shipment: " + shipment.getId());
-                    continue;
-                }
-
-                ShippingStatus status = trackingService.get().getShippingStatus(trackingNumber);
-                updateShipmentStatus(shipment, status);
-
-            } catch (Exception e) {
-                log.error("Error processing shipment {}: {}", shipment.getId(), e.getMessage(), e);
-                handleProcessingError(shipment, e.getMessage());
-            }
-        }
-    }
+        // Own buffer per batch: a change stream dispatch and a run never flush each other's updates
+        ShipmentStateWriteBehind writeBehind = new ShipmentStateWriteBehind(shipmentRepository);
+        List<TrackingChunk> chunks = shipmentStatusTransitions.groupIntoTrackingChunks(
+                shipments, tally, writeBehind::enqueue);
 
-    private void updateShipmentStatus(Shipment shipment, ShippingStatus status) {
-        // Get the most recent event
-        Optional<ShippingStatus.ShippingEvent> latestEvent = status.getEvents().stream()
-                .max((e1, e2) -> e1.getDate().compareTo(e2.getDate()));
+        if (executionMode == ExecutionMode.PARALLEL) {
+            processTrackingChunksInParallel(chunks, writeBehind, tally);
+        } else {
+            chunks.forEach(chunk -> processTrackingChunk(chunk, writeBehind, tally));
+        }
 
-        if (latestEvent.isPresent()) {
-            ShippingStatus.ShippingEvent event = latestEvent.get();
-            shipment.setLastEventType(event.getEventType().name());
+        BulkUpdateResult result = shipmentStatusMetrics.recordSave(tally, writeBehind::flush);
+        if (result.failed() > 0) {
+            shipmentStatusMetrics.writesFailed(tally, result.failed());
+        }
+    }
 
-            // For terminal statuses, no more checks needed
-            boolean isTerminal = EventType.SHIPMENT_DELIVERED == event.getEventType() ||
-                    EventType.UNKNOWN == event.getEventType();
+    private void processTrackingChunksInParallel(List<TrackingChunk> chunks, ShipmentStateWriteBehind writeBehind,
+                                                 ShipmentStatusRunTally tally) {
+        // One virtual thread per chunk, closing the executor waits for the whole page.
+        // Each one waits for a call slot of its carrier, a slow carrier holds its chunks back without failing them.
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            chunks.forEach(chunk -> executor.submit(() -> processTrackingChunkInSlot(chunk, writeBehind, tally)));
+        }
+    }
 
-            shipment.setProcessingInProgress(false);
-            shipment.setLastUpdateDate(LocalDateTime.now());
-            shipment.setRetryCount(0);
+    private void processTrackingChunkInSlot(TrackingChunk chunk, ShipmentStateWriteBehind writeBehind,
+                                            ShipmentStatusRunTally tally) {
+        String carrierName = chunk.carrierName();
+        Semaphore callSlots = carrierCallSlots.computeIfAbsent(carrierName,
+                carrier -> new Semaphore(Math.max(carrierCallGuard.maxConcurrentCalls(carrier), 1)));
+        try {
+            callSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeBehind.enqueueAll(shipmentStatusTransitions.chunkFailed(
+                    chunk, new CarrierUnavailableException(carrierName, e), tally));
+            return;
+        }
+        try {
+            processTrackingChunk(chunk, writeBehind, tally);
+        } finally {
+            callSlots.release();
+        }
+    }
 
-            // If not terminal, schedule next check
-            if (!isTerminal) {
-                shipment.setNextCheckDate(LocalDateTime.now().plusHours(retryDelayHours));
-            } else {
-                shipment.setNextCheckDate(null);  // No more checks for terminal statuses
-            }
-        } else {
-            // No events found, set to retry later
-            handleProcessingError(shipment, "No shipping events found");
+    private void processTrackingChunk(TrackingChunk chunk, ShipmentStateWriteBehind writeBehind,
+                                      ShipmentStatusRunTally tally) {
+        CarrierTrackingService trackingService = chunk.trackingService();
+        String carrierName = chunk.carrierName();
+
+        // Get updated shipping statuses, one carrier request for the tracking numbers of the chunk not cached
+        Map<String, ShippingStatus> statuses;
+        try {
+            statuses = shippingStatusCache.getShippingStatuses(carrierName, chunk.trackingNumbers(),
+                    missingTrackingNumbers -> carrierCallGuard.execute(carrierName, () -> shipmentStatusMetrics.recordCarrierCall(tally, carrierName,
+                            () -> trackingService.getShippingStatuses(missingTrackingNumbers))));
+        } catch (Exception e) {
+            writeBehind.enqueueAll(shipmentStatusTransitions.chunkFailed(chunk, e, tally));
+            return;
         }
 
-        shipmentRepository.save(shipment);
-        log.info("Updated status for shipment {}: {}", shipment.getId(), shipment.getLastEventType());
+        writeBehind.enqueueAll(shipmentStatusTransitions.chunkTracked(chunk, statuses, tally));
     }
 
-    private void handleProcessingError(Shipment shipment, String errorMessage) {
-        Integer retryCount = shipment.getRetryCount();
-        retryCount = retryCount == null ? 1 : retryCount + 1;
-        shipment.setRetryCount(retryCount);
+    /**
+     * One of the keyset queries of {@link ShipmentRepository}.
+     */
+    @FunctionalInterface
+    private interface DueShipmentFinder {
+        List<DueShipmentCursor> find(DueShipmentCursor cursor, LocalDateTime nextCheckDateBefore,
+                                     List<String> excludedStatuses, int limit);
+    }
 
-        // If exceeded max retries, mark as unknown
-        if (retryCount >= maxRetry) {
-            shipment.setLastEventType(EventType.UNKNOWN.name());
-            shipment.setNextCheckDate(null);  // No more checks
-        } else {
-            // Exponential backoff for retries
-            int delayHours = retryDelayHours * retryCount;
-            shipment.setNextCheckDate(LocalDateTime.now().plusHours(delayHours));
-        }
+    private static long throughput(long processedShipments, Duration elapsed) {
+        return processedShipments * 1_000 / Math.max(elapsed.toMillis(), 1);
+    }
 
-        shipment.setProcessingInProgress(false);
-        shipment.setLastUpdateDate(LocalDateTime.now());
+    /**
+     * How a page of due shipments is processed.
+     */
+    public enum ExecutionMode {
+        /**
+         * One shipment after the other on the scheduler thread
+         */
+        SEQUENTIAL,
+        /**
+         * Each page fanned out over virtual threads by carrier chunk, as many in flight per carrier as its bulkhead allows
+         */
+        PARALLEL,
+        /**
+         * Run by {@link ReactiveShipmentStatusUpdateJob}: due shipments streamed through non-blocking
+         * carrier calls into bulk writes, bounded per carrier, with backpressure
+         */
+        REACTIVE
+    }
 
-        shipmentRepository.save(shipment);
-        log.warn("Processing error for shipment {}: {}. Retry count: {}",
-                shipment.getId(), errorMessage, retryCount);
+    /**
+     * How due shipments are read from Mongo.
+     */
+    public enum FetchMode {
+        /**
+         * Offset pages with a count query, cost grows with the page number
+         */
+        PAGED,
+        /**
+         * Keyset on nextCheckDate and id, constant cost per batch
+         */
+        KEYSET,
+        /**
+         * Keyset on processingPriority, nextCheckDate and id: when a run cannot drain the backlog,
+         * the shipments in transit and the new ones are processed before the ones retried
+         */
+        PRIORITY
     }
 }
\ No newline at end of file
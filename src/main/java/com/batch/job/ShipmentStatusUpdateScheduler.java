@@ -0,0 +1,144 @@
+package com.batch.job;
+
+import com.batch.repository.ShipmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Schedules the shipment status update job.
+ * In CRON mode the job runs on a fixed cron expression, in ADAPTIVE mode the delay before the next run
+ * follows the amount of shipments coming due and the carrier latency observed during the last run.
+ * In REACTIVE execution mode the runs are the ones of {@link ReactiveShipmentStatusUpdateJob}.
+ * With the change stream enabled, shipments are processed as they come due by {@link ShipmentChangeStreamScheduler}
+ * and the runs, in either scheduling mode, only sweep what it missed on the less frequent sweep cron.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ShipmentStatusUpdateScheduler implements SchedulingConfigurer {
+
+    private final ShipmentStatusUpdateJob shipmentStatusUpdateJob;
+    private final ReactiveShipmentStatusUpdateJob reactiveShipmentStatusUpdateJob;
+    private final ShipmentRepository shipmentRepository;
+
+    @Value("${batch.shipment.status.update.scheduling-mode:CRON}")
+    private SchedulingMode schedulingMode;
+
+    @Value("${batch.shipment.status.update.execution-mode:SEQUENTIAL}")
+    private ShipmentStatusUpdateJob.ExecutionMode executionMode;
+
+    @Value("${batch.shipment.status.update.cron:0 0/30 * * * ?}")
+    private String cron;
+
+    @Value("${batch.shipment.status.update.change-stream.enabled:false}")
+    private boolean changeStreamEnabled;
+
+    // Runs only sweep what the change stream missed, see ShipmentChangeStreamScheduler
+    @Value("${batch.shipment.status.update.change-stream.sweep-cron:0 0 * * * ?}")
+    private String sweepCron;
+
+    @Value("${batch.shipment.status.update.page-size:100}")
+    private int pageSize;
+
+    @Value("${batch.shipment.status.update.adaptive.min-interval:30s}")
+    private Duration minInterval;
+
+    @Value("${batch.shipment.status.update.adaptive.max-interval:30m}")
+    private Duration maxInterval;
+
+    @Value("${batch.shipment.status.update.adaptive.lookahead:30m}")
+    private Duration lookahead;
+
+    @Value("${batch.shipment.status.update.adaptive.target-carrier-latency:1s}")
+    private Duration targetCarrierLatency;
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        if (changeStreamEnabled) {
+            // The change stream drains the due shipments, adaptive runs would poll them a second time
+            taskRegistrar.addCronTask(this::processShipmentStatusUpdates, sweepCron);
+            log.info("Scheduled shipment status update sweeps with cron {}, due shipments dispatched from the change stream{}",
+                    sweepCron, schedulingMode == SchedulingMode.ADAPTIVE ? ", adaptive scheduling not used" : "");
+        } else if (schedulingMode == SchedulingMode.ADAPTIVE) {
+            AdaptiveTrigger trigger = new AdaptiveTrigger();
+            taskRegistrar.addTriggerTask(
+                    () -> trigger.completed(processShipmentStatusUpdates()), trigger);
+            log.info("Scheduled shipment status updates every {} to {}", minInterval, maxInterval);
+        } else {
+            taskRegistrar.addCronTask(this::processShipmentStatusUpdates, cron);
+            log.info("Scheduled shipment status updates with cron {}", cron);
+        }
+    }
+
+    private ShipmentStatusRunResult processShipmentStatusUpdates() {
+        return executionMode == ShipmentStatusUpdateJob.ExecutionMode.REACTIVE
+                ? reactiveShipmentStatusUpdateJob.processShipmentStatusUpdates()
+                : shipmentStatusUpdateJob.processShipmentStatusUpdates();
+    }
+
+    /**
+     * Compute the delay before the next run.
+     * Shipments still due after a run are picked up again after the minimum interval. Otherwise the next run
+     * is planned for when about a page of shipments will be due, and stretched when carriers answer slower
+     * than the target latency.
+     * @param result The outcome of the last run
+     * @return The delay, between the minimum and maximum intervals
+     */
+    Duration nextDelay(ShipmentStatusRunResult result) {
+        Duration delay;
+        if (result.remainingShipments() > 0) {
+            delay = minInterval;
+        } else {
+            long dueSoon = shipmentRepository.countShipmentsForStatusUpdate(
+                    LocalDateTime.now().plus(lookahead), ShipmentStatusUpdateJob.TERMINAL_STATUSES);
+            delay = dueSoon == 0 ? maxInterval : lookahead.multipliedBy(pageSize).dividedBy(dueSoon);
+        }
+
+        Duration carrierLatency = result.averageCarrierLatency();
+        if (carrierLatency.compareTo(targetCarrierLatency) > 0) {
+            delay = delay.multipliedBy(carrierLatency.toMillis()).dividedBy(Math.max(1, targetCarrierLatency.toMillis()));
+        }
+
+        if (delay.compareTo(minInterval) < 0) {
+            return minInterval;
+        }
+        return delay.compareTo(maxInterval) > 0 ? maxInterval : delay;
+    }
+
+    private class AdaptiveTrigger implements Trigger {
+
+        private volatile Duration delay = minInterval;
+
+        void completed(ShipmentStatusRunResult result) {
+            // A skipped run says nothing about the load, keep the current delay
+            if (!result.executed()) {
+                return;
+            }
+            delay = nextDelay(result);
+            log.info("Next shipment status update in {} ({} shipments processed, {} still due, carrier latency {} ms)",
+                    delay, result.processedShipments(), result.remainingShipments(),
+                    result.averageCarrierLatency().toMillis());
+        }
+
+        @Override
+        public Instant nextExecution(TriggerContext triggerContext) {
+            Instant lastCompletion = triggerContext.lastCompletion();
+            return (lastCompletion != null ? lastCompletion : triggerContext.getClock().instant()).plus(delay);
+        }
+    }
+
+    public enum SchedulingMode {
+        CRON,
+        ADAPTIVE
+    }
+}
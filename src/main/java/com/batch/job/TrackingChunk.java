@@ -0,0 +1,23 @@
+package com.batch.job;
+
+import com.batch.domain.model.Shipment;
+import com.batch.service.carrier.CarrierTrackingService;
+
+import java.util.List;
+
+/**
+ * Shipments of a single carrier sent in one tracking request.
+ */
+record TrackingChunk(CarrierTrackingService trackingService, List<Shipment> shipments) {
+
+    String carrierName() {
+        return trackingService.getCarrierName();
+    }
+
+    List<String> trackingNumbers() {
+        return shipments.stream()
+                .map(Shipment::getTrackingNumber)
+                .distinct()
+                .toList();
+    }
+}
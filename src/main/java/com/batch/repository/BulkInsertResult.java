@@ -0,0 +1,18 @@
+package com.batch.repository;
+
+import java.util.Set;
+
+/**
+ * Outcome of an unordered bulk insert.
+ * @param requested The number of documents sent
+ * @param duplicates The positions of the documents rejected by a unique index
+ * @param failed The positions of the documents not inserted for another reason
+ */
+public record BulkInsertResult(int requested, Set<Integer> duplicates, Set<Integer> failed) {
+
+    public static final BulkInsertResult EMPTY = new BulkInsertResult(0, Set.of(), Set.of());
+
+    public int inserted() {
+        return requested - duplicates.size() - failed.size();
+    }
+}
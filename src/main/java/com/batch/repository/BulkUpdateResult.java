@@ -0,0 +1,12 @@
+package com.batch.repository;
+
+/**
+ * Outcome of an unordered bulk update.
+ * @param requested The number of update operations sent
+ * @param updated The number of documents matched and updated
+ * @param failed The number of operations that failed or matched no document
+ */
+public record BulkUpdateResult(int requested, int updated, int failed) {
+
+    public static final BulkUpdateResult EMPTY = new BulkUpdateResult(0, 0, 0);
+}
@@ -0,0 +1,22 @@
+package com.batch.repository;
+
+import org.springframework.data.annotation.PersistenceCreator;
+
+import java.time.LocalDateTime;
+
+/**
+ * Keyset position in the due shipments stream: the last seen nextCheckDate and id.
+ * @param processingPriority The processingPriority of the last shipment read, only read in priority order
+ * @param nextCheckDate The nextCheckDate of the last shipment read
+ * @param id The id of the last shipment read, breaking ties on nextCheckDate
+ */
+public record DueShipmentCursor(Integer processingPriority, LocalDateTime nextCheckDate, String id) {
+
+    @PersistenceCreator
+    public DueShipmentCursor {
+    }
+
+    public DueShipmentCursor(LocalDateTime nextCheckDate, String id) {
+        this(null, nextCheckDate, id);
+    }
+}
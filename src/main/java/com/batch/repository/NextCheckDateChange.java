@@ -0,0 +1,15 @@
+package com.batch.repository;
+
+import org.bson.BsonValue;
+
+import java.time.LocalDateTime;
+
+/**
+ * A shipment inserted, replaced, or whose nextCheckDate was set or removed, read from the change stream.
+ * @param id The id of the shipment
+ * @param nextCheckDate The new nextCheckDate, null when removed
+ * @param lastEventType The last event type when it is part of the change, null otherwise
+ * @param resumeToken The position of the change in the stream, to resume listening after it
+ */
+public record NextCheckDateChange(String id, LocalDateTime nextCheckDate, String lastEventType, BsonValue resumeToken) {
+}
@@ -0,0 +1,75 @@
+package com.batch.repository;
+
+import com.batch.domain.model.Shipment;
+import org.bson.BsonValue;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Non-blocking shipment queries of the reactive status update pipeline, on the reactive driver.
+ * Same queries, indexes and semantics as their {@link ShipmentRepositoryCustom} counterparts.
+ */
+public interface ReactiveShipmentRepository {
+
+    /**
+     * See {@link ShipmentRepositoryCustom#findDueShipmentsAfter}.
+     */
+    Mono<List<DueShipmentCursor>> findDueShipmentsAfter(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit);
+
+    /**
+     * See {@link ShipmentRepositoryCustom#findPrioritizedDueShipmentsAfter}.
+     */
+    Mono<List<DueShipmentCursor>> findPrioritizedDueShipmentsAfter(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit);
+
+    /**
+     * See {@link ShipmentRepositoryCustom#countShipmentsForStatusUpdate}.
+     */
+    Mono<Long> countShipmentsForStatusUpdate(LocalDateTime nextCheckDateBefore, List<String> excludedStatuses);
+
+    /**
+     * See {@link ShipmentRepositoryCustom#claimShipments}.
+     * @return The shipments claimed by this worker
+     */
+    Flux<Shipment> claimShipments(
+            Collection<String> shipmentIds,
+            LocalDateTime nextCheckDateBefore,
+            String leaseOwner,
+            LocalDateTime leaseExpiresAt);
+
+    /**
+     * See {@link ShipmentRepositoryCustom#releaseExpiredLeases}.
+     */
+    Mono<Long> releaseExpiredLeases(LocalDateTime now);
+
+    /**
+     * See {@link ShipmentRepositoryCustom#updateShipmentStates}.
+     */
+    Mono<BulkUpdateResult> updateShipmentStates(List<ShipmentStateUpdate> updates);
+
+    /**
+     * Insert new shipments in a single unordered bulk: a shipment rejected does not prevent the others.
+     * @param shipments The shipments, without id
+     * @return The positions of the shipments not inserted
+     */
+    Mono<BulkInsertResult> insertShipments(List<Shipment> shipments);
+
+    /**
+     * Listen to the change stream of the shipments for inserts, replacements and nextCheckDate changes.
+     * Requires a replica set. Only the fields needed to schedule the shipment are read from the stream.
+     * @param resumeAfter The resume token of the last change received, null to start from now
+     * @return The changes, endless until cancelled or failed
+     */
+    Flux<NextCheckDateChange> watchNextCheckDateChanges(BsonValue resumeAfter);
+}
@@ -0,0 +1,222 @@
+package com.batch.repository;
+
+import com.batch.domain.model.Shipment;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.batch.repository.ShipmentRepositoryCustomImpl.bulkUpdateResult;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.claimQuery;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.claimUpdate;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.claimedQuery;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.dueCriteria;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.dueShipmentsQuery;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.expiredLeasesQuery;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.prioritizedDueShipmentsQuery;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.releaseLeaseUpdate;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.stateUpdateQuery;
+import static com.batch.repository.ShipmentRepositoryCustomImpl.toUpdate;
+
+@Repository
+@RequiredArgsConstructor
+public class ReactiveShipmentRepositoryImpl implements ReactiveShipmentRepository {
+
+    // Inserts and replacements, and the updates that set or remove nextCheckDate, i.e. the job writes and
+    // the reschedules, projected on what scheduling needs: not the tracking events of the shipment
+    private static final List<Document> NEXT_CHECK_DATE_CHANGES = List.of(
+            new Document("$match", new Document("$or", List.of(
+                    new Document("operationType", new Document("$in", List.of("insert", "replace"))),
+                    new Document("updateDescription.updatedFields.nextCheckDate", new Document("$exists", true)),
+                    new Document("updateDescription.removedFields", "nextCheckDate")))),
+            new Document("$project", new Document("operationType", 1)
+                    .append("documentKey", 1)
+                    .append("fullDocument.nextCheckDate", 1)
+                    .append("fullDocument.lastEventType", 1)
+                    .append("updateDescription.updatedFields.nextCheckDate", 1)
+                    .append("updateDescription.updatedFields.lastEventType", 1)
+                    .append("updateDescription.removedFields", 1)));
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Value("${batch.shipment.status.update.event-history-size:50}")
+    private int eventHistorySize;
+
+    @Override
+    public Mono<List<DueShipmentCursor>> findDueShipmentsAfter(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit) {
+        return reactiveMongoTemplate.query(Shipment.class)
+                .as(DueShipmentCursor.class)
+                .matching(dueShipmentsQuery(cursor, nextCheckDateBefore, excludedStatuses, limit))
+                .all()
+                .collectList();
+    }
+
+    @Override
+    public Mono<List<DueShipmentCursor>> findPrioritizedDueShipmentsAfter(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit) {
+        return reactiveMongoTemplate.query(Shipment.class)
+                .as(DueShipmentCursor.class)
+                .matching(prioritizedDueShipmentsQuery(cursor, nextCheckDateBefore, excludedStatuses, limit))
+                .all()
+                .collectList();
+    }
+
+    @Override
+    public Mono<Long> countShipmentsForStatusUpdate(LocalDateTime nextCheckDateBefore, List<String> excludedStatuses) {
+        return reactiveMongoTemplate.count(Query.query(dueCriteria(nextCheckDateBefore, excludedStatuses)), Shipment.class);
+    }
+
+    @Override
+    public Flux<Shipment> claimShipments(
+            Collection<String> shipmentIds,
+            LocalDateTime nextCheckDateBefore,
+            String leaseOwner,
+            LocalDateTime leaseExpiresAt) {
+        if (shipmentIds.isEmpty()) {
+            return Flux.empty();
+        }
+
+        return reactiveMongoTemplate.updateMulti(
+                        claimQuery(shipmentIds, nextCheckDateBefore), claimUpdate(leaseOwner, leaseExpiresAt), Shipment.class)
+                .thenMany(reactiveMongoTemplate.find(claimedQuery(shipmentIds, leaseOwner), Shipment.class));
+    }
+
+    @Override
+    public Mono<Long> releaseExpiredLeases(LocalDateTime now) {
+        return reactiveMongoTemplate.updateMulti(expiredLeasesQuery(now), releaseLeaseUpdate(), Shipment.class)
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    @Override
+    public Mono<BulkUpdateResult> updateShipmentStates(List<ShipmentStateUpdate> updates) {
+        if (updates.isEmpty()) {
+            return Mono.just(BulkUpdateResult.EMPTY);
+        }
+
+        ReactiveBulkOperations bulkOperations = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Shipment.class);
+        updates.forEach(update -> bulkOperations.updateOne(stateUpdateQuery(update), toUpdate(update, eventHistorySize)));
+
+        return bulkOperations.execute()
+                // Unordered: the operations that did not fail are applied anyway
+                .onErrorResume(BulkOperationException.class, e -> Mono.just(e.getResult()))
+                .map(result -> bulkUpdateResult(updates.size(), result));
+    }
+
+    @Override
+    public Mono<BulkInsertResult> insertShipments(List<Shipment> shipments) {
+        if (shipments.isEmpty()) {
+            return Mono.just(BulkInsertResult.EMPTY);
+        }
+
+        return reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Shipment.class)
+                .insert(shipments)
+                .execute()
+                .map(result -> new BulkInsertResult(shipments.size(), Set.of(), Set.of()))
+                // Unordered: the other shipments are inserted anyway. Translated to DuplicateKeyException
+                // when one of the errors is a duplicate key, the write errors are on the driver exception
+                .onErrorResume(e -> NestedExceptionUtils.getMostSpecificCause(e) instanceof MongoBulkWriteException,
+                        e -> Mono.just(bulkInsertResult(shipments.size(),
+                                (MongoBulkWriteException) NestedExceptionUtils.getMostSpecificCause(e))));
+    }
+
+    @Override
+    public Flux<NextCheckDateChange> watchNextCheckDateChanges(BsonValue resumeAfter) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                .filter(NEXT_CHECK_DATE_CHANGES.toArray(Document[]::new));
+        if (resumeAfter != null) {
+            options.resumeAfter(resumeAfter);
+        }
+
+        return reactiveMongoTemplate.changeStream(
+                        null, reactiveMongoTemplate.getCollectionName(Shipment.class), options.build(), Document.class)
+                .mapNotNull(this::toNextCheckDateChange);
+    }
+
+    private NextCheckDateChange toNextCheckDateChange(ChangeStreamEvent<Document> event) {
+        ChangeStreamDocument<Document> change = event.getRaw();
+        if (change == null || change.getDocumentKey() == null) {
+            return null;
+        }
+        String shipmentId = shipmentId(change.getDocumentKey().get("_id"));
+
+        if (event.getOperationType() == OperationType.UPDATE) {
+            // A removed nextCheckDate is in removedFields, not in updatedFields
+            BsonDocument updatedFields = change.getUpdateDescription() == null
+                    || change.getUpdateDescription().getUpdatedFields() == null
+                    ? new BsonDocument()
+                    : change.getUpdateDescription().getUpdatedFields();
+            BsonValue nextCheckDate = updatedFields.get("nextCheckDate");
+            BsonValue lastEventType = updatedFields.get("lastEventType");
+            return new NextCheckDateChange(
+                    shipmentId,
+                    nextCheckDate != null && nextCheckDate.isDateTime()
+                            ? toLocalDateTime(new Date(nextCheckDate.asDateTime().getValue()))
+                            : null,
+                    lastEventType != null && lastEventType.isString() ? lastEventType.asString().getValue() : null,
+                    event.getResumeToken());
+        }
+
+        Document shipment = change.getFullDocument();
+        return new NextCheckDateChange(
+                shipmentId,
+                shipment == null ? null : toLocalDateTime(shipment.getDate("nextCheckDate")),
+                shipment == null ? null : shipment.getString("lastEventType"),
+                event.getResumeToken());
+    }
+
+    private LocalDateTime toLocalDateTime(Date date) {
+        // Same zone as the mapping of the Shipment dates
+        return date == null
+                ? null
+                : reactiveMongoTemplate.getConverter().getConversionService().convert(date, LocalDateTime.class);
+    }
+
+    private static BulkInsertResult bulkInsertResult(int requested, MongoBulkWriteException e) {
+        Set<Integer> duplicates = new HashSet<>();
+        Set<Integer> failed = new HashSet<>();
+        for (BulkWriteError error : e.getWriteErrors()) {
+            if (ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                duplicates.add(error.getIndex());
+            } else {
+                failed.add(error.getIndex());
+            }
+        }
+        return new BulkInsertResult(requested, Set.copyOf(duplicates), Set.copyOf(failed));
+    }
+
+    private static String shipmentId(BsonValue id) {
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+}
@@ -0,0 +1,18 @@
+package com.batch.repository;
+
+import com.batch.domain.model.Shipment;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes the processing priority of shipments saved as whole documents, state updates carry their own.
+ */
+@Component
+public class ShipmentPriorityCallback implements BeforeConvertCallback<Shipment> {
+
+    @Override
+    public Shipment onBeforeConvert(Shipment shipment, String collection) {
+        shipment.setProcessingPriority(shipment.computeProcessingPriority());
+        return shipment;
+    }
+}
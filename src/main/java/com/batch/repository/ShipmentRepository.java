@@ -9,20 +9,17 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
-public interface ShipmentRepository extends MongoRepository<Shipment, String> {
-
-    Optional<Shipment> findByTrackingNumber(String trackingNumber);
-
-    Optional<Shipment> findByReference(String reference);
+public interface ShipmentRepository extends MongoRepository<Shipment, String>, ShipmentRepositoryCustom {
 
     /**
      * Find shipments that need status updates based on multiple criteria:
      * - Not currently being processed
      * - Due for a status check (nextCheckDate <= now)
      * - Not in terminal status (delivered, unknown)
+     * Offset based, prefer {@link ShipmentRepositoryCustom#findDueShipmentsAfter} when the job flips
+     * processingInProgress on the rows it reads.
      */
     @Query("{'processingInProgress': ?0, 'nextCheckDate': {$lte: ?1}, 'lastEventType': {$nin: ?2}}")
     Page<Shipment> findShipmentsForStatusUpdate(
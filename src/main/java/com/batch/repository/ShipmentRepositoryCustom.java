@@ -0,0 +1,139 @@
+package com.batch.repository;
+
+import com.batch.domain.model.Shipment;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Shipment queries that cannot be expressed as derived or annotated repository queries.
+ */
+public interface ShipmentRepositoryCustom {
+
+    /**
+     * Collection of the terminal shipments moved out of the shipment collection
+     */
+    String ARCHIVE_COLLECTION = "shipment_requests_archive";
+
+    /**
+     * Find a shipment by tracking number, in the archive when it is no longer in the shipment collection.
+     * @param trackingNumber The tracking number
+     * @return The shipment, or empty if not found
+     */
+    Optional<Shipment> findByTrackingNumber(String trackingNumber);
+
+    /**
+     * Find a shipment by reference, in the archive when it is no longer in the shipment collection.
+     * @param reference The reference
+     * @return The shipment, or empty if not found
+     */
+    Optional<Shipment> findByReference(String reference);
+
+    /**
+     * Find the keys of the next batch of shipments due for a status update, ordered by nextCheckDate
+     * then id, resuming right after the given cursor. No skip and no count query is issued, and only
+     * indexed fields are returned, so the cost of a batch does not depend on how far the cursor is
+     * in the backlog.
+     * @param cursor The last position read, or null to start from the beginning
+     * @param nextCheckDateBefore Upper bound of nextCheckDate, fixed for the whole run
+     * @param excludedStatuses Terminal statuses to exclude
+     * @param limit The maximum batch size
+     * @return The keys of the due shipments after the cursor, the last one being the next cursor
+     */
+    List<DueShipmentCursor> findDueShipmentsAfter(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit);
+
+    /**
+     * Find the keys of the next batch of shipments due for a status update, ordered by processingPriority
+     * descending then nextCheckDate and id, resuming right after the given cursor. Served by an index like
+     * {@link #findDueShipmentsAfter}, shipments without priority come last.
+     * @param cursor The last position read, or null to start from the highest priority
+     * @param nextCheckDateBefore Upper bound of nextCheckDate, fixed for the whole run
+     * @param excludedStatuses Terminal statuses to exclude
+     * @param limit The maximum batch size
+     * @return The keys of the due shipments after the cursor, the last one being the next cursor
+     */
+    List<DueShipmentCursor> findPrioritizedDueShipmentsAfter(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit);
+
+    /**
+     * Count the shipments due for a status update and not being processed.
+     * @param nextCheckDateBefore Upper bound of nextCheckDate
+     * @param excludedStatuses Terminal statuses to exclude
+     * @return The number of due shipments
+     */
+    long countShipmentsForStatusUpdate(LocalDateTime nextCheckDateBefore, List<String> excludedStatuses);
+
+    /**
+     * Atomically claim the given shipments for a worker. Each shipment is claimed by at most one
+     * worker: only the ones still due and not processed are flagged with the lease.
+     * @param shipmentIds The candidate shipment ids
+     * @param nextCheckDateBefore The shipments must still be due at this date
+     * @param leaseOwner The worker claiming the shipments
+     * @param leaseExpiresAt The date after which the claim can be taken over
+     * @return The shipments claimed by this worker
+     */
+    List<Shipment> claimShipments(
+            Collection<String> shipmentIds,
+            LocalDateTime nextCheckDateBefore,
+            String leaseOwner,
+            LocalDateTime leaseExpiresAt);
+
+    /**
+     * Release the shipments whose lease expired, e.g. because their worker died mid-batch,
+     * so that they can be claimed again. Shipments flagged before leases existed have no
+     * expiry and are released as well.
+     * @param now The current date
+     * @return The number of released shipments
+     */
+    long releaseExpiredLeases(LocalDateTime now);
+
+    /**
+     * Apply the given state updates as one unordered bulk of field level $set operations.
+     * Null values are unset, matching what a full document save would store.
+     * New events are pushed to the event history, trimmed to its most recent entries.
+     * @param updates The state updates
+     * @return How many documents were updated and how many operations failed
+     */
+    BulkUpdateResult updateShipmentStates(List<ShipmentStateUpdate> updates);
+
+    /**
+     * Find the ids of terminal shipments last updated before the given date, read from an index only.
+     * @param lastUpdateBefore Upper bound of lastUpdateDate
+     * @param terminalStatuses The terminal statuses
+     * @param limit The maximum batch size
+     * @return The ids of the shipments to archive
+     */
+    List<String> findArchivableShipmentIds(LocalDateTime lastUpdateBefore, List<String> terminalStatuses, int limit);
+
+    /**
+     * Move shipments to the archive collection: copied server side, then deleted from the shipment collection.
+     * Shipments updated since they were selected are left in place. Copies replace previous ones,
+     * a batch interrupted between the copy and the delete can be archived again.
+     * @param shipmentIds The ids of the shipments to archive
+     * @param lastUpdateBefore Upper bound of lastUpdateDate, as used to select them
+     * @param terminalStatuses The terminal statuses
+     * @return The number of shipments removed from the shipment collection
+     */
+    long archiveShipments(Collection<String> shipmentIds, LocalDateTime lastUpdateBefore, List<String> terminalStatuses);
+
+    /**
+     * Estimate the number of shipments in the shipment collection, from its metadata.
+     * @return The estimated count
+     */
+    long estimatedShipmentCount();
+
+    /**
+     * Estimate the number of shipments in the archive collection, from its metadata.
+     * @return The estimated count
+     */
+    long estimatedArchivedShipmentCount();
+}
@@ -0,0 +1,315 @@
+package com.batch.repository;
+
+import com.batch.domain.model.Shipment;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class ShipmentRepositoryCustomImpl implements ShipmentRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${batch.shipment.status.update.event-history-size:50}")
+    private int eventHistorySize;
+
+    @Override
+    public Optional<Shipment> findByTrackingNumber(String trackingNumber) {
+        return findWithArchiveFallback(Query.query(Criteria.where("trackingNumber").is(trackingNumber)));
+    }
+
+    @Override
+    public Optional<Shipment> findByReference(String reference) {
+        return findWithArchiveFallback(Query.query(Criteria.where("reference").is(reference)));
+    }
+
+    private Optional<Shipment> findWithArchiveFallback(Query query) {
+        Shipment shipment = mongoTemplate.findOne(query, Shipment.class);
+        if (shipment == null) {
+            shipment = mongoTemplate.findOne(query, Shipment.class, ARCHIVE_COLLECTION);
+        }
+        return Optional.ofNullable(shipment);
+    }
+
+    @Override
+    public List<DueShipmentCursor> findDueShipmentsAfter(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit) {
+        return mongoTemplate.query(Shipment.class)
+                .as(DueShipmentCursor.class)
+                .matching(dueShipmentsQuery(cursor, nextCheckDateBefore, excludedStatuses, limit))
+                .all();
+    }
+
+    @Override
+    public List<DueShipmentCursor> findPrioritizedDueShipmentsAfter(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit) {
+        return mongoTemplate.query(Shipment.class)
+                .as(DueShipmentCursor.class)
+                .matching(prioritizedDueShipmentsQuery(cursor, nextCheckDateBefore, excludedStatuses, limit))
+                .all();
+    }
+
+    @Override
+    public long countShipmentsForStatusUpdate(LocalDateTime nextCheckDateBefore, List<String> excludedStatuses) {
+        return mongoTemplate.count(Query.query(dueCriteria(nextCheckDateBefore, excludedStatuses)), Shipment.class);
+    }
+
+    @Override
+    public List<Shipment> claimShipments(
+            Collection<String> shipmentIds,
+            LocalDateTime nextCheckDateBefore,
+            String leaseOwner,
+            LocalDateTime leaseExpiresAt) {
+        if (shipmentIds.isEmpty()) {
+            return List.of();
+        }
+
+        mongoTemplate.updateMulti(
+                claimQuery(shipmentIds, nextCheckDateBefore), claimUpdate(leaseOwner, leaseExpiresAt), Shipment.class);
+        return mongoTemplate.find(claimedQuery(shipmentIds, leaseOwner), Shipment.class);
+    }
+
+    @Override
+    public long releaseExpiredLeases(LocalDateTime now) {
+        return mongoTemplate.updateMulti(expiredLeasesQuery(now), releaseLeaseUpdate(), Shipment.class).getModifiedCount();
+    }
+
+    @Override
+    public BulkUpdateResult updateShipmentStates(List<ShipmentStateUpdate> updates) {
+        if (updates.isEmpty()) {
+            return BulkUpdateResult.EMPTY;
+        }
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Shipment.class);
+        updates.forEach(update -> bulkOperations.updateOne(stateUpdateQuery(update), toUpdate(update, eventHistorySize)));
+
+        BulkWriteResult result;
+        try {
+            result = bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            // Unordered: the operations that did not fail are applied anyway
+            result = e.getResult();
+        }
+        return bulkUpdateResult(updates.size(), result);
+    }
+
+    @Override
+    public List<String> findArchivableShipmentIds(LocalDateTime lastUpdateBefore, List<String> terminalStatuses, int limit) {
+        Query query = new Query(archivableCriteria(lastUpdateBefore, terminalStatuses)).limit(limit);
+        query.fields().include("id");
+        return mongoTemplate.find(query, Shipment.class).stream()
+                .map(Shipment::getId)
+                .toList();
+    }
+
+    @Override
+    public long archiveShipments(Collection<String> shipmentIds, LocalDateTime lastUpdateBefore, List<String> terminalStatuses) {
+        if (shipmentIds.isEmpty()) {
+            return 0;
+        }
+
+        Criteria batchCriteria = Criteria.where("id").in(shipmentIds)
+                .andOperator(archivableCriteria(lastUpdateBefore, terminalStatuses));
+        mongoTemplate.aggregate(
+                Aggregation.newAggregation(
+                        Aggregation.match(batchCriteria),
+                        Aggregation.merge()
+                                .intoCollection(ARCHIVE_COLLECTION)
+                                .on("_id")
+                                .whenMatched(MergeOperation.WhenDocumentsMatch.replaceDocument())
+                                .whenDocumentsDontMatch(MergeOperation.WhenDocumentsDontMatch.insertNewDocument())
+                                .build()),
+                Shipment.class,
+                Document.class);
+
+        // Same criteria: a shipment updated since the copy stays, the copy is replaced when it is archived again
+        return mongoTemplate.remove(Query.query(batchCriteria), Shipment.class).getDeletedCount();
+    }
+
+    @Override
+    public long estimatedShipmentCount() {
+        return mongoTemplate.estimatedCount(Shipment.class);
+    }
+
+    @Override
+    public long estimatedArchivedShipmentCount() {
+        return mongoTemplate.estimatedCount(ARCHIVE_COLLECTION);
+    }
+
+    /**
+     * Served by terminal_shipments_idx, partial on the terminal statuses.
+     */
+    private static Criteria archivableCriteria(LocalDateTime lastUpdateBefore, List<String> terminalStatuses) {
+        return Criteria.where("lastEventType").in(terminalStatuses)
+                .and("lastUpdateDate").lt(lastUpdateBefore);
+    }
+
+    /**
+     * The filter is evaluated atomically per document, concurrent claims cannot both match.
+     */
+    static Query claimQuery(Collection<String> shipmentIds, LocalDateTime nextCheckDateBefore) {
+        return Query.query(Criteria.where("id").in(shipmentIds)
+                .and("processingInProgress").is(false)
+                .and("nextCheckDate").lte(nextCheckDateBefore));
+    }
+
+    static Update claimUpdate(String leaseOwner, LocalDateTime leaseExpiresAt) {
+        return new Update()
+                .set("processingInProgress", true)
+                .set("leaseOwner", leaseOwner)
+                .set("leaseExpiresAt", leaseExpiresAt);
+    }
+
+    static Query claimedQuery(Collection<String> shipmentIds, String leaseOwner) {
+        Query claimedQuery = Query.query(Criteria.where("id").in(shipmentIds)
+                .and("processingInProgress").is(true)
+                .and("leaseOwner").is(leaseOwner));
+        // Processing only compares the last event fingerprint, the history is not read back
+        claimedQuery.fields().exclude("eventHistory");
+        return claimedQuery;
+    }
+
+    static Query expiredLeasesQuery(LocalDateTime now) {
+        return Query.query(Criteria.where("processingInProgress").is(true)
+                .orOperator(
+                        Criteria.where("leaseExpiresAt").lt(now),
+                        Criteria.where("leaseExpiresAt").exists(false)));
+    }
+
+    static Update releaseLeaseUpdate() {
+        return new Update()
+                .set("processingInProgress", false)
+                .unset("leaseOwner")
+                .unset("leaseExpiresAt");
+    }
+
+    static BulkUpdateResult bulkUpdateResult(int requested, BulkWriteResult result) {
+        int updated = result.getMatchedCount();
+        return new BulkUpdateResult(requested, updated, requested - updated);
+    }
+
+    static Query stateUpdateQuery(ShipmentStateUpdate state) {
+        Criteria criteria = Criteria.where("id").is(state.id());
+        if (state.leaseOwner() != null) {
+            // Fenced on the lease: if it expired and another worker took the shipment over, skip
+            criteria.and("leaseOwner").is(state.leaseOwner());
+        }
+        return Query.query(criteria);
+    }
+
+    static Update toUpdate(ShipmentStateUpdate state, int eventHistorySize) {
+        Update update = new Update();
+        if (state.statusChanged()) {
+            setOrUnset(update, "lastEventType", state.lastEventType());
+            setOrUnset(update, "lastEventDate", state.lastEventDate());
+            setOrUnset(update, "lastUpdateDate", state.lastUpdateDate());
+        }
+        setOrUnset(update, "nextCheckDate", state.nextCheckDate());
+        setOrUnset(update, "processingPriority", state.processingPriority());
+        setOrUnset(update, "retryCount", state.retryCount());
+        setOrUnset(update, "processingInProgress", state.processingInProgress());
+        if (!state.newEvents().isEmpty()) {
+            update.push("eventHistory")
+                    .slice(-eventHistorySize)
+                    .each(state.newEvents().toArray());
+        }
+        return update
+                .unset("leaseOwner")
+                .unset("leaseExpiresAt");
+    }
+
+    private static void setOrUnset(Update update, String field, Object value) {
+        if (value == null) {
+            update.unset(field);
+        } else {
+            update.set(field, value);
+        }
+    }
+
+    /**
+     * Keyset query covered by due_shipments_open_idx: equality on processingInProgress,
+     * then range and sort on nextCheckDate and _id, projected on indexed fields only.
+     */
+    static Query dueShipmentsQuery(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit) {
+        Criteria criteria = dueCriteria(nextCheckDateBefore, excludedStatuses);
+
+        if (cursor != null) {
+            criteria.orOperator(
+                    Criteria.where("nextCheckDate").gt(cursor.nextCheckDate()),
+                    Criteria.where("nextCheckDate").is(cursor.nextCheckDate()).and("id").gt(cursor.id())
+            );
+        }
+
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "nextCheckDate", "id"))
+                .limit(limit);
+        query.fields().include("id", "nextCheckDate");
+        return query;
+    }
+
+    /**
+     * Keyset query covered by prioritized_due_shipments_open_idx: equality on processingInProgress, then sort on
+     * processingPriority descending, nextCheckDate and _id. Missing priorities sort lowest and are read last.
+     */
+    static Query prioritizedDueShipmentsQuery(
+            DueShipmentCursor cursor,
+            LocalDateTime nextCheckDateBefore,
+            List<String> excludedStatuses,
+            int limit) {
+        Criteria criteria = dueCriteria(nextCheckDateBefore, excludedStatuses);
+
+        if (cursor != null) {
+            Integer priority = cursor.processingPriority();
+            Criteria afterInSamePriority = new Criteria().orOperator(
+                    Criteria.where("nextCheckDate").gt(cursor.nextCheckDate()),
+                    Criteria.where("nextCheckDate").is(cursor.nextCheckDate()).and("id").gt(cursor.id())
+            );
+            if (priority == null) {
+                criteria.and("processingPriority").is(null).andOperator(afterInSamePriority);
+            } else {
+                criteria.orOperator(
+                        Criteria.where("processingPriority").lt(priority),
+                        Criteria.where("processingPriority").is(null),
+                        Criteria.where("processingPriority").is(priority).andOperator(afterInSamePriority)
+                );
+            }
+        }
+
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "processingPriority").and(Sort.by(Sort.Direction.ASC, "nextCheckDate", "id")))
+                .limit(limit);
+        query.fields().include("id", "processingPriority", "nextCheckDate");
+        return query;
+    }
+
+    static Criteria dueCriteria(LocalDateTime nextCheckDateBefore, List<String> excludedStatuses) {
+        return Criteria.where("processingInProgress").is(false)
+                .and("nextCheckDate").lte(nextCheckDateBefore)
+                .and("lastEventType").nin(excludedStatuses);
+    }
+}
@@ -0,0 +1,63 @@
+package com.batch.repository;
+
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Field level snapshot of the processing state of a shipment, written with $set
+ * instead of rewriting the whole document. Writing it releases the lease of the shipment.
+ * @param statusChanged False when the poll returned the event already stored, only the scheduling fields are written then
+ * @param leaseOwner The lease owner the update is fenced on, the update is skipped if the lease was lost
+ * @param processingPriority The priority computed from the new state
+ * @param newEvents Events not seen before, appended to the bounded event history
+ */
+public record ShipmentStateUpdate(
+        String id,
+        boolean statusChanged,
+        String lastEventType,
+        LocalDateTime lastEventDate,
+        LocalDateTime nextCheckDate,
+        Integer processingPriority,
+        Integer retryCount,
+        LocalDateTime lastUpdateDate,
+        Boolean processingInProgress,
+        String leaseOwner,
+        List<ShippingStatus.ShippingEvent> newEvents) {
+
+    public static ShipmentStateUpdate of(Shipment shipment) {
+        return of(shipment, List.of());
+    }
+
+    public static ShipmentStateUpdate of(Shipment shipment, List<ShippingStatus.ShippingEvent> newEvents) {
+        return new ShipmentStateUpdate(
+                shipment.getId(),
+                true,
+                shipment.getLastEventType(),
+                shipment.getLastEventDate(),
+                shipment.getNextCheckDate(),
+                shipment.computeProcessingPriority(),
+                shipment.getRetryCount(),
+                shipment.getLastUpdateDate(),
+                shipment.getProcessingInProgress(),
+                shipment.getLeaseOwner(),
+                newEvents);
+    }
+
+    public static ShipmentStateUpdate unchanged(Shipment shipment) {
+        return new ShipmentStateUpdate(
+                shipment.getId(),
+                false,
+                shipment.getLastEventType(),
+                shipment.getLastEventDate(),
+                shipment.getNextCheckDate(),
+                shipment.computeProcessingPriority(),
+                shipment.getRetryCount(),
+                shipment.getLastUpdateDate(),
+                shipment.getProcessingInProgress(),
+                shipment.getLeaseOwner(),
+                List.of());
+    }
+}
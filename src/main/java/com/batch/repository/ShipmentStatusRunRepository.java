@@ -0,0 +1,17 @@
+package com.batch.repository;
+
+import com.batch.domain.model.ShipmentStatusRun;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ShipmentStatusRunRepository extends MongoRepository<ShipmentStatusRun, String>, ShipmentStatusRunRepositoryCustom {
+
+    /**
+     * Find the most recent runs, served by the TTL index on startDate.
+     */
+    List<ShipmentStatusRun> findAllByOrderByStartDateDesc(Pageable pageable);
+}
@@ -0,0 +1,21 @@
+package com.batch.repository;
+
+import com.batch.domain.model.ShipmentStatusRun;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Run ledger updates that cannot be expressed as derived repository queries.
+ */
+public interface ShipmentStatusRunRepositoryCustom {
+
+    /**
+     * Atomically flag the most recent run that stopped reporting as interrupted, so that a single worker resumes it.
+     * @param fetchMode The fetch mode of the run to resume, its checkpoint is only meaningful in that order
+     * @param heartbeatBefore Runs without heartbeat since this date are considered stopped
+     * @param resumedBy The id of the run resuming it
+     * @return The interrupted run, or empty if none
+     */
+    Optional<ShipmentStatusRun> takeOverInterruptedRun(String fetchMode, LocalDateTime heartbeatBefore, String resumedBy);
+}
@@ -0,0 +1,35 @@
+package com.batch.repository;
+
+import com.batch.domain.model.ShipmentStatusRun;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class ShipmentStatusRunRepositoryCustomImpl implements ShipmentStatusRunRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<ShipmentStatusRun> takeOverInterruptedRun(String fetchMode, LocalDateTime heartbeatBefore, String resumedBy) {
+        // Served by running_runs_idx, partial on the running status
+        Query query = Query.query(Criteria.where("status").is(ShipmentStatusRun.Status.RUNNING)
+                        .and("fetchMode").is(fetchMode)
+                        .and("heartbeatDate").lt(heartbeatBefore))
+                .with(Sort.by(Sort.Direction.DESC, "heartbeatDate"));
+        // The version is bumped: the interrupted run, if it is only late, fails its next ledger write
+        Update update = new Update()
+                .set("status", ShipmentStatusRun.Status.INTERRUPTED)
+                .set("resumedBy", resumedBy)
+                .inc("version", 1);
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                query, update, FindAndModifyOptions.options().returnNew(true), ShipmentStatusRun.class));
+    }
+}
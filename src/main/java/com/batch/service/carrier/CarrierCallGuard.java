@@ -0,0 +1,106 @@
+package com.batch.service.carrier;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.ratelimiter.operator.RateLimiterOperator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Guards the tracking calls of each carrier with a Resilience4j circuit breaker, rate limiter and bulkhead,
+ * all named after the carrier and configured under resilience4j.* (configs.default, instances.&lt;carrier&gt;).
+ * A slow or failing carrier opens its own circuit and only holds its own call slots.
+ */
+@Component
+@RequiredArgsConstructor
+public class CarrierCallGuard {
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final RateLimiterRegistry rateLimiterRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+
+    /**
+     * Execute a carrier call if its circuit is closed, once a call slot and a quota permit are available.
+     * Only the outcome and duration of the call itself are recorded by the circuit breaker.
+     * @param carrierName The carrier name
+     * @param call The carrier call
+     * @return The result of the call
+     * @throws CarrierUnavailableException If the call was not attempted
+     */
+    public <T> T execute(String carrierName, Supplier<T> call) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(carrierName);
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(carrierName);
+        RateLimiter rateLimiter = rateLimiterRegistry.rateLimiter(carrierName);
+
+        try {
+            circuitBreaker.acquirePermission();
+        } catch (CallNotPermittedException e) {
+            throw new CarrierUnavailableException(carrierName, e);
+        }
+        try {
+            bulkhead.acquirePermission();
+        } catch (BulkheadFullException e) {
+            circuitBreaker.releasePermission();
+            throw new CarrierUnavailableException(carrierName, e);
+        }
+
+        try {
+            try {
+                RateLimiter.waitForPermission(rateLimiter);
+            } catch (RequestNotPermitted e) {
+                circuitBreaker.releasePermission();
+                throw new CarrierUnavailableException(carrierName, e);
+            }
+
+            long start = System.nanoTime();
+            try {
+                T result = call.get();
+                circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return result;
+            } catch (RuntimeException | Error e) {
+                circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                throw e;
+            }
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #execute(String, Supplier)}: the call is subscribed once a quota permit
+     * is available, without holding a thread while waiting, and if the circuit is closed.
+     * Concurrency is not bounded here, the caller subscribes to at most {@link #maxConcurrentCalls(String)} calls.
+     * @param carrierName The carrier name
+     * @param call The carrier call, not started before subscription
+     * @return The result of the call, or a {@link CarrierUnavailableException} if it was not attempted
+     */
+    public <T> Mono<T> execute(String carrierName, Mono<T> call) {
+        return call
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreakerRegistry.circuitBreaker(carrierName)))
+                // Outside the circuit breaker: a call rejected by the rate limiter is not recorded as a failure
+                .transformDeferred(RateLimiterOperator.of(rateLimiterRegistry.rateLimiter(carrierName)))
+                .onErrorMap(e -> e instanceof CallNotPermittedException || e instanceof RequestNotPermitted,
+                        e -> new CarrierUnavailableException(carrierName, e));
+    }
+
+    /**
+     * Get the concurrent call slots of a carrier, as configured on its bulkhead.
+     * @param carrierName The carrier name
+     * @return The maximum number of concurrent calls
+     */
+    public int maxConcurrentCalls(String carrierName) {
+        return bulkheadRegistry.bulkhead(carrierName).getBulkheadConfig().getMaxConcurrentCalls();
+    }
+}
@@ -0,0 +1,23 @@
+package com.batch.service.carrier;
+
+import com.batch.api.dto.ShipmentRequest;
+import com.batch.domain.model.ShippingReservationResult;
+
+/**
+ * Interface for carrier-specific shipment reservation services.
+ */
+public interface CarrierReservationService {
+
+    /**
+     * Get the carrier name handled by this service.
+     * @return The carrier name
+     */
+    String getCarrierName();
+
+    /**
+     * Reserve a shipment with the carrier: book the pickup, get its tracking number and label.
+     * @param shipmentRequest The validated shipment request
+     * @return The reservation, with a shipment error message when the carrier refused the shipment
+     */
+    ShippingReservationResult reserve(ShipmentRequest shipmentRequest);
+}
@@ -0,0 +1,46 @@
+package com.batch.service.carrier;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Factory for retrieving the reservation service of a carrier, from an immutable registry keyed by
+ * normalized carrier name built once at startup.
+ */
+@Slf4j
+@Service
+public class CarrierReservationServiceFactory {
+
+    private final Map<String, CarrierReservationService> registry;
+
+    public CarrierReservationServiceFactory(List<CarrierReservationService> reservationServices) {
+        Map<String, CarrierReservationService> services = new HashMap<>();
+        for (CarrierReservationService service : reservationServices) {
+            String carrierName = service.getCarrierName();
+            if (carrierName == null || carrierName.isBlank()) {
+                throw new IllegalStateException("Reservation service " + service.getClass().getName() + " has no carrier name");
+            }
+            CarrierReservationService duplicate = services.putIfAbsent(carrierName.toLowerCase(Locale.ROOT), service);
+            if (duplicate != null) {
+                throw new IllegalStateException("Duplicate reservation services for carrier " + carrierName
+                        + ": " + duplicate.getClass().getName() + " and " + service.getClass().getName());
+            }
+        }
+        registry = Map.copyOf(services);
+        log.info("Registered reservation services for carriers: {}", registry.keySet());
+    }
+
+    /**
+     * Get the reservation service for a specific carrier.
+     * @param carrierName The carrier name, case insensitive
+     * @return The reservation service, or null if not found
+     */
+    public CarrierReservationService findReservationService(String carrierName) {
+        return carrierName == null ? null : registry.get(carrierName.toLowerCase(Locale.ROOT));
+    }
+}
@@ -2,6 +2,10 @@ package com.batch.service.carrier;
 
 import com.batch.domain.model.ShippingStatus;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Interface for carrier-specific tracking services.
  */
@@ -19,4 +23,30 @@ public interface CarrierTrackingService {
      * @return The shipping status
      */
     ShippingStatus getShippingStatus(String trackingNumber);
+
+    /**
+     * Get the maximum number of tracking numbers the carrier accepts in a single request.
+     * @return The batch size, 1 when the carrier only supports single lookups
+     */
+    default int getMaxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Get the shipping statuses for several tracking numbers, in a single carrier request
+     * when the carrier supports it. Falls back to one {@link #getShippingStatus(String)} call
+     * per tracking number.
+     * @param trackingNumbers The tracking numbers, at most {@link #getMaxBatchSize()}
+     * @return The shipping statuses by tracking number, without the tracking numbers not found
+     */
+    default Map<String, ShippingStatus> getShippingStatuses(Collection<String> trackingNumbers) {
+        Map<String, ShippingStatus> statuses = new HashMap<>();
+        for (String trackingNumber : trackingNumbers) {
+            ShippingStatus status = getShippingStatus(trackingNumber);
+            if (status != null) {
+                statuses.put(trackingNumber, status);
+            }
+        }
+        return statuses;
+    }
 }
\ No newline at end of file
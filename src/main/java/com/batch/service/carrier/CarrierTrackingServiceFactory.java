@@ -1,21 +1,40 @@
 package com.batch.service.carrier;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * Factory for retrieving the appropriate carrier tracking service.
+ * Services are kept in an immutable registry keyed by normalized carrier name, built once at startup.
+ * Registrations at runtime swap the whole registry, so lookups never lock.
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class CarrierTrackingServiceFactory {
 
-    private final List<CarrierTrackingService> trackingServices;
+    // Normalized carrier name -> service, guarded by this
+    private Map<String, CarrierTrackingService> servicesByName;
+    // Normalized and declared carrier names -> service, what lookups read
+    private volatile Map<String, CarrierTrackingService> registry;
+
+    public CarrierTrackingServiceFactory(List<CarrierTrackingService> trackingServices) {
+        Map<String, CarrierTrackingService> services = new HashMap<>();
+        for (CarrierTrackingService service : trackingServices) {
+            CarrierTrackingService duplicate = services.putIfAbsent(normalize(service), service);
+            if (duplicate != null) {
+                throw new IllegalStateException("Duplicate tracking services for carrier " + service.getCarrierName()
+                        + ": " + duplicate.getClass().getName() + " and " + service.getClass().getName());
+            }
+        }
+        publish(services);
+        log.info("Registered tracking services for carriers: {}", servicesByName.keySet());
+    }
 
     /**
      * Get the tracking service for a specific carrier.
@@ -23,12 +42,61 @@ public class CarrierTrackingServiceFactory {
      * @return An Optional containing the tracking service, or empty if not found
      */
     public Optional<CarrierTrackingService> getTrackingService(String carrierName) {
-        if (carrierName == null || carrierName.isBlank()) {
-            return Optional.empty();
+        return Optional.ofNullable(findTrackingService(carrierName));
+    }
+
+    /**
+     * Get the tracking service for a specific carrier, without allocating when the carrier name
+     * is spelled as registered or already normalized.
+     * @param carrierName The carrier name, case insensitive
+     * @return The tracking service, or null if not found
+     */
+    public CarrierTrackingService findTrackingService(String carrierName) {
+        if (carrierName == null) {
+            return null;
         }
+        Map<String, CarrierTrackingService> services = registry;
+        CarrierTrackingService service = services.get(carrierName);
+        return service != null ? service : services.get(carrierName.toLowerCase(Locale.ROOT));
+    }
 
-        return trackingServices.stream()
-                .filter(service -> carrierName.equalsIgnoreCase(service.getCarrierName()))
-                .findFirst();
+    /**
+     * Add or replace the tracking service of a carrier at runtime.
+     * @param service The tracking service
+     * @return The replaced tracking service, or null if the carrier was not registered
+     */
+    public synchronized CarrierTrackingService register(CarrierTrackingService service) {
+        Map<String, CarrierTrackingService> services = new HashMap<>(servicesByName);
+        CarrierTrackingService replaced = services.put(normalize(service), service);
+        publish(services);
+        log.info("Registered tracking service {} for carrier {}", service.getClass().getName(), service.getCarrierName());
+        return replaced;
+    }
+
+    /**
+     * Remove the tracking service of a carrier at runtime.
+     * @param carrierName The carrier name, case insensitive
+     * @return The removed tracking service, or null if the carrier was not registered
+     */
+    public synchronized CarrierTrackingService unregister(String carrierName) {
+        Map<String, CarrierTrackingService> services = new HashMap<>(servicesByName);
+        CarrierTrackingService removed = services.remove(carrierName.toLowerCase(Locale.ROOT));
+        publish(services);
+        return removed;
+    }
+
+    private void publish(Map<String, CarrierTrackingService> services) {
+        Map<String, CarrierTrackingService> lookups = new HashMap<>(services);
+        services.values().forEach(service -> lookups.putIfAbsent(service.getCarrierName(), service));
+        servicesByName = Map.copyOf(services);
+        registry = Map.copyOf(lookups);
+    }
+
+    private static String normalize(CarrierTrackingService service) {
+        String carrierName = service.getCarrierName();
+        if (carrierName == null || carrierName.isBlank()) {
+            throw new IllegalStateException("Tracking service " + service.getClass().getName() + " has no carrier name");
+        }
+        return carrierName.toLowerCase(Locale.ROOT);
     }
-}
\ No newline at end of file
+}
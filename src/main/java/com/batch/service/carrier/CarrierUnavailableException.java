@@ -0,0 +1,18 @@
+package com.batch.service.carrier;
+
+import lombok.Getter;
+
+/**
+ * A carrier call was not attempted: the circuit of the carrier is open, its quota or its
+ * concurrent call slots are exhausted. Says nothing about the shipments of the call.
+ */
+@Getter
+public class CarrierUnavailableException extends RuntimeException {
+
+    private final String carrierName;
+
+    public CarrierUnavailableException(String carrierName, Throwable cause) {
+        super("Carrier " + carrierName + " unavailable: " + cause.getMessage(), cause);
+        this.carrierName = carrierName;
+    }
+}
@@ -0,0 +1,65 @@
+package com.batch.service.carrier;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the Chronopost SOAP clients, one pool of port proxies per service.
+ */
+@Data
+@ConfigurationProperties(prefix = "carrier.chronopost.soap")
+public class ChronopostSoapProperties {
+
+    private boolean enabled;
+
+    /**
+     * Port proxies created at startup for each service, the maximum calls in flight to a service
+     */
+    private int poolSize = 10;
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    private Duration receiveTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Wait for a free port proxy, the call is then given up as carrier unavailable
+     */
+    private Duration borrowTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Requests up to this size are sent with a Content-Length, larger ones chunked
+     */
+    private int chunkingThreshold = 4096;
+
+    private Port shipping = new Port(
+            "fr.chronopost.soap.shipping.cxf.ShippingServiceWS",
+            "https://ws.chronopost.fr/shipping-cxf/ShippingServiceWS",
+            "classpath:wsdl/chronopost/ShippingServiceWS.wsdl");
+
+    private Port tracking = new Port(
+            "fr.chronopost.soap.tracking.cxf.TrackingServiceWS",
+            "https://ws.chronopost.fr/tracking-cxf/TrackingServiceWS",
+            "classpath:wsdl/chronopost/TrackingServiceWS.wsdl");
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Port {
+
+        /**
+         * Service endpoint interface generated by wsdl2java
+         */
+        private String serviceInterface;
+
+        private String address;
+
+        /**
+         * Parsed once per pool, cached by the CXF bus
+         */
+        private String wsdlLocation;
+    }
+}
@@ -0,0 +1,298 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.ShippingStatus;
+import org.springframework.lang.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming reader of the Chronopost trackSkybillV2 SOAP responses, straight into a {@link ShippingStatus}.
+ * Single pass, no object graph: the most recent event is picked on the fly, events not more recent than the
+ * last known one are skipped before their label is read. Thread-safe.
+ */
+public class ChronopostTrackingResponseParser {
+
+    private static final String NO_ERROR = "0";
+
+    // Codes missing here are transit scans
+    private static final Map<String, EventType> EVENT_TYPES = Map.of(
+            "DC", EventType.SHIPMENT_READY,
+            "PC", EventType.SHIPMENT_HANDLED,
+            "SC", EventType.SHIPMENT_HANDLED,
+            "D", EventType.SHIPMENT_DELIVERED,
+            "D1", EventType.SHIPMENT_DELIVERED,
+            "D2", EventType.SHIPMENT_DELIVERED);
+
+    private final XMLInputFactory inputFactory;
+
+    public ChronopostTrackingResponseParser() {
+        inputFactory = XMLInputFactory.newFactory();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Read the events of a tracking response, of every parcel it lists.
+     * @param response The SOAP response
+     * @param trackingNumber The tracked skybill number
+     * @param lastKnownEventDate The date of the last event already known, null to keep every event
+     * @return The status, with the events after lastKnownEventDate and always the most recent event
+     * @throws IllegalStateException If the response is a fault, an error, or not readable, an event date included
+     */
+    public ShippingStatus parse(InputStream response, String trackingNumber, @Nullable LocalDateTime lastKnownEventDate) {
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(response);
+            return readStatus(reader, trackingNumber, lastKnownEventDate);
+        } catch (XMLStreamException | DateTimeException e) {
+            throw new IllegalStateException("Unreadable Chronopost tracking response for " + trackingNumber, e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    static EventType eventType(@Nullable String code) {
+        return code == null ? EventType.SHIPMENT_IN_PROGRESS : EVENT_TYPES.getOrDefault(code, EventType.SHIPMENT_IN_PROGRESS);
+    }
+
+    /**
+     * Carrier dates carry their offset, shipments are tracked in the local time of the application.
+     * The xs:dateTime layout of the carrier is read in place, other layouts go through the ISO formatter.
+     * @throws DateTimeException If the date is not a date, or out of range
+     */
+    @Nullable
+    static LocalDateTime eventDate(String text, ZoneId zone) {
+        String date = text.strip();
+        if (date.isEmpty()) {
+            return null;
+        }
+        LocalDateTime localDate = localDate(date);
+        if (localDate == null) {
+            TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parse(date);
+            return parsed.isSupported(ChronoField.OFFSET_SECONDS)
+                    ? OffsetDateTime.from(parsed).atZoneSameInstant(zone).toLocalDateTime()
+                    : LocalDateTime.from(parsed);
+        }
+
+        int offsetIndex = date.length() > 19 && date.charAt(19) == '.' ? fractionEnd(date) : 19;
+        if (offsetIndex == date.length()) {
+            return localDate;
+        }
+        ZoneOffset offset = offset(date, offsetIndex);
+        if (offset == null) {
+            return OffsetDateTime.parse(date).atZoneSameInstant(zone).toLocalDateTime();
+        }
+        return LocalDateTime.ofInstant(localDate.toInstant(offset), zone);
+    }
+
+    /**
+     * yyyy-MM-ddTHH:mm:ss[.S+], null for any other layout.
+     */
+    @Nullable
+    private static LocalDateTime localDate(String date) {
+        if (date.length() < 19 || date.charAt(4) != '-' || date.charAt(7) != '-' || date.charAt(10) != 'T'
+                || date.charAt(13) != ':' || date.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 2);
+        int day = digits(date, 8, 2);
+        int hour = digits(date, 11, 2);
+        int minute = digits(date, 14, 2);
+        int second = digits(date, 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) {
+            return null;
+        }
+
+        int nanos = 0;
+        if (date.length() > 20 && date.charAt(19) == '.') {
+            int end = fractionEnd(date);
+            int fractionDigits = Math.min(end - 20, 9);
+            nanos = digits(date, 20, fractionDigits);
+            if (nanos < 0) {
+                return null;
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+    }
+
+    private static int fractionEnd(String date) {
+        int end = 20;
+        while (end < date.length() && Character.isDigit(date.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Z or ±HH:mm, null for any other layout.
+     */
+    @Nullable
+    private static ZoneOffset offset(String date, int index) {
+        int length = date.length() - index;
+        if (length == 1 && date.charAt(index) == 'Z') {
+            return ZoneOffset.UTC;
+        }
+        char sign = date.charAt(index);
+        if (length != 6 || (sign != '+' && sign != '-') || date.charAt(index + 3) != ':') {
+            return null;
+        }
+        int hours = digits(date, index + 1, 2);
+        int minutes = digits(date, index + 4, 2);
+        if ((hours | minutes) < 0) {
+            return null;
+        }
+        return sign == '+' ? ZoneOffset.ofHoursMinutes(hours, minutes) : ZoneOffset.ofHoursMinutes(-hours, -minutes);
+    }
+
+    /**
+     * @return The value of the digits, -1 when one of the characters is not a digit
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private ShippingStatus readStatus(XMLStreamReader reader, String trackingNumber,
+                                      @Nullable LocalDateTime lastKnownEventDate) throws XMLStreamException {
+        // Resolved once per response, every lookup copies the default time zone
+        ZoneId zone = ZoneId.systemDefault();
+        List<ShippingStatus.ShippingEvent> newEvents = new ArrayList<>();
+        ShippingStatus.ShippingEvent latestEvent = null;
+        String errorCode = NO_ERROR;
+        String errorMessage = null;
+
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "events" -> {
+                    LocalDateTime latestDate = latestEvent == null ? null : latestEvent.getDate();
+                    ShippingStatus.ShippingEvent event = readEvent(reader, zone, latestDate, lastKnownEventDate);
+                    if (event != null) {
+                        if (lastKnownEventDate == null || event.getDate().isAfter(lastKnownEventDate)) {
+                            newEvents.add(event);
+                        }
+                        if (latestDate == null || event.getDate().isAfter(latestDate)) {
+                            latestEvent = event;
+                        }
+                    }
+                }
+                case "errorCode" -> errorCode = reader.getElementText().strip();
+                case "errorMessage" -> errorMessage = reader.getElementText();
+                case "Fault" -> throw new IllegalStateException(
+                        "Chronopost tracking fault for " + trackingNumber + ": " + readFaultString(reader));
+                default -> {
+                    // Envelope, parcels and skybill numbers: the events are read wherever they are
+                }
+            }
+        }
+
+        if (!NO_ERROR.equals(errorCode)) {
+            throw new IllegalStateException(
+                    "Chronopost tracking error " + errorCode + " for " + trackingNumber + ": " + errorMessage);
+        }
+        // The latest event is the status even when already known, it is among the new events whenever there is one
+        if (latestEvent != null && newEvents.isEmpty()) {
+            newEvents.add(latestEvent);
+        }
+        return ShippingStatus.builder()
+                .trackingNumber(trackingNumber)
+                .events(newEvents)
+                .build();
+    }
+
+    /**
+     * Read an event, from its start element to its end element.
+     * @return The event, null when it has no date, or is neither after the last known event nor the latest so far
+     */
+    @Nullable
+    private static ShippingStatus.ShippingEvent readEvent(XMLStreamReader reader, ZoneId zone,
+                                                          @Nullable LocalDateTime latestDate,
+                                                          @Nullable LocalDateTime lastKnownEventDate) throws XMLStreamException {
+        String code = null;
+        String label = null;
+        LocalDateTime date = null;
+        boolean kept = true;
+
+        int depth = 1;
+        while (depth > 0) {
+            int next = reader.next();
+            if (next == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (next == XMLStreamConstants.START_ELEMENT) {
+                if (depth > 1 || !kept) {
+                    depth++;
+                    continue;
+                }
+                // getElementText consumes the end element, depth is unchanged
+                switch (reader.getLocalName()) {
+                    case "code" -> code = reader.getElementText();
+                    case "eventLabel" -> label = reader.getElementText();
+                    case "eventDate" -> {
+                        date = eventDate(reader.getElementText(), zone);
+                        kept = date != null
+                                && (lastKnownEventDate == null || date.isAfter(lastKnownEventDate)
+                                || latestDate == null || date.isAfter(latestDate));
+                    }
+                    default -> depth++;
+                }
+            }
+        }
+
+        if (!kept || date == null) {
+            return null;
+        }
+        return ShippingStatus.ShippingEvent.builder()
+                .label(label)
+                .eventType(eventType(code))
+                .date(date)
+                .build();
+    }
+
+    private static String readFaultString(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && "faultstring".equals(reader.getLocalName())) {
+                return reader.getElementText();
+            }
+        }
+        return null;
+    }
+
+    private static void closeQuietly(@Nullable XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Nothing left to read
+            }
+        }
+    }
+}
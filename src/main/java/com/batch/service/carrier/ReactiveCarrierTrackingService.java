@@ -0,0 +1,24 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.model.ShippingStatus;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Non-blocking tracking calls, implemented along with {@link CarrierTrackingService} by the carriers whose
+ * client does not hold a thread while waiting for the carrier, typically built on the shared WebClient.Builder.
+ * The reactive status update pipeline calls the other carriers on bounded elastic threads.
+ * None of the current carriers implements it: their Feign and SOAP clients block, every call of the REACTIVE
+ * mode takes a bounded elastic thread until a carrier client is moved to WebClient.
+ */
+public interface ReactiveCarrierTrackingService {
+
+    /**
+     * Same contract as {@link CarrierTrackingService#getShippingStatuses(Collection)}, without blocking.
+     * @param trackingNumbers The tracking numbers, at most {@link CarrierTrackingService#getMaxBatchSize()}
+     * @return The shipping statuses by tracking number, without the tracking numbers not found
+     */
+    Mono<Map<String, ShippingStatus>> trackShippingStatuses(Collection<String> trackingNumbers);
+}
@@ -0,0 +1,157 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.ShippingStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the shipping statuses returned by carriers, keyed by carrier and tracking number.
+ * Entries live according to the type of their latest event, statuses without event are not cached.
+ * Hits, misses and evictions are published as cache.* meters tagged cache=carrier.shipping.status.
+ */
+public class ShippingStatusCache {
+
+    private final boolean enabled;
+    private final Cache<Key, ShippingStatus> cache;
+
+    public ShippingStatusCache(ShippingStatusCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new EventTypeExpiry(properties.getTtls(), properties.getDefaultTtl()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "carrier.shipping.status");
+    }
+
+    /**
+     * Get the shipping statuses of tracking numbers of a carrier, loading the missing ones in a single call.
+     * @param carrierName The carrier name
+     * @param trackingNumbers The tracking numbers
+     * @param loader Loads the statuses of the tracking numbers not cached, by tracking number
+     * @return The statuses by tracking number, without the tracking numbers the carrier returned nothing for
+     */
+    public Map<String, ShippingStatus> getShippingStatuses(
+            String carrierName,
+            Collection<String> trackingNumbers,
+            Function<Collection<String>, Map<String, ShippingStatus>> loader) {
+        if (!enabled) {
+            return loader.apply(trackingNumbers);
+        }
+
+        List<Key> keys = trackingNumbers.stream().map(trackingNumber -> new Key(carrierName, trackingNumber)).toList();
+        Map<Key, ShippingStatus> statuses = cache.getAll(keys, missingKeys -> {
+            List<String> missingTrackingNumbers = missingKeys.stream().map(Key::trackingNumber).toList();
+            Map<Key, ShippingStatus> loaded = new HashMap<>();
+            loader.apply(missingTrackingNumbers)
+                    .forEach((trackingNumber, status) -> loaded.put(new Key(carrierName, trackingNumber), status));
+            return loaded;
+        });
+
+        Map<String, ShippingStatus> statusesByTrackingNumber = new HashMap<>(statuses.size());
+        statuses.forEach((key, status) -> statusesByTrackingNumber.put(key.trackingNumber(), status));
+        return statusesByTrackingNumber;
+    }
+
+    /**
+     * Non-blocking variant of {@link #getShippingStatuses(String, Collection, Function)}.
+     * Concurrent misses on the same tracking number are not coalesced, each one loads it.
+     * @param carrierName The carrier name
+     * @param trackingNumbers The tracking numbers
+     * @param loader Loads the statuses of the tracking numbers not cached, by tracking number
+     * @return The statuses by tracking number, without the tracking numbers the carrier returned nothing for
+     */
+    public Mono<Map<String, ShippingStatus>> getShippingStatusesReactive(
+            String carrierName,
+            Collection<String> trackingNumbers,
+            Function<Collection<String>, Mono<Map<String, ShippingStatus>>> loader) {
+        if (!enabled) {
+            return loader.apply(trackingNumbers);
+        }
+
+        List<Key> keys = trackingNumbers.stream().map(trackingNumber -> new Key(carrierName, trackingNumber)).toList();
+        Map<String, ShippingStatus> statusesByTrackingNumber = new HashMap<>(keys.size());
+        cache.getAllPresent(keys).forEach((key, status) -> statusesByTrackingNumber.put(key.trackingNumber(), status));
+
+        List<String> missingTrackingNumbers = trackingNumbers.stream()
+                .filter(trackingNumber -> !statusesByTrackingNumber.containsKey(trackingNumber))
+                .toList();
+        if (missingTrackingNumbers.isEmpty()) {
+            return Mono.just(statusesByTrackingNumber);
+        }
+
+        return loader.apply(missingTrackingNumbers).map(loaded -> {
+            loaded.forEach((trackingNumber, status) -> {
+                cache.put(new Key(carrierName, trackingNumber), status);
+                statusesByTrackingNumber.put(trackingNumber, status);
+            });
+            return statusesByTrackingNumber;
+        });
+    }
+
+    /**
+     * Get the shipping status of a tracking number of a carrier, loading it if not cached.
+     * @param carrierName The carrier name
+     * @param trackingNumber The tracking number
+     * @param loader Loads the status of the tracking number, may return null
+     * @return The status, or empty if the carrier returned nothing
+     */
+    public Optional<ShippingStatus> getShippingStatus(
+            String carrierName,
+            String trackingNumber,
+            Function<String, ShippingStatus> loader) {
+        if (!enabled) {
+            return Optional.ofNullable(loader.apply(trackingNumber));
+        }
+        return Optional.ofNullable(cache.get(new Key(carrierName, trackingNumber), key -> loader.apply(key.trackingNumber())));
+    }
+
+    public void invalidate(String carrierName, String trackingNumber) {
+        cache.invalidate(new Key(carrierName, trackingNumber));
+    }
+
+    private record Key(String carrierName, String trackingNumber) {
+    }
+
+    private static final class EventTypeExpiry implements Expiry<Key, ShippingStatus> {
+
+        private final Map<EventType, Long> ttlNanos = new EnumMap<>(EventType.class);
+        private final long defaultTtlNanos;
+
+        private EventTypeExpiry(Map<EventType, Duration> ttls, Duration defaultTtl) {
+            ttls.forEach((eventType, ttl) -> ttlNanos.put(eventType, ttl.toNanos()));
+            this.defaultTtlNanos = defaultTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Key key, ShippingStatus status, long currentTime) {
+            return status.getLatestEvent()
+                    .map(event -> ttlNanos.getOrDefault(event.getEventType(), defaultTtlNanos))
+                    .orElse(0L);
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, ShippingStatus status, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, status, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, ShippingStatus status, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.enumeration.EventType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of the carrier shipping status cache.
+ */
+@Data
+@ConfigurationProperties(prefix = "batch.carrier.status-cache")
+public class ShippingStatusCacheProperties {
+
+    private boolean enabled = true;
+
+    private long maximumSize = 100_000;
+
+    /**
+     * Time to live of the statuses whose latest event type has no time to live of its own
+     */
+    private Duration defaultTtl = Duration.ofMinutes(5);
+
+    /**
+     * Time to live by latest event type, terminal statuses do not change anymore
+     */
+    private Map<EventType, Duration> ttls = new EnumMap<>(Map.of(
+            EventType.SHIPMENT_DELIVERED, Duration.ofHours(24),
+            EventType.UNKNOWN, Duration.ofHours(1),
+            EventType.SHIPMENT_READY, Duration.ofMinutes(10),
+            EventType.SHIPMENT_HANDLED, Duration.ofMinutes(10),
+            EventType.SHIPMENT_IN_PROGRESS, Duration.ofMinutes(2)));
+}
@@ -0,0 +1,126 @@
+package com.batch.service.carrier;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.cxf.ext.logging.LoggingFeature;
+import org.apache.cxf.frontend.ClientProxy;
+import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.ConnectionType;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Fixed pool of CXF port proxies of a SOAP service, created and configured at startup so that no call pays for
+ * the WSDL parsing and the service model. A proxy serves one call at a time: its request context and conduit
+ * are not shared, and the pool size bounds the calls in flight to the service.
+ * @param <T> The service endpoint interface
+ */
+@Slf4j
+public class SoapPortPool<T> implements AutoCloseable {
+
+    // Category of the CXF logging feature, the messages are logged when it is at debug level
+    private static final String MESSAGE_LOGGER = "org.apache.cxf.services";
+
+    private final String carrierName;
+    private final List<T> ports;
+    private final BlockingQueue<T> idlePorts;
+    private final Duration borrowTimeout;
+
+    SoapPortPool(String carrierName, List<T> ports, Duration borrowTimeout) {
+        this.carrierName = carrierName;
+        this.ports = List.copyOf(ports);
+        this.idlePorts = new ArrayBlockingQueue<>(ports.size(), false, ports);
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * Create the port proxies of a service, each with its own keep-alive conduit.
+     * @param carrierName The carrier named in the errors
+     * @param serviceInterface The service endpoint interface
+     * @param port The address and WSDL of the service
+     * @param properties The pool and HTTP settings
+     */
+    public static <T> SoapPortPool<T> create(String carrierName, Class<T> serviceInterface,
+                                             ChronopostSoapProperties.Port port, ChronopostSoapProperties properties) {
+        JaxWsProxyFactoryBean factory = new JaxWsProxyFactoryBean();
+        factory.setServiceClass(serviceInterface);
+        factory.setAddress(port.getAddress());
+        if (StringUtils.hasText(port.getWsdlLocation())) {
+            factory.setWsdlURL(port.getWsdlLocation());
+        }
+        if (LoggerFactory.getLogger(MESSAGE_LOGGER).isDebugEnabled()) {
+            LoggingFeature loggingFeature = new LoggingFeature();
+            loggingFeature.setPrettyLogging(true);
+            factory.getFeatures().add(loggingFeature);
+        }
+
+        HTTPClientPolicy clientPolicy = new HTTPClientPolicy();
+        clientPolicy.setConnectionTimeout(properties.getConnectTimeout().toMillis());
+        clientPolicy.setReceiveTimeout(properties.getReceiveTimeout().toMillis());
+        clientPolicy.setConnection(ConnectionType.KEEP_ALIVE);
+        clientPolicy.setAllowChunking(true);
+        clientPolicy.setChunkingThreshold(properties.getChunkingThreshold());
+
+        List<T> ports = new ArrayList<>(properties.getPoolSize());
+        for (int i = 0; i < properties.getPoolSize(); i++) {
+            T proxy = serviceInterface.cast(factory.create());
+            ((HTTPConduit) ClientProxy.getClient(proxy).getConduit()).setClient(clientPolicy);
+            ports.add(proxy);
+        }
+        return new SoapPortPool<>(carrierName, ports, properties.getBorrowTimeout());
+    }
+
+    /**
+     * Call the service with a free port proxy, waiting up to the borrow timeout for one.
+     * @param call The call, must not keep the proxy
+     * @return The result of the call
+     * @throws CarrierUnavailableException No proxy was freed in time
+     */
+    public <R> R call(Function<T, R> call) {
+        T port = borrow();
+        try {
+            return call.apply(port);
+        } finally {
+            idlePorts.offer(port);
+        }
+    }
+
+    public int size() {
+        return ports.size();
+    }
+
+    public int idle() {
+        return idlePorts.size();
+    }
+
+    @Override
+    public void close() {
+        ports.forEach(port -> ClientProxy.getClient(port).destroy());
+        idlePorts.clear();
+        log.debug("Closed {} {} port proxies", ports.size(), carrierName);
+    }
+
+    private T borrow() {
+        try {
+            T port = idlePorts.poll(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (port == null) {
+                throw new CarrierUnavailableException(carrierName, new TimeoutException(
+                        "no free port proxy within " + borrowTimeout + ", " + ports.size() + " calls in flight"));
+            }
+            return port;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CarrierUnavailableException(carrierName, e);
+        }
+    }
+}
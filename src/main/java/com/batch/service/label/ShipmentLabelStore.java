@@ -0,0 +1,250 @@
+package com.batch.service.label;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of the shipment labels on local disk. A label is written once under the SHA-256 of its
+ * content (blobs/&lt;2 first digits&gt;/&lt;digest&gt;) and referenced by tracking number (refs/&lt;tracking number&gt;,
+ * holding the digest), identical labels are stored once. Beyond the maximum size, the least recently used tracking
+ * numbers are dropped and their labels deleted once no longer referenced.
+ * Labels are hashed outside the lock, only publishing and eviction are serialized. The index is rebuilt from
+ * the refs at startup, least recently written first.
+ */
+@Slf4j
+public class ShipmentLabelStore {
+
+    // Tracking numbers are file names in refs
+    private static final Pattern TRACKING_NUMBER = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]{0,63}");
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{64}");
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    private final Path blobs;
+    private final Path refs;
+    private final Path tmp;
+    private final long maxSize;
+
+    // Access ordered, least recently used first
+    private final LinkedHashMap<String, StoredLabel> labels = new LinkedHashMap<>(256, 0.75f, true);
+    // Number of tracking numbers referencing each digest
+    private final Map<String, Integer> references = new HashMap<>();
+    private long size;
+
+    public ShipmentLabelStore(ShipmentLabelStoreProperties properties) {
+        this.blobs = properties.getDirectory().resolve("blobs");
+        this.refs = properties.getDirectory().resolve("refs");
+        this.tmp = properties.getDirectory().resolve("tmp");
+        this.maxSize = properties.getMaxSize().toBytes();
+        try {
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load the shipment label store " + properties.getDirectory(), e);
+        }
+    }
+
+    /**
+     * @return True if the tracking number can key a label
+     */
+    public static boolean isValidTrackingNumber(String trackingNumber) {
+        return trackingNumber != null && TRACKING_NUMBER.matcher(trackingNumber).matches();
+    }
+
+    /**
+     * Get the stored label of a tracking number, which becomes the most recently used.
+     * @param trackingNumber The tracking number
+     * @return The label, or empty if not stored
+     */
+    public synchronized Optional<StoredLabel> find(String trackingNumber) {
+        return Optional.ofNullable(labels.get(trackingNumber));
+    }
+
+    /**
+     * Create the file to write a label into before storing it, on the file system of the store.
+     * @return An empty temporary file, deleted at the next startup if not stored
+     */
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(tmp, "label-", ".tmp");
+    }
+
+    /**
+     * Store the label of a tracking number, in place of its previous label if any.
+     * @param trackingNumber The tracking number
+     * @param file The label, from {@link #createTempFile()}, moved into the store or deleted if already stored
+     * @return The stored label
+     * @throws IllegalArgumentException If the tracking number is not valid
+     */
+    public StoredLabel put(String trackingNumber, Path file) throws IOException {
+        if (!isValidTrackingNumber(trackingNumber)) {
+            throw new IllegalArgumentException("Invalid tracking number " + trackingNumber);
+        }
+        String digest = digest(file);
+        long fileSize = Files.size(file);
+        Path ref = createTempFile();
+        try {
+            Files.writeString(ref, digest);
+            synchronized (this) {
+                Path blob = blobPath(digest);
+                if (references.containsKey(digest)) {
+                    Files.delete(file);
+                } else {
+                    Files.createDirectories(blob.getParent());
+                    Files.move(file, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(ref, refs.resolve(trackingNumber), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+                StoredLabel label = new StoredLabel(trackingNumber, digest, blob, fileSize);
+                reference(label);
+                StoredLabel replaced = labels.put(trackingNumber, label);
+                if (replaced != null) {
+                    release(replaced);
+                }
+                evict(trackingNumber);
+                return label;
+            }
+        } finally {
+            Files.deleteIfExists(ref);
+        }
+    }
+
+    /**
+     * @return The size in bytes of the stored labels
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return The number of tracking numbers with a stored label
+     */
+    public synchronized int count() {
+        return labels.size();
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(blobs);
+        Files.createDirectories(refs);
+        Files.createDirectories(tmp);
+
+        // Labels and refs not stored before the last shutdown
+        try (Stream<Path> files = Files.list(tmp)) {
+            files.forEach(ShipmentLabelStore::deleteQuietly);
+        }
+
+        List<Path> refFiles;
+        try (Stream<Path> files = Files.list(refs)) {
+            refFiles = files.sorted(Comparator.comparing(ShipmentLabelStore::lastModifiedTime)).toList();
+        }
+        for (Path ref : refFiles) {
+            String trackingNumber = ref.getFileName().toString();
+            String digest = Files.readString(ref).strip();
+            Path blob = DIGEST.matcher(digest).matches() ? blobPath(digest) : null;
+            if (!isValidTrackingNumber(trackingNumber) || blob == null || !Files.isRegularFile(blob)) {
+                deleteQuietly(ref);
+                continue;
+            }
+            StoredLabel label = new StoredLabel(trackingNumber, digest, blob, Files.size(blob));
+            reference(label);
+            labels.put(trackingNumber, label);
+        }
+
+        // Labels whose ref was not written before the last shutdown
+        try (Stream<Path> files = Files.walk(blobs)) {
+            files.filter(Files::isRegularFile)
+                    .filter(blob -> !references.containsKey(blob.getFileName().toString()))
+                    .forEach(ShipmentLabelStore::deleteQuietly);
+        }
+
+        evict(null);
+        log.info("Loaded {} shipment labels from {}, {} bytes", labels.size(), refs.getParent(), size);
+    }
+
+    private void reference(StoredLabel label) {
+        if (references.merge(label.digest(), 1, Integer::sum) == 1) {
+            size += label.size();
+        }
+    }
+
+    private void release(StoredLabel label) {
+        if (references.computeIfPresent(label.digest(), (digest, count) -> count == 1 ? null : count - 1) == null) {
+            // Readers holding the file open keep reading it
+            deleteQuietly(label.path());
+            size -= label.size();
+        }
+    }
+
+    /**
+     * Drop the least recently used tracking numbers until the store fits in its maximum size.
+     * @param kept The tracking number never dropped, the one just stored
+     */
+    private void evict(String kept) {
+        Iterator<StoredLabel> leastRecentlyUsed = labels.values().iterator();
+        while (size > maxSize && leastRecentlyUsed.hasNext()) {
+            StoredLabel label = leastRecentlyUsed.next();
+            if (label.trackingNumber().equals(kept)) {
+                continue;
+            }
+            leastRecentlyUsed.remove();
+            deleteQuietly(refs.resolve(label.trackingNumber()));
+            release(label);
+            log.debug("Evicted label of {}, {} bytes stored", label.trackingNumber(), size);
+        }
+    }
+
+    private Path blobPath(String digest) {
+        return blobs.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    private static String digest(Path file) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(DIGEST_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                sha256.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private static long lastModifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.batch.service.label;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the on-disk shipment label store.
+ */
+@Data
+@ConfigurationProperties(prefix = "batch.shipment.label.store")
+public class ShipmentLabelStoreProperties {
+
+    /**
+     * Root of the store, created when missing and kept across restarts
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "shipment-labels");
+
+    /**
+     * Size of the stored labels above which the least recently used ones are evicted
+     */
+    private DataSize maxSize = DataSize.ofGigabytes(2);
+}
@@ -0,0 +1,13 @@
+package com.batch.service.label;
+
+import java.nio.file.Path;
+
+/**
+ * A label of the store.
+ * @param trackingNumber The tracking number of the shipment
+ * @param digest The SHA-256 of the label content, in hexadecimal
+ * @param path The label file, shared by the tracking numbers whose labels have the same content
+ * @param size The size of the label in bytes
+ */
+public record StoredLabel(String trackingNumber, String digest, Path path, long size) {
+}
@@ -0,0 +1,18 @@
+package com.batch;
+
+import org.springframework.boot.testcontainers.context.ImportTestcontainers;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+
+/**
+ * The local Mongo of the repository and job tests, imported with {@link ImportTestcontainers} and started once
+ * for all of them. Started as a single-node replica set: change streams and transactions need an oplog.
+ * Test classes share its database, each one clears the collections it reads in its setup.
+ */
+public interface MongoTestContainers {
+
+    @Container
+    @ServiceConnection
+    MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:7.0");
+}
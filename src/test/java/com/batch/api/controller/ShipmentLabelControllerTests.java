@@ -0,0 +1,275 @@
+package com.batch.api.controller;
+
+import com.batch.domain.exception.DomainErrorCodes;
+import com.batch.domain.model.Shipment;
+import com.batch.domain.service.ShipmentLabelService;
+import com.batch.repository.ShipmentRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.label.ShipmentLabelStore;
+import com.batch.service.label.ShipmentLabelStoreProperties;
+import com.batch.service.label.StoredLabel;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Serves labels of a store in a temporary directory, PDF documents generated with PDFBox.
+ * Downloads are answered by a stub exchange function in place of the carrier.
+ */
+class ShipmentLabelControllerTests {
+
+    @TempDir
+    private Path directory;
+
+    private ShipmentLabelStore store;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ShipmentLabelStoreProperties properties = new ShipmentLabelStoreProperties();
+        properties.setDirectory(directory);
+        store = new ShipmentLabelStore(properties);
+        // Opened by two failed calls
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .build());
+        // Unknown shipments: only stored labels are served
+        mockMvc = mockMvc(mock(ShipmentRepository.class), request -> Mono.error(new AssertionError("No download")));
+    }
+
+    private MockMvc mockMvc(ShipmentRepository shipmentRepository, ExchangeFunction carrier) {
+        ShipmentLabelController controller = new ShipmentLabelController(service(shipmentRepository, carrier));
+        ReflectionTestUtils.setField(controller, "mergeMaxLabels", 3);
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    private ShipmentLabelService service(ShipmentRepository shipmentRepository, ExchangeFunction carrier) {
+        ShipmentLabelService service = new ShipmentLabelService(shipmentRepository,
+                new CarrierCallGuard(circuitBreakerRegistry, RateLimiterRegistry.ofDefaults(),
+                        BulkheadRegistry.ofDefaults()),
+                store, WebClient.builder().exchangeFunction(carrier));
+        ReflectionTestUtils.setField(service, "downloadTimeout", Duration.ofMillis(200));
+        return service;
+    }
+
+    @Test
+    void labelIsServedWithItsDigestAsETag() throws Exception {
+        StoredLabel label = storeLabel("TN1", 1);
+        String etag = "\"" + label.digest() + "\"";
+
+        mockMvc.perform(get("/api/shipments/TN1/label"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_PDF))
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, label.size()))
+                .andExpect(content().bytes(Files.readAllBytes(label.path())));
+
+        mockMvc.perform(get("/api/shipments/TN1/label").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void byteRangeIsServed() throws Exception {
+        StoredLabel label = storeLabel("TN1", 1);
+        byte[] bytes = Files.readAllBytes(label.path());
+
+        mockMvc.perform(get("/api/shipments/TN1/label").header(HttpHeaders.RANGE, "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/" + bytes.length))
+                .andExpect(content().bytes(Arrays.copyOfRange(bytes, 10, 20)));
+
+        mockMvc.perform(get("/api/shipments/TN1/label").header(HttpHeaders.RANGE, "bytes=-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(bytes, bytes.length - 5, bytes.length)));
+
+        mockMvc.perform(get("/api/shipments/TN1/label")
+                        .header(HttpHeaders.RANGE, "bytes=10-19")
+                        .header(HttpHeaders.IF_RANGE, "\"previous\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(bytes));
+
+        mockMvc.perform(get("/api/shipments/TN1/label").header(HttpHeaders.RANGE, "bytes=" + bytes.length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + bytes.length));
+    }
+
+    @Test
+    void missingLabelsAreRejected() throws Exception {
+        mockMvc.perform(get("/api/shipments/TN.1/label"))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason(DomainErrorCodes.UNABLE_TO_GET_SHIPMENT_LABEL_INVALID_TRACKING_NUMBER));
+
+        mockMvc.perform(get("/api/shipments/TN1/label"))
+                .andExpect(status().isNotFound())
+                .andExpect(status().reason(DomainErrorCodes.NO_SHIPMENT_LABEL_FOR_THE_GIVEN_TRACKING_NUMBER));
+    }
+
+    @Test
+    void labelsAreMergedInOrder() throws Exception {
+        storeLabel("TN1", 1);
+        storeLabel("TN2", 2);
+
+        MvcResult result = mockMvc.perform(post("/api/shipments/labels/merge")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"TN2\", \"TN1\", \"TN2\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] printJob = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_PDF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (PDDocument merged = Loader.loadPDF(printJob)) {
+            assertThat(merged.getNumberOfPages()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void mergeOfTooManyLabelsIsRejected() throws Exception {
+        storeLabel("TN1", 1);
+
+        mockMvc.perform(post("/api/shipments/labels/merge")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"TN1\", \"TN1\", \"TN1\", \"TN1\"]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason(DomainErrorCodes.TOO_MANY_SHIPMENT_LABELS));
+    }
+
+    @Test
+    void missingLabelIsDownloadedAndStored() throws Exception {
+        byte[] pdf = Files.readAllBytes(storeLabel("TN0", 1).path());
+        MockMvc downloading = mockMvc(shipmentRepository("TN1"), request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PDF_VALUE)
+                .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(pdf)))
+                .build()));
+
+        downloading.perform(get("/api/shipments/TN1/label"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(pdf));
+
+        assertThat(store.find("TN1")).isPresent();
+    }
+
+    @Test
+    void labelOtherThanAPdfIsNotStored() throws Exception {
+        MockMvc downloading = mockMvc(shipmentRepository("TN1"), request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_HTML_VALUE)
+                .body("<html>Maintenance</html>")
+                .build()));
+
+        downloading.perform(get("/api/shipments/TN1/label"))
+                .andExpect(status().isNotFound());
+
+        assertThat(store.find("TN1")).isEmpty();
+    }
+
+    @Test
+    void labelEvictedBeforeItIsOpenedIsLookedUpAgain() throws Exception {
+        StoredLabel label = storeLabel("TN1", 1);
+        ShipmentLabelService service = service(mock(ShipmentRepository.class),
+                request -> Mono.error(new AssertionError("No download")));
+        AtomicInteger attempts = new AtomicInteger();
+
+        Optional<StoredLabel> opened = service.openLabel("TN1", stored -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw new NoSuchFileException(stored.path().toString());
+            }
+            return stored;
+        });
+
+        assertThat(opened).contains(label);
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void labelsMissingAtTheCarrierKeepItsCircuitClosed() throws Exception {
+        MockMvc downloading = mockMvc(shipmentRepository("TN1"),
+                request -> Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build()));
+
+        for (int i = 0; i < 3; i++) {
+            downloading.perform(get("/api/shipments/TN1/label"))
+                    .andExpect(status().isNotFound());
+        }
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("CARRIER-1");
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getMetrics().getNumberOfSuccessfulCalls()).isEqualTo(2);
+    }
+
+    @Test
+    void failedOrTimedOutDownloadIsUnavailable() throws Exception {
+        MockMvc failing = mockMvc(shipmentRepository("TN1"),
+                request -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()));
+        failing.perform(get("/api/shipments/TN1/label"))
+                .andExpect(status().isServiceUnavailable());
+
+        MockMvc silent = mockMvc(shipmentRepository("TN1"), request -> Mono.never());
+        silent.perform(get("/api/shipments/TN1/label"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    private static ShipmentRepository shipmentRepository(String trackingNumber) {
+        ShipmentRepository shipmentRepository = mock(ShipmentRepository.class);
+        when(shipmentRepository.findByTrackingNumber(trackingNumber)).thenReturn(Optional.of(Shipment.builder()
+                .trackingNumber(trackingNumber)
+                .carrierName("CARRIER-1")
+                .labelUrl("https://carrier.test/labels/" + trackingNumber)
+                .build()));
+        return shipmentRepository;
+    }
+
+    private StoredLabel storeLabel(String trackingNumber, int pages) throws IOException {
+        Path file = store.createTempFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                document.addPage(new PDPage());
+            }
+            document.save(file.toFile());
+        }
+        return store.put(trackingNumber, file);
+    }
+}
@@ -0,0 +1,225 @@
+package com.batch.domain.service;
+
+import com.batch.api.dto.BulkShipmentResult;
+import com.batch.api.dto.ShipmentRequest;
+import com.batch.domain.enumeration.ShipmentRequestViolation;
+import com.batch.domain.exception.DomainErrorCodes;
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingReservationResult;
+import com.batch.repository.BulkInsertResult;
+import com.batch.repository.ReactiveShipmentRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierReservationService;
+import com.batch.service.carrier.CarrierReservationServiceFactory;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Creates shipments in bulk with a stub carrier and a mocked repository, results checked per shipment request.
+ */
+class ShipmentCreationServiceTests {
+
+    private static final int MAX_CONCURRENT_RESERVATIONS = 4;
+    private static final int INSERT_BATCH_SIZE = 10;
+
+    private final List<List<Shipment>> insertedBulks = new CopyOnWriteArrayList<>();
+
+    @Test
+    void everyShipmentRequestGetsItsResult() {
+        StubReservationService carrier = new StubReservationService("STUB");
+        ShipmentCreationService service = newService(carrier, Set.of("duplicate"));
+
+        Map<String, BulkShipmentResult> results = create(service,
+                shipmentRequest("created", "STUB"),
+                shipmentRequest("unknown-carrier", "NONE"),
+                shipmentRequest("refused", "STUB"),
+                shipmentRequest("duplicate", "STUB"),
+                shipmentRequest("no-recipient", "STUB").toBuilder().toAddress(null).build());
+
+        assertThat(results.get("created").getErrorCode()).isNull();
+        assertThat(results.get("created").getReservation().getTrackingNumber()).isEqualTo("TN-created");
+        assertThat(results.get("unknown-carrier").getErrorCode()).isEqualTo(DomainErrorCodes.INVALID_CARRIER_ID);
+        assertThat(results.get("refused").getErrorCode()).isEqualTo(DomainErrorCodes.SHIPMENT_RESERVATION_FAILED);
+        assertThat(results.get("duplicate").getErrorCode()).isEqualTo(DomainErrorCodes.SHIPMENT_ALREADY_EXISTS);
+        assertThat(results.get("duplicate").getReservation().getTrackingNumber()).isEqualTo("TN-duplicate");
+        assertThat(results.get("no-recipient").getErrorCode())
+                .isEqualTo(DomainErrorCodes.SHIPMENT_INFORMATION_TO_ADDRESS_NOT_FOUND);
+        assertThat(results.get("no-recipient").getViolations()).containsExactly(ShipmentRequestViolation.TO_ADDRESS_MISSING);
+        assertThat(results.values()).extracting(BulkShipmentResult::getIndex).containsExactlyInAnyOrder(0L, 1L, 2L, 3L, 4L);
+        assertThat(carrier.calls()).isEqualTo(3);
+
+        assertThat(insertedBulks).singleElement().satisfies(bulk -> assertThat(bulk)
+                .allSatisfy(shipment -> {
+                    assertThat(shipment.getTrackingNumber()).isEqualTo("TN-" + shipment.getReference());
+                    assertThat(shipment.getNextCheckDate()).isNotNull();
+                    assertThat(shipment.getProcessingInProgress()).isFalse();
+                })
+                .extracting(Shipment::getReference)
+                .containsExactlyInAnyOrder("created", "duplicate"));
+    }
+
+    @Test
+    void reservationsAreBoundedAndSavedInBulks() {
+        StubReservationService carrier = new StubReservationService("STUB");
+        ShipmentCreationService service = newService(carrier, Set.of());
+
+        Map<String, BulkShipmentResult> results = create(service, IntStream.range(0, 45)
+                .mapToObj(i -> shipmentRequest("shipment-" + i, "STUB"))
+                .toArray(ShipmentRequest[]::new));
+
+        assertThat(results).hasSize(45);
+        assertThat(results.values()).allSatisfy(result -> assertThat(result.getErrorCode()).isNull());
+        assertThat(carrier.maxInFlight()).isLessThanOrEqualTo(MAX_CONCURRENT_RESERVATIONS);
+        assertThat(insertedBulks).allSatisfy(bulk -> assertThat(bulk).hasSizeLessThanOrEqualTo(INSERT_BATCH_SIZE));
+        assertThat(insertedBulks.stream().mapToInt(List::size).sum()).isEqualTo(45);
+    }
+
+    @Test
+    void reservationIsReturnedWhenTheBulkIsNotSaved() {
+        ReactiveShipmentRepository repository = mock(ReactiveShipmentRepository.class);
+        when(repository.insertShipments(anyList())).thenReturn(Mono.error(new IllegalStateException("Mongo down")));
+        ShipmentCreationService service = newService(repository, new StubReservationService("STUB"));
+
+        Map<String, BulkShipmentResult> results = create(service, shipmentRequest("created", "STUB"));
+
+        assertThat(results.get("created").getErrorCode()).isEqualTo(DomainErrorCodes.SHIPMENT_NOT_SAVED);
+        assertThat(results.get("created").getReservation().getTrackingNumber()).isEqualTo("TN-created");
+    }
+
+    @Test
+    void slowInsertDoesNotAbortTheBulk() {
+        ReactiveShipmentRepository repository = mock(ReactiveShipmentRepository.class);
+        AtomicInteger inserts = new AtomicInteger();
+        when(repository.insertShipments(anyList())).thenAnswer(invocation -> {
+            List<Shipment> shipments = invocation.getArgument(0);
+            Mono<BulkInsertResult> inserted = Mono.just(new BulkInsertResult(shipments.size(), Set.of(), Set.of()));
+            // The first bulk stalls while reservations keep completing and bulks time out behind it
+            return inserts.getAndIncrement() == 0 ? inserted.delayElement(Duration.ofMillis(500)) : inserted;
+        });
+        ShipmentCreationService service = newService(repository, new StubReservationService("STUB"));
+        ReflectionTestUtils.setField(service, "insertBatchSize", 50);
+        ReflectionTestUtils.setField(service, "insertMaxWait", Duration.ofMillis(1));
+
+        Map<String, BulkShipmentResult> results = create(service, IntStream.range(0, 200)
+                .mapToObj(i -> shipmentRequest("shipment-" + i, "STUB"))
+                .toArray(ShipmentRequest[]::new));
+
+        assertThat(results).hasSize(200);
+        assertThat(results.values()).allSatisfy(result -> assertThat(result.getErrorCode()).isNull());
+    }
+
+    private static Map<String, BulkShipmentResult> create(ShipmentCreationService service, ShipmentRequest... requests) {
+        return service.createShipments(Flux.just(requests))
+                .collectList()
+                .block(Duration.ofSeconds(10))
+                .stream()
+                .collect(Collectors.toMap(BulkShipmentResult::getReference, Function.identity()));
+    }
+
+    private ShipmentCreationService newService(StubReservationService carrier, Set<String> existingReferences) {
+        ReactiveShipmentRepository repository = mock(ReactiveShipmentRepository.class);
+        when(repository.insertShipments(anyList())).thenAnswer(invocation -> {
+            List<Shipment> shipments = invocation.getArgument(0);
+            insertedBulks.add(List.copyOf(shipments));
+            Set<Integer> duplicates = IntStream.range(0, shipments.size())
+                    .filter(i -> existingReferences.contains(shipments.get(i).getReference()))
+                    .boxed()
+                    .collect(Collectors.toSet());
+            return Mono.just(new BulkInsertResult(shipments.size(), duplicates, Set.of()));
+        });
+        return newService(repository, carrier);
+    }
+
+    private static ShipmentCreationService newService(ReactiveShipmentRepository repository,
+                                                      StubReservationService carrier) {
+        CarrierCallGuard callGuard = new CarrierCallGuard(
+                CircuitBreakerRegistry.ofDefaults(),
+                RateLimiterRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(MAX_CONCURRENT_RESERVATIONS).build()));
+        ShipmentCreationService service = new ShipmentCreationService(
+                new CarrierReservationServiceFactory(List.of(carrier)), callGuard, repository);
+        ReflectionTestUtils.setField(service, "maxConcurrentReservations", MAX_CONCURRENT_RESERVATIONS);
+        ReflectionTestUtils.setField(service, "insertBatchSize", INSERT_BATCH_SIZE);
+        ReflectionTestUtils.setField(service, "insertMaxWait", Duration.ofMillis(50));
+        return service;
+    }
+
+    private static ShipmentRequest shipmentRequest(String reference, String carrierName) {
+        return ShipmentRequest.builder()
+                .reference(reference)
+                .carrierName(carrierName)
+                .fromAddress(ShipmentRequest.Address.builder().name("Sender").country("FR").build())
+                .toAddress(ShipmentRequest.Address.builder().name("Recipient").country("DE").build())
+                .parcels(List.of(ShipmentRequest.Parcel.builder().build()))
+                .build();
+    }
+
+    /**
+     * Reserves every shipment but the "refused" one, after a short delay.
+     */
+    private static class StubReservationService implements CarrierReservationService {
+
+        private final String carrierName;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        StubReservationService(String carrierName) {
+            this.carrierName = carrierName;
+        }
+
+        @Override
+        public String getCarrierName() {
+            return carrierName;
+        }
+
+        @Override
+        public ShippingReservationResult reserve(ShipmentRequest shipmentRequest) {
+            calls.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            ShippingReservationResult reservation = new ShippingReservationResult();
+            if ("refused".equals(shipmentRequest.getReference())) {
+                reservation.setShipmentErrorMessage("Unknown postal code");
+            } else {
+                reservation.setTrackingNumber("TN-" + shipmentRequest.getReference());
+            }
+            return reservation;
+        }
+
+        int calls() {
+            return calls.get();
+        }
+
+        int maxInFlight() {
+            return maxInFlight.get();
+        }
+    }
+}
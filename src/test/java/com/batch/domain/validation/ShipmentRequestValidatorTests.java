@@ -0,0 +1,77 @@
+package com.batch.domain.validation;
+
+import com.batch.api.dto.ShipmentRequest;
+import com.batch.domain.enumeration.ShipmentRequestViolation;
+import com.batch.domain.exception.DomainErrorCodes;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Validates shipment requests built in memory, country codes against the ISO codes of the JDK.
+ */
+class ShipmentRequestValidatorTests {
+
+    @Test
+    void validRequestHasNoViolation() {
+        ShipmentRequest request = shipmentRequest("FR", "DE");
+
+        assertThat(ShipmentRequestValidator.validate(request)).isZero();
+        assertThat(request.validateShipmentContact()).isNull();
+    }
+
+    @Test
+    void everyViolationIsReported() {
+        ShipmentRequest noAddress = shipmentRequest("FR", "DE").toBuilder().fromAddress(null).toAddress(null).build();
+        ShipmentRequest badCountries = shipmentRequest("XX", "fr");
+
+        int missing = ShipmentRequestValidator.validate(noAddress);
+        int invalid = ShipmentRequestValidator.validate(badCountries);
+
+        assertThat(ShipmentRequestViolation.of(missing)).containsExactly(
+                ShipmentRequestViolation.FROM_ADDRESS_MISSING, ShipmentRequestViolation.TO_ADDRESS_MISSING);
+        assertThat(noAddress.validateShipmentContact()).isEqualTo(DomainErrorCodes.SHIPMENT_INFORMATION_FROM_ADDRESS_NOT_FOUND);
+        assertThat(ShipmentRequestViolation.of(invalid)).containsExactly(
+                ShipmentRequestViolation.FROM_COUNTRY_CODE_NOT_VALID, ShipmentRequestViolation.TO_COUNTRY_CODE_NOT_VALID);
+        assertThat(badCountries.validateShipmentContact()).isEqualTo(DomainErrorCodes.COUNTRY_CODE_NOT_VALID);
+    }
+
+    @Test
+    void senderCountryIsChecked() {
+        ShipmentRequest request = shipmentRequest("ZZ", "DE");
+
+        assertThat(ShipmentRequestValidator.validate(request))
+                .isEqualTo(ShipmentRequestViolation.FROM_COUNTRY_CODE_NOT_VALID.bit());
+        assertThat(request.validateShipmentContact()).isEqualTo(DomainErrorCodes.COUNTRY_CODE_NOT_VALID);
+    }
+
+    @Test
+    void countryCodesAreTheIsoCodes() {
+        Set<String> isoCountries = Locale.getISOCountries(Locale.IsoCountryCode.PART1_ALPHA2);
+
+        for (char first = 'A'; first <= 'Z'; first++) {
+            for (char second = 'A'; second <= 'Z'; second++) {
+                String country = "" + first + second;
+                assertThat(ShipmentRequestValidator.isValidCountryCode(country))
+                        .as(country)
+                        .isEqualTo(isoCountries.contains(country));
+            }
+        }
+        assertThat(ShipmentRequestValidator.isValidCountryCode(null)).isFalse();
+        assertThat(ShipmentRequestValidator.isValidCountryCode("")).isFalse();
+        assertThat(ShipmentRequestValidator.isValidCountryCode("fr")).isFalse();
+        assertThat(ShipmentRequestValidator.isValidCountryCode("FRA")).isFalse();
+        assertThat(ShipmentRequestValidator.isValidCountryCode("F@")).isFalse();
+    }
+
+    private static ShipmentRequest shipmentRequest(String fromCountry, String toCountry) {
+        return ShipmentRequest.builder()
+                .reference("REF")
+                .fromAddress(ShipmentRequest.Address.builder().name("Sender").country(fromCountry).build())
+                .toAddress(ShipmentRequest.Address.builder().name("Recipient").country(toCountry).build())
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.batch.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Schedules shipments in the delay queue of the change stream mode, against the system clock.
+ */
+class DueShipmentQueueTests {
+
+    private final DueShipmentQueue queue = new DueShipmentQueue(3, Duration.ofHours(1), Clock.systemDefaultZone());
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @Test
+    void rescheduledShipmentIsTakenOnceAtItsLatestDate() throws InterruptedException {
+        queue.schedule("a", now.minusMinutes(1));
+        queue.schedule("a", now.minusSeconds(1));
+        queue.schedule("b", now.plusMinutes(30));
+        queue.schedule("b", now.minusSeconds(2));
+
+        assertThat(queue.takeDue(10)).containsExactly("b", "a");
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void rescheduledShipmentKeepsASingleQueueEntry() throws InterruptedException {
+        IntStream.range(0, 1_000).forEach(i -> queue.schedule("a", now.plusMinutes(50).minusSeconds(i)));
+        queue.schedule("b", now.minusSeconds(1));
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.schedule("c", now.plusMinutes(10))).isTrue();
+        assertThat(queue.schedule("d", now.plusMinutes(10))).isFalse();
+        assertThat(queue.takeDue(10)).containsExactly("b");
+        assertThat(queue.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shipmentIsNotTakenBeforeItIsDue() throws InterruptedException {
+        queue.schedule("a", now.plusNanos(Duration.ofMillis(300).toNanos()));
+
+        long start = System.nanoTime();
+        assertThat(queue.takeDue(10)).containsExactly("a");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(200));
+    }
+
+    @Test
+    void dueShipmentScheduledWhileWaitingIsTaken() throws Exception {
+        CompletableFuture<List<String>> taken = new CompletableFuture<>();
+        Thread dispatcher = Thread.ofVirtual().start(() -> {
+            try {
+                taken.complete(queue.takeDue(10));
+            } catch (InterruptedException e) {
+                taken.completeExceptionally(e);
+            }
+        });
+        while (dispatcher.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+
+        // Due as soon as scheduled, as new shipments are
+        queue.schedule("a", now);
+
+        assertThat(taken.get(5, TimeUnit.SECONDS)).containsExactly("a");
+        assertThat(queue.size()).isZero();
+        // Nothing left behind counts toward the capacity
+        assertThat(IntStream.range(0, 3).mapToObj(i -> queue.schedule("s-" + i, now.plusMinutes(10))))
+                .containsOnly(true);
+    }
+
+    @Test
+    void dueShipmentsAreTakenByPage() throws InterruptedException {
+        DueShipmentQueue largeQueue = new DueShipmentQueue(100, Duration.ofHours(1), Clock.systemDefaultZone());
+        IntStream.range(0, 5).forEach(i -> largeQueue.schedule("s-" + i, now.minusMinutes(10 - i)));
+
+        List<String> firstPage = largeQueue.takeDue(3);
+        List<String> secondPage = largeQueue.takeDue(3);
+
+        assertThat(firstPage).containsExactly("s-0", "s-1", "s-2");
+        assertThat(secondPage).containsExactly("s-3", "s-4");
+    }
+
+    @Test
+    void shipmentsBeyondHorizonOrCapacityAreLeftToTheSweep() throws InterruptedException {
+        assertThat(queue.schedule("a", now.plusMinutes(10))).isTrue();
+        assertThat(queue.schedule("b", now.plusMinutes(20))).isTrue();
+        assertThat(queue.schedule("c", now.minusMinutes(1))).isTrue();
+        assertThat(queue.schedule("d", now)).isFalse();
+        // Rescheduled beyond the horizon, no longer queued
+        assertThat(queue.schedule("a", now.plusHours(2))).isFalse();
+        queue.remove("b");
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.schedule("d", now)).isTrue();
+        assertThat(queue.takeDue(10)).containsExactly("c", "d");
+        assertThat(queue.size()).isZero();
+    }
+}
@@ -0,0 +1,35 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+
+import java.time.LocalDateTime;
+
+/**
+ * Shipments due for a status update, as created and first scheduled, for the job and repository tests.
+ */
+public final class DueShipments {
+
+    private DueShipments() {
+    }
+
+    /**
+     * A shipment waiting for pickup, overdue by 5 minutes, never tracked nor retried.
+     * @param id The shipment id, its reference and tracking number are derived from it
+     * @param carrierName The carrier name
+     * @return The shipment builder, to adjust the shipment to a test
+     */
+    public static Shipment.ShipmentBuilder dueShipment(String id, String carrierName) {
+        LocalDateTime now = LocalDateTime.now();
+        return Shipment.builder()
+                .id(id)
+                .reference("REF-" + id)
+                .trackingNumber("TN-" + id)
+                .carrierName(carrierName)
+                .creationDate(now.minusDays(1))
+                .lastEventType(EventType.SHIPMENT_READY.name())
+                .processingInProgress(false)
+                .retryCount(0)
+                .nextCheckDate(now.minusMinutes(5));
+    }
+}
@@ -0,0 +1,175 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays the polling of a synthetic parcel population with the fixed and the event-aware policies.
+ */
+class NextCheckPolicySimulationTests {
+
+    private static final String CARRIER_NAME = "STUB";
+    private static final int PARCEL_COUNT = 2_000;
+    private static final Duration FIXED_DELAY = Duration.ofHours(2);
+
+    private static List<List<TimedEvent>> histories;
+
+    @BeforeAll
+    static void generateHistories() {
+        Random random = new Random(42);
+        histories = new ArrayList<>();
+        for (int i = 0; i < PARCEL_COUNT; i++) {
+            histories.add(syntheticHistory(random));
+        }
+    }
+
+    @Test
+    void eventAwarePolicyHalvesCarrierCalls() {
+        Simulation fixed = simulate(new FixedNextCheckPolicy(FIXED_DELAY));
+        Simulation eventAware = simulate(new EventAwareNextCheckPolicy(new NextCheckProperties(), seededRandom()));
+
+        assertThat(eventAware.calls()).isLessThanOrEqualTo(fixed.calls() / 2);
+        // Parcels in transit that keep moving are seen as fast as before
+        assertThat(eventAware.averageActiveDetectionLag())
+                .isLessThanOrEqualTo(fixed.averageActiveDetectionLag().plus(Duration.ofMinutes(10)));
+    }
+
+    @Test
+    void activeParcelsAreCheckedAsOftenAsWithTheFixedDelay() {
+        NextCheckPolicy policy = new EventAwareNextCheckPolicy(new NextCheckProperties(), seededRandom());
+
+        for (int i = 0; i < 1_000; i++) {
+            Duration delay = policy.nextCheckDelay(CARRIER_NAME, EventType.SHIPMENT_IN_PROGRESS, Duration.ofMinutes(i % 240));
+            assertThat(delay).isLessThanOrEqualTo(FIXED_DELAY.plus(FIXED_DELAY.dividedBy(10)));
+        }
+    }
+
+    @Test
+    void carrierOverridesAndJitterApply() {
+        NextCheckProperties properties = new NextCheckProperties();
+        properties.getCarriers().put("Chronopost", Map.of(EventType.SHIPMENT_READY, Duration.ofHours(4)));
+        properties.setJitter(0);
+        NextCheckPolicy policy = new EventAwareNextCheckPolicy(properties);
+
+        assertThat(policy.nextCheckDelay("CHRONOPOST", EventType.SHIPMENT_READY, Duration.ZERO)).isEqualTo(Duration.ofHours(4));
+        assertThat(policy.nextCheckDelay(CARRIER_NAME, EventType.SHIPMENT_READY, Duration.ZERO)).isEqualTo(Duration.ofHours(12));
+        assertThat(policy.nextCheckDelay(CARRIER_NAME, EventType.SHIPMENT_HANDLED, Duration.ofHours(40))).isEqualTo(Duration.ofHours(10));
+        assertThat(policy.nextCheckDelay(CARRIER_NAME, EventType.SHIPMENT_HANDLED, Duration.ofDays(5))).isEqualTo(Duration.ofHours(24));
+
+        properties.setJitter(0.1);
+        NextCheckPolicy jittered = new EventAwareNextCheckPolicy(properties, seededRandom());
+        List<Duration> delays = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            delays.add(jittered.nextCheckDelay(CARRIER_NAME, EventType.SHIPMENT_READY, Duration.ZERO));
+        }
+        assertThat(delays).allSatisfy(delay -> assertThat(delay).isBetween(Duration.ofMinutes(648), Duration.ofMinutes(792)));
+        assertThat(delays.stream().distinct().count()).isGreaterThan(50);
+    }
+
+    /**
+     * Poll every parcel from its first event until its delivery is seen, as the job would.
+     * An event is active when it follows an in transit event by less than the idle threshold,
+     * its detection lag is the time until the first poll that sees it.
+     */
+    private static Simulation simulate(NextCheckPolicy policy) {
+        Duration idleAfter = new NextCheckProperties().getIdleAfter();
+        long calls = 0;
+        long activeEvents = 0;
+        Duration totalActiveDetectionLag = Duration.ZERO;
+        for (List<TimedEvent> history : histories) {
+            List<Duration> pollTimes = new ArrayList<>();
+            Duration pollTime = Duration.ZERO;
+            while (true) {
+                calls++;
+                pollTimes.add(pollTime);
+                TimedEvent latest = latestEventAt(history, pollTime);
+                if (latest.eventType() == EventType.SHIPMENT_DELIVERED) {
+                    break;
+                }
+                pollTime = pollTime.plus(policy.nextCheckDelay(CARRIER_NAME, latest.eventType(), pollTime.minus(latest.time())));
+            }
+
+            for (int i = 1; i < history.size(); i++) {
+                TimedEvent previous = history.get(i - 1);
+                TimedEvent event = history.get(i);
+                if (previous.eventType() == EventType.SHIPMENT_IN_PROGRESS
+                        && event.time().minus(previous.time()).compareTo(idleAfter) <= 0) {
+                    activeEvents++;
+                    totalActiveDetectionLag = totalActiveDetectionLag.plus(firstPollAfter(pollTimes, event.time()).minus(event.time()));
+                }
+            }
+        }
+        return new Simulation(calls, totalActiveDetectionLag.dividedBy(activeEvents));
+    }
+
+    private static Duration firstPollAfter(List<Duration> pollTimes, Duration time) {
+        for (Duration pollTime : pollTimes) {
+            if (pollTime.compareTo(time) >= 0) {
+                return pollTime;
+            }
+        }
+        throw new IllegalStateException("Event never seen at " + time);
+    }
+
+    private static TimedEvent latestEventAt(List<TimedEvent> history, Duration time) {
+        TimedEvent latest = history.get(0);
+        for (TimedEvent event : history) {
+            if (event.time().compareTo(time) <= 0) {
+                latest = event;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * A label waiting for pickup, a pickup scan, a few hub scans and the delivery.
+     */
+    private static List<TimedEvent> syntheticHistory(Random random) {
+        List<TimedEvent> history = new ArrayList<>();
+        Duration time = Duration.ZERO;
+        history.add(new TimedEvent(EventType.SHIPMENT_READY, time));
+        time = time.plus(hoursBetween(random, 12, 72));
+        history.add(new TimedEvent(EventType.SHIPMENT_HANDLED, time));
+        time = time.plus(hoursBetween(random, 4, 24));
+        int hubScans = 2 + random.nextInt(4);
+        for (int i = 0; i < hubScans; i++) {
+            history.add(new TimedEvent(EventType.SHIPMENT_IN_PROGRESS, time));
+            time = time.plus(hoursBetween(random, 2, 24));
+        }
+        // Out for delivery, then delivered the same day
+        history.add(new TimedEvent(EventType.SHIPMENT_IN_PROGRESS, time));
+        time = time.plus(hoursBetween(random, 1, 6));
+        history.add(new TimedEvent(EventType.SHIPMENT_DELIVERED, time));
+        return history;
+    }
+
+    /**
+     * Same jitter draws on every run, the simulations run on a single thread.
+     */
+    private static Supplier<RandomGenerator> seededRandom() {
+        SplittableRandom random = new SplittableRandom(7);
+        return () -> random;
+    }
+
+    private static Duration hoursBetween(Random random, int minHours, int maxHours) {
+        return Duration.ofMinutes(minHours * 60L + random.nextInt((maxHours - minHours) * 60));
+    }
+
+    private record TimedEvent(EventType eventType, Duration time) {
+    }
+
+    private record Simulation(long calls, Duration averageActiveDetectionLag) {
+    }
+}
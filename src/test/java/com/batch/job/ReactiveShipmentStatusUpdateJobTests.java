@@ -0,0 +1,252 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingStatus;
+import com.batch.repository.BulkUpdateResult;
+import com.batch.repository.DueShipmentCursor;
+import com.batch.repository.ReactiveShipmentRepository;
+import com.batch.repository.ShipmentStateUpdate;
+import com.batch.repository.ShipmentStatusRunRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierTrackingService;
+import com.batch.service.carrier.FaultInjectingCarrierTrackingService;
+import com.batch.service.carrier.ReactiveCarrierTrackingService;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.batch.job.DueShipments.dueShipment;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the reactive job over an in-memory repository and stub carriers, blocking and non-blocking.
+ */
+class ReactiveShipmentStatusUpdateJobTests {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int WRITE_BATCH_SIZE = 40;
+
+    private final List<List<ShipmentStateUpdate>> writtenBulks = new CopyOnWriteArrayList<>();
+
+    @Test
+    void openCircuitDefersShipmentsWithoutSpendingRetries() {
+        FaultInjectingCarrierTrackingService flakyCarrier = new FaultInjectingCarrierTrackingService("FLAKY").failing(true);
+        FaultInjectingCarrierTrackingService healthyCarrier = new FaultInjectingCarrierTrackingService("HEALTHY");
+        List<Shipment> shipments = Stream.concat(
+                IntStream.range(0, 20).mapToObj(i -> dueShipment("flaky-" + i, "FLAKY").build()),
+                IntStream.range(0, 10).mapToObj(i -> dueShipment("healthy-" + i, "HEALTHY").build())
+        ).toList();
+        // One call in flight per carrier: the circuit sees the calls one after the other, as in the blocking job
+        ReactiveShipmentStatusUpdateJob job = newJob(inMemoryRepository(shipments), 1, flakyCarrier, healthyCarrier);
+
+        ShipmentStatusRunResult result = job.processShipmentStatusUpdates();
+
+        assertThat(result.processedShipments()).isEqualTo(30);
+        assertThat(flakyCarrier.calls()).isEqualTo(5);
+        assertThat(healthyCarrier.calls()).isEqualTo(10);
+
+        Map<String, ShipmentStateUpdate> updatesById = writtenUpdates().stream()
+                .collect(Collectors.toMap(ShipmentStateUpdate::id, Function.identity()));
+        assertThat(updatesById).hasSize(30);
+        List<ShipmentStateUpdate> flakyUpdates = updatesById.values().stream()
+                .filter(update -> update.id().startsWith("flaky-"))
+                .toList();
+        assertThat(flakyUpdates).filteredOn(update -> update.retryCount() == 1).hasSize(5);
+        assertThat(flakyUpdates).filteredOn(update -> update.retryCount() == 0)
+                .hasSize(15)
+                .allSatisfy(deferred -> {
+                    assertThat(deferred.statusChanged()).isFalse();
+                    assertThat(deferred.processingInProgress()).isFalse();
+                    assertThat(deferred.nextCheckDate())
+                            .isCloseTo(LocalDateTime.now().plusMinutes(5), within(1, ChronoUnit.MINUTES));
+                });
+        assertThat(updatesById.values()).filteredOn(update -> update.id().startsWith("healthy-"))
+                .allSatisfy(update -> {
+                    assertThat(update.statusChanged()).isTrue();
+                    assertThat(update.lastEventType()).isEqualTo(EventType.SHIPMENT_IN_PROGRESS.name());
+                });
+    }
+
+    @Test
+    void nonBlockingCarrierCallsAreBoundedByTheBulkheadSize() {
+        DelayedCarrierTrackingService carrier = new DelayedCarrierTrackingService("ASYNC", Duration.ofMillis(20));
+        List<Shipment> shipments = IntStream.range(0, 200)
+                .mapToObj(i -> dueShipment(String.format("async-%03d", i), "ASYNC").build())
+                .toList();
+        ReactiveShipmentStatusUpdateJob job = newJob(inMemoryRepository(shipments), 4, carrier);
+
+        ShipmentStatusRunResult result = job.processShipmentStatusUpdates();
+
+        assertThat(result.processedShipments()).isEqualTo(200);
+        assertThat(carrier.maxCallsInFlight.get()).isEqualTo(4);
+        assertThat(writtenBulks).allSatisfy(bulk -> assertThat(bulk).hasSizeLessThanOrEqualTo(WRITE_BATCH_SIZE));
+        assertThat(writtenUpdates()).hasSize(200)
+                .allSatisfy(update -> {
+                    assertThat(update.statusChanged()).isTrue();
+                    assertThat(update.processingInProgress()).isFalse();
+                    assertThat(update.retryCount()).isZero();
+                });
+    }
+
+    @Test
+    void checkpointFollowsTheWrittenPages() {
+        DelayedCarrierTrackingService slowCarrier = new DelayedCarrierTrackingService("SLOW", Duration.ofMillis(100));
+        DelayedCarrierTrackingService fastCarrier = new DelayedCarrierTrackingService("FAST", Duration.ofMillis(1));
+        // Every page has shipments of both carriers, the fast ones are written long before the slow ones
+        List<Shipment> shipments = IntStream.range(0, 200)
+                .mapToObj(i -> dueShipment(String.format("mixed-%03d", i), i % 2 == 0 ? "SLOW" : "FAST").build())
+                .toList();
+        ShipmentStatusRunLedger ledger = spy(new ShipmentStatusRunLedger(mock(ShipmentStatusRunRepository.class)));
+        List<String> checkpoints = new CopyOnWriteArrayList<>();
+        List<String> unwrittenAtCheckpoint = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            String lastShipmentId = invocation.<DueShipmentCursor>getArgument(1).id();
+            Set<String> writtenIds = writtenUpdates().stream().map(ShipmentStateUpdate::id).collect(Collectors.toSet());
+            shipments.stream()
+                    .map(Shipment::getId)
+                    .filter(id -> id.compareTo(lastShipmentId) <= 0 && !writtenIds.contains(id))
+                    .forEach(unwrittenAtCheckpoint::add);
+            checkpoints.add(lastShipmentId);
+            return invocation.callRealMethod();
+        }).when(ledger).checkpoint(any(), any(), anyLong(), any());
+        ReactiveShipmentStatusUpdateJob job = ShipmentStatusJobBuilder.withCarriers(slowCarrier, fastCarrier)
+                .ledger(ledger)
+                .pageSize(PAGE_SIZE)
+                .writeBatchSize(WRITE_BATCH_SIZE)
+                .buildReactive(inMemoryRepository(shipments));
+
+        ShipmentStatusRunResult result = job.processShipmentStatusUpdates();
+
+        assertThat(result.processedShipments()).isEqualTo(200);
+        assertThat(unwrittenAtCheckpoint).isEmpty();
+        assertThat(checkpoints).isSorted().last().isEqualTo("mixed-199");
+    }
+
+    private static ReactiveShipmentStatusUpdateJob newJob(
+            ReactiveShipmentRepository repository,
+            int maxConcurrentCalls,
+            CarrierTrackingService... carriers) {
+        return ShipmentStatusJobBuilder.withCarriers(carriers)
+                .carrierCallGuard(new CarrierCallGuard(
+                        CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                                .slidingWindowSize(10)
+                                .minimumNumberOfCalls(5)
+                                .failureRateThreshold(50)
+                                .waitDurationInOpenState(Duration.ofMinutes(1))
+                                .build()),
+                        RateLimiterRegistry.ofDefaults(),
+                        BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(maxConcurrentCalls).build())))
+                .pageSize(PAGE_SIZE)
+                .writeBatchSize(WRITE_BATCH_SIZE)
+                .buildReactive(repository);
+    }
+
+    private List<ShipmentStateUpdate> writtenUpdates() {
+        return writtenBulks.stream().flatMap(List::stream).toList();
+    }
+
+    private ReactiveShipmentRepository inMemoryRepository(List<Shipment> shipments) {
+        ReactiveShipmentRepository repository = mock(ReactiveShipmentRepository.class);
+        when(repository.releaseExpiredLeases(any())).thenReturn(Mono.just(0L));
+        when(repository.countShipmentsForStatusUpdate(any(), anyList())).thenReturn(Mono.just(0L));
+        when(repository.findDueShipmentsAfter(any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            DueShipmentCursor cursor = invocation.getArgument(0);
+            int limit = invocation.getArgument(3);
+            return Mono.fromSupplier(() -> shipments.stream()
+                    .filter(shipment -> cursor == null || shipment.getId().compareTo(cursor.id()) > 0)
+                    .limit(limit)
+                    .map(shipment -> new DueShipmentCursor(shipment.getNextCheckDate(), shipment.getId()))
+                    .toList());
+        });
+        when(repository.claimShipments(anyCollection(), any(), any(), any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            String leaseOwner = invocation.getArgument(2);
+            return Flux.fromStream(() -> shipments.stream()
+                    .filter(shipment -> ids.contains(shipment.getId()))
+                    .map(shipment -> shipment.toBuilder().processingInProgress(true).leaseOwner(leaseOwner).build()));
+        });
+        when(repository.updateShipmentStates(anyList())).thenAnswer(invocation -> {
+            List<ShipmentStateUpdate> updates = invocation.getArgument(0);
+            return Mono.fromSupplier(() -> {
+                writtenBulks.add(List.copyOf(updates));
+                return new BulkUpdateResult(updates.size(), updates.size(), 0);
+            });
+        });
+        return repository;
+    }
+
+    /**
+     * Non-blocking carrier answering after a timer, counting its calls in flight.
+     */
+    private static class DelayedCarrierTrackingService implements CarrierTrackingService, ReactiveCarrierTrackingService {
+
+        private final String carrierName;
+        private final Duration latency;
+        private final AtomicInteger callsInFlight = new AtomicInteger();
+        private final AtomicInteger maxCallsInFlight = new AtomicInteger();
+
+        DelayedCarrierTrackingService(String carrierName, Duration latency) {
+            this.carrierName = carrierName;
+            this.latency = latency;
+        }
+
+        @Override
+        public String getCarrierName() {
+            return carrierName;
+        }
+
+        @Override
+        public ShippingStatus getShippingStatus(String trackingNumber) {
+            throw new UnsupportedOperationException("Called from the reactive pipeline only");
+        }
+
+        @Override
+        public Mono<Map<String, ShippingStatus>> trackShippingStatuses(Collection<String> trackingNumbers) {
+            return Mono.delay(latency)
+                    .doOnSubscribe(subscription -> maxCallsInFlight.accumulateAndGet(callsInFlight.incrementAndGet(), Math::max))
+                    // Before the response reaches the pipeline, which may subscribe to the next call right away
+                    .doOnNext(tick -> callsInFlight.decrementAndGet())
+                    .map(tick -> trackingNumbers.stream().collect(Collectors.toMap(Function.identity(), this::status)));
+        }
+
+        private ShippingStatus status(String trackingNumber) {
+            return ShippingStatus.builder()
+                    .trackingNumber(trackingNumber)
+                    .events(List.of(ShippingStatus.ShippingEvent.builder()
+                            .eventType(EventType.SHIPMENT_IN_PROGRESS)
+                            .date(LocalDateTime.now().minusHours(1))
+                            .build()))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.batch.job;
+
+import com.batch.MongoTestContainers;
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentRepositoryCustom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.context.ImportTestcontainers;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Archives terminal shipments of a local Mongo in small batches.
+ */
+@DataMongoTest
+@ImportTestcontainers(MongoTestContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+class ShipmentArchivalJobTests {
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShipmentArchivalJob job;
+
+    @BeforeEach
+    void setUp() {
+        shipmentRepository.deleteAll();
+        mongoTemplate.dropCollection(ShipmentRepositoryCustom.ARCHIVE_COLLECTION);
+
+        meterRegistry = new SimpleMeterRegistry();
+        job = new ShipmentArchivalJob(shipmentRepository, new ShipmentArchiveMetrics(meterRegistry, shipmentRepository));
+        ReflectionTestUtils.setField(job, "minAge", Duration.ofDays(30));
+        ReflectionTestUtils.setField(job, "batchSize", 7);
+    }
+
+    @Test
+    void oldTerminalShipmentsAreMovedAndStillFound() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Shipment> shipments = new ArrayList<>();
+        IntStream.range(0, 40).forEach(i -> shipments.add(shipment("old-delivered-" + i, EventType.SHIPMENT_DELIVERED, now.minusDays(60))));
+        IntStream.range(0, 5).forEach(i -> shipments.add(shipment("old-unknown-" + i, EventType.UNKNOWN, now.minusDays(45))));
+        IntStream.range(0, 10).forEach(i -> shipments.add(shipment("recent-delivered-" + i, EventType.SHIPMENT_DELIVERED, now.minusDays(2))));
+        IntStream.range(0, 10).forEach(i -> shipments.add(shipment("old-in-transit-" + i, EventType.SHIPMENT_IN_PROGRESS, now.minusDays(60))));
+        shipmentRepository.saveAll(shipments);
+
+        assertThat(job.archiveTerminalShipments()).isEqualTo(45);
+
+        assertThat(shipmentRepository.count()).isEqualTo(20);
+        assertThat(mongoTemplate.count(new Query(), ShipmentRepositoryCustom.ARCHIVE_COLLECTION)).isEqualTo(45);
+        assertThat(shipmentRepository.findByTrackingNumber("TN-old-delivered-3"))
+                .hasValueSatisfying(shipment -> {
+                    assertThat(shipment.getReference()).isEqualTo("REF-old-delivered-3");
+                    assertThat(shipment.getLastEventType()).isEqualTo(EventType.SHIPMENT_DELIVERED.name());
+                });
+        assertThat(shipmentRepository.findByReference("REF-old-unknown-1")).isPresent();
+        assertThat(shipmentRepository.findByReference("REF-old-in-transit-1")).isPresent();
+        assertThat(meterRegistry.get("batch.shipment.archive.shipments").counter().count()).isEqualTo(45);
+
+        // Nothing left to archive
+        assertThat(job.archiveTerminalShipments()).isZero();
+    }
+
+    @Test
+    void shipmentsUpdatedAfterSelectionStayInPlace() {
+        LocalDateTime lastUpdateBefore = LocalDateTime.now().minusDays(30);
+        shipmentRepository.saveAll(List.of(
+                shipment("archived", EventType.SHIPMENT_DELIVERED, lastUpdateBefore.minusDays(1)),
+                shipment("updated", EventType.SHIPMENT_DELIVERED, lastUpdateBefore.minusDays(1))));
+        List<String> shipmentIds = shipmentRepository.findArchivableShipmentIds(
+                lastUpdateBefore, ShipmentStatusUpdateJob.TERMINAL_STATUSES, 10);
+
+        Shipment updated = shipmentRepository.findById("updated").orElseThrow();
+        updated.setLastUpdateDate(LocalDateTime.now());
+        shipmentRepository.save(updated);
+
+        assertThat(shipmentRepository.archiveShipments(shipmentIds, lastUpdateBefore, ShipmentStatusUpdateJob.TERMINAL_STATUSES))
+                .isEqualTo(1);
+        assertThat(shipmentRepository.findById("updated")).isPresent();
+        assertThat(shipmentRepository.findById("archived")).isEmpty();
+    }
+
+    private static Shipment shipment(String id, EventType lastEventType, LocalDateTime lastUpdateDate) {
+        return Shipment.builder()
+                .id(id)
+                .reference("REF-" + id)
+                .trackingNumber("TN-" + id)
+                .carrierName("STUB")
+                .creationDate(lastUpdateDate.minusDays(5))
+                .lastUpdateDate(lastUpdateDate)
+                .lastEventType(lastEventType.name())
+                .processingInProgress(false)
+                .retryCount(0)
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+package com.batch.job;
+
+import com.batch.MongoTestContainers;
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingStatus;
+import com.batch.repository.ReactiveShipmentRepository;
+import com.batch.repository.ReactiveShipmentRepositoryImpl;
+import com.batch.repository.ShipmentRepository;
+import com.batch.service.carrier.CarrierTrackingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.context.ImportTestcontainers;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dispatches shipments from the change stream of a local single-node replica set as they come due.
+ */
+@DataMongoTest
+@Import(ReactiveShipmentRepositoryImpl.class)
+@ImportTestcontainers(MongoTestContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+class ShipmentChangeStreamSchedulerTests {
+
+    private static final String CARRIER_NAME = "STUB";
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private ReactiveShipmentRepository reactiveShipmentRepository;
+
+    private final Map<String, LocalDateTime> callDates = new ConcurrentHashMap<>();
+    private ShipmentChangeStreamScheduler scheduler;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        shipmentRepository.deleteAll();
+        scheduler = new ShipmentChangeStreamScheduler(
+                reactiveShipmentRepository, newJob(), 1_000, Duration.ofHours(1), 50);
+        scheduler.start();
+
+        // The stream opens asynchronously: touch a probe shipment until its change is seen
+        Shipment probe = shipment("probe", LocalDateTime.now().plusMinutes(50));
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (scheduler.queuedShipments() == 0 && System.nanoTime() < deadline) {
+            shipmentRepository.save(probe.toBuilder().nextCheckDate(LocalDateTime.now().plusMinutes(50)).build());
+            Thread.sleep(200);
+        }
+        assertThat(scheduler.queuedShipments()).isEqualTo(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    void newShipmentIsProcessedWhenDueWithoutWaitingForARun() throws InterruptedException {
+        LocalDateTime dueDate = LocalDateTime.now().plusSeconds(2);
+        shipmentRepository.save(shipment("new", dueDate));
+        shipmentRepository.save(shipment("later", LocalDateTime.now().plusMinutes(30)));
+        shipmentRepository.save(shipment("next-week", LocalDateTime.now().plusDays(7)));
+
+        awaitQueued(queued -> queued == 2 && callDates.containsKey("TN-new"));
+
+        assertThat(callDates).containsOnlyKeys("TN-new");
+        assertThat(callDates.get("TN-new")).isAfterOrEqualTo(dueDate.minusNanos(Duration.ofMillis(50).toNanos()));
+        assertThat(shipmentRepository.findById("new")).hasValueSatisfying(shipment -> {
+            assertThat(shipment.getLastEventType()).isEqualTo(EventType.SHIPMENT_IN_PROGRESS.name());
+            assertThat(shipment.getProcessingInProgress()).isFalse();
+            // Rescheduled beyond the horizon by the job write, left to the sweep runs
+            assertThat(shipment.getNextCheckDate()).isAfter(LocalDateTime.now().plusHours(1));
+        });
+        assertThat(shipmentRepository.findById("later"))
+                .hasValueSatisfying(shipment -> assertThat(shipment.getLastEventType()).isEqualTo(EventType.SHIPMENT_READY.name()));
+    }
+
+    @Test
+    void shipmentNoLongerDueIsUnqueued() throws InterruptedException {
+        Shipment shipment = shipmentRepository.save(shipment("cancelled", LocalDateTime.now().plusSeconds(3)));
+        awaitQueued(queued -> queued == 2);
+
+        shipmentRepository.save(shipment.toBuilder().nextCheckDate(null).build());
+        awaitQueued(queued -> queued == 1);
+
+        Thread.sleep(Duration.ofSeconds(4));
+        assertThat(callDates).isEmpty();
+    }
+
+    private void awaitQueued(IntPredicate condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.test(scheduler.queuedShipments()) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(condition.test(scheduler.queuedShipments())).isTrue();
+    }
+
+    private ShipmentStatusUpdateJob newJob() {
+        CarrierTrackingService carrier = new CarrierTrackingService() {
+            @Override
+            public String getCarrierName() {
+                return CARRIER_NAME;
+            }
+
+            @Override
+            public ShippingStatus getShippingStatus(String trackingNumber) {
+                callDates.put(trackingNumber, LocalDateTime.now());
+                return ShippingStatus.builder()
+                        .trackingNumber(trackingNumber)
+                        .events(List.of(ShippingStatus.ShippingEvent.builder()
+                                .eventType(EventType.SHIPMENT_IN_PROGRESS)
+                                .date(LocalDateTime.now())
+                                .build()))
+                        .build();
+            }
+        };
+
+        return ShipmentStatusJobBuilder.withCarriers(carrier).build(shipmentRepository);
+    }
+
+    private static Shipment shipment(String id, LocalDateTime nextCheckDate) {
+        return Shipment.builder()
+                .id(id)
+                .trackingNumber("TN-" + id)
+                .carrierName(CARRIER_NAME)
+                .lastEventType(EventType.SHIPMENT_READY.name())
+                .processingInProgress(false)
+                .retryCount(0)
+                .nextCheckDate(nextCheckDate)
+                .build();
+    }
+}
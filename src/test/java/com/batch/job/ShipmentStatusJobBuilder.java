@@ -0,0 +1,143 @@
+package com.batch.job;
+
+import com.batch.repository.ReactiveShipmentRepository;
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentStatusRunRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierTrackingService;
+import com.batch.service.carrier.CarrierTrackingServiceFactory;
+import com.batch.service.carrier.ShippingStatusCache;
+import com.batch.service.carrier.ShippingStatusCacheProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Status update jobs wired as in the application context, with the defaults of application.properties,
+ * for the job tests. Each build gets its own meters, cache and lease owner.
+ */
+final class ShipmentStatusJobBuilder {
+
+    private final List<CarrierTrackingService> carriers;
+    private CarrierCallGuard carrierCallGuard = new CarrierCallGuard(
+            CircuitBreakerRegistry.ofDefaults(), RateLimiterRegistry.ofDefaults(), BulkheadRegistry.ofDefaults());
+    private ShipmentStatusRunLedger ledger;
+    private ShipmentStatusUpdateJob.ExecutionMode executionMode = ShipmentStatusUpdateJob.ExecutionMode.SEQUENTIAL;
+    private ShipmentStatusUpdateJob.FetchMode fetchMode = ShipmentStatusUpdateJob.FetchMode.KEYSET;
+    private int pageSize = 100;
+    private int writeBatchSize = 500;
+    private Duration writeMaxDelay = Duration.ofMillis(100);
+
+    private ShipmentStatusJobBuilder(List<CarrierTrackingService> carriers) {
+        this.carriers = carriers;
+    }
+
+    static ShipmentStatusJobBuilder withCarriers(CarrierTrackingService... carriers) {
+        return new ShipmentStatusJobBuilder(List.of(carriers));
+    }
+
+    /**
+     * A ledger recording runs in the given repository, taking over runs silent for 10 minutes.
+     */
+    static ShipmentStatusRunLedger enabledLedger(ShipmentStatusRunRepository shipmentStatusRunRepository) {
+        ShipmentStatusRunLedger ledger = new ShipmentStatusRunLedger(shipmentStatusRunRepository);
+        ReflectionTestUtils.setField(ledger, "enabled", true);
+        ReflectionTestUtils.setField(ledger, "staleAfter", Duration.ofMinutes(10));
+        return ledger;
+    }
+
+    ShipmentStatusJobBuilder carrierCallGuard(CarrierCallGuard carrierCallGuard) {
+        this.carrierCallGuard = carrierCallGuard;
+        return this;
+    }
+
+    /**
+     * Runs are not recorded unless a ledger is set.
+     */
+    ShipmentStatusJobBuilder ledger(ShipmentStatusRunLedger ledger) {
+        this.ledger = ledger;
+        return this;
+    }
+
+    ShipmentStatusJobBuilder executionMode(ShipmentStatusUpdateJob.ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+        return this;
+    }
+
+    ShipmentStatusJobBuilder fetchMode(ShipmentStatusUpdateJob.FetchMode fetchMode) {
+        this.fetchMode = fetchMode;
+        return this;
+    }
+
+    ShipmentStatusJobBuilder pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    ShipmentStatusJobBuilder writeBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+        return this;
+    }
+
+    ShipmentStatusJobBuilder writeMaxDelay(Duration writeMaxDelay) {
+        this.writeMaxDelay = writeMaxDelay;
+        return this;
+    }
+
+    ShipmentStatusUpdateJob build(ShipmentRepository shipmentRepository) {
+        ShipmentStatusMetrics metrics = new ShipmentStatusMetrics(new SimpleMeterRegistry());
+        ShipmentStatusUpdateJob job = new ShipmentStatusUpdateJob(
+                shipmentRepository,
+                transitions(metrics),
+                carrierCallGuard,
+                newCache(),
+                metrics,
+                ledger());
+        ReflectionTestUtils.setField(job, "executionMode", executionMode);
+        ReflectionTestUtils.setField(job, "fetchMode", fetchMode);
+        ReflectionTestUtils.setField(job, "pageSize", pageSize);
+        ReflectionTestUtils.setField(job, "leaseDurationMinutes", 10);
+        return job;
+    }
+
+    ReactiveShipmentStatusUpdateJob buildReactive(ReactiveShipmentRepository reactiveShipmentRepository) {
+        ShipmentStatusMetrics metrics = new ShipmentStatusMetrics(new SimpleMeterRegistry());
+        ReactiveShipmentStatusUpdateJob job = new ReactiveShipmentStatusUpdateJob(
+                reactiveShipmentRepository,
+                transitions(metrics),
+                carrierCallGuard,
+                newCache(),
+                metrics,
+                ledger());
+        ReflectionTestUtils.setField(job, "fetchMode", fetchMode);
+        ReflectionTestUtils.setField(job, "pageSize", pageSize);
+        ReflectionTestUtils.setField(job, "leaseDurationMinutes", 10);
+        ReflectionTestUtils.setField(job, "writeBatchSize", writeBatchSize);
+        ReflectionTestUtils.setField(job, "writeMaxDelay", writeMaxDelay);
+        return job;
+    }
+
+    private ShipmentStatusTransitions transitions(ShipmentStatusMetrics metrics) {
+        ShipmentStatusTransitions transitions = new ShipmentStatusTransitions(
+                new CarrierTrackingServiceFactory(carriers), metrics, new FixedNextCheckPolicy(Duration.ofHours(2)));
+        ReflectionTestUtils.setField(transitions, "maxRetry", 3);
+        ReflectionTestUtils.setField(transitions, "retryDelayHours", 2);
+        ReflectionTestUtils.setField(transitions, "carrierUnavailableDelay", Duration.ofMinutes(5));
+        return transitions;
+    }
+
+    private ShipmentStatusRunLedger ledger() {
+        return ledger != null ? ledger : new ShipmentStatusRunLedger(mock(ShipmentStatusRunRepository.class));
+    }
+
+    private static ShippingStatusCache newCache() {
+        return new ShippingStatusCache(new ShippingStatusCacheProperties(), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,135 @@
+package com.batch.job;
+
+import com.batch.MongoTestContainers;
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShipmentStatusRun;
+import com.batch.repository.DueShipmentCursor;
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentStatusRunRepository;
+import com.batch.service.carrier.FaultInjectingCarrierTrackingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.context.ImportTestcontainers;
+import org.springframework.data.domain.PageRequest;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.batch.job.DueShipments.dueShipment;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Records runs in the ledger and resumes an interrupted one against a local Mongo.
+ */
+@DataMongoTest
+@ImportTestcontainers(MongoTestContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+class ShipmentStatusRunLedgerTests {
+
+    private static final String CARRIER_NAME = "STUB";
+    private static final int PAGE_SIZE = 2;
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private ShipmentStatusRunRepository shipmentStatusRunRepository;
+
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    private FaultInjectingCarrierTrackingService carrier;
+    private ShipmentStatusRunLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        shipmentRepository.deleteAll();
+        shipmentStatusRunRepository.deleteAll();
+        carrier = new FaultInjectingCarrierTrackingService(CARRIER_NAME);
+        ledger = ShipmentStatusJobBuilder.enabledLedger(shipmentStatusRunRepository);
+    }
+
+    @Test
+    void restartedRunResumesAfterTheCheckpointOfTheInterruptedRun() {
+        List<Shipment> shipments = IntStream.range(0, 6)
+                .mapToObj(i -> dueShipment("s-" + i, CARRIER_NAME).nextCheckDate(now.minusMinutes(60 - i)).build())
+                .toList();
+        // Due after the bound of the interrupted run, left to the next run
+        Shipment dueSinceInterruption = dueShipment("s-6", CARRIER_NAME).nextCheckDate(now.minusMinutes(1)).build();
+        shipmentRepository.saveAll(shipments);
+        shipmentRepository.save(dueSinceInterruption);
+
+        Shipment lastCheckpointed = shipments.get(2);
+        ShipmentStatusRun interruptedRun = shipmentStatusRunRepository.save(ShipmentStatusRun.builder()
+                .id("interrupted-run")
+                .workerId("dead-worker")
+                .executionMode(ShipmentStatusUpdateJob.ExecutionMode.SEQUENTIAL.name())
+                .fetchMode(ShipmentStatusUpdateJob.FetchMode.KEYSET.name())
+                .status(ShipmentStatusRun.Status.RUNNING)
+                .startDate(now.minusMinutes(40))
+                .heartbeatDate(now.minusMinutes(30))
+                .nextCheckDateBefore(now.minusMinutes(10))
+                .checkpoint(new ShipmentStatusRun.Checkpoint(
+                        null, lastCheckpointed.getNextCheckDate(), lastCheckpointed.getId()))
+                .processedShipments(3)
+                .build());
+
+        ShipmentStatusRunResult result = ShipmentStatusJobBuilder.withCarriers(carrier)
+                .ledger(ledger)
+                .pageSize(PAGE_SIZE)
+                .build(shipmentRepository)
+                .processShipmentStatusUpdates();
+
+        assertThat(result.processedShipments()).isEqualTo(3);
+        assertThat(carrier.calls()).isEqualTo(3);
+        assertThat(shipmentRepository.findAll()).allSatisfy(shipment -> {
+            boolean resumed = shipment.getId().compareTo(lastCheckpointed.getId()) > 0
+                    && !shipment.getId().equals(dueSinceInterruption.getId());
+            assertThat(shipment.getLastEventType()).isEqualTo(resumed
+                    ? EventType.SHIPMENT_IN_PROGRESS.name()
+                    : EventType.SHIPMENT_READY.name());
+        });
+
+        List<ShipmentStatusRun> runs = ledger.recentRuns(10);
+        assertThat(runs).hasSize(2);
+        ShipmentStatusRun resumingRun = runs.getFirst();
+        assertThat(resumingRun.getStatus()).isEqualTo(ShipmentStatusRun.Status.COMPLETED);
+        assertThat(resumingRun.getResumedFrom()).isEqualTo(interruptedRun.getId());
+        assertThat(resumingRun.getNextCheckDateBefore()).isEqualTo(interruptedRun.getNextCheckDateBefore());
+        assertThat(resumingRun.getCheckpoint().getShipmentId()).isEqualTo(shipments.getLast().getId());
+        assertThat(resumingRun.getProcessedShipments()).isEqualTo(3);
+        assertThat(resumingRun.getRemainingShipments()).isEqualTo(4);
+        assertThat(resumingRun.getOutcomes()).containsEntry("updated", 3L);
+        assertThat(resumingRun.getCarrierTimings()).containsOnlyKeys(CARRIER_NAME);
+        assertThat(resumingRun.getCarrierTimings().get(CARRIER_NAME).getFailedCalls()).isZero();
+        assertThat(resumingRun.getEndDate()).isNotNull();
+
+        assertThat(runs.getLast().getStatus()).isEqualTo(ShipmentStatusRun.Status.INTERRUPTED);
+        assertThat(runs.getLast().getResumedBy()).isEqualTo(resumingRun.getId());
+    }
+
+    @Test
+    void runTakenOverNoLongerWritesItsEntry() {
+        ShipmentStatusRun run = ledger.start("slow-worker", ShipmentStatusUpdateJob.ExecutionMode.SEQUENTIAL,
+                ShipmentStatusUpdateJob.FetchMode.KEYSET, now);
+        shipmentStatusRunRepository.takeOverInterruptedRun(
+                ShipmentStatusUpdateJob.FetchMode.KEYSET.name(), now.plusMinutes(1), "other-run");
+
+        ShipmentStatusRunTally tally = new ShipmentStatusRunTally();
+        ledger.checkpoint(run, new DueShipmentCursor(now, "a"), 10, tally);
+        ledger.complete(run, 10, 0, tally);
+
+        assertThat(run.getStatus()).isEqualTo(ShipmentStatusRun.Status.INTERRUPTED);
+        assertThat(ledger.findRun(run.getId())).hasValueSatisfying(storedRun -> {
+            assertThat(storedRun.getStatus()).isEqualTo(ShipmentStatusRun.Status.INTERRUPTED);
+            assertThat(storedRun.getResumedBy()).isEqualTo("other-run");
+            assertThat(storedRun.getProcessedShipments()).isZero();
+            assertThat(storedRun.getCheckpoint()).isNull();
+        });
+        assertThat(shipmentStatusRunRepository.findAllByOrderByStartDateDesc(PageRequest.of(0, 10))).hasSize(1);
+    }
+}
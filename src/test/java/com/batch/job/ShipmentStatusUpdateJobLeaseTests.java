@@ -0,0 +1,146 @@
+package com.batch.job;
+
+import com.batch.MongoTestContainers;
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.domain.model.ShippingStatus;
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentStatusRunRepository;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.CarrierTrackingService;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.context.ImportTestcontainers;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.batch.job.DueShipments.dueShipment;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs several job instances, each with its own lease owner, against a local Mongo.
+ */
+@DataMongoTest
+@ImportTestcontainers(MongoTestContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+class ShipmentStatusUpdateJobLeaseTests {
+
+    private static final String CARRIER_NAME = "STUB";
+    private static final int SHIPMENT_COUNT = 2_000;
+    private static final int WORKER_COUNT = 4;
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private ShipmentStatusRunRepository shipmentStatusRunRepository;
+
+    private CountingCarrierTrackingService carrier;
+
+    @BeforeEach
+    void setUp() {
+        shipmentRepository.deleteAll();
+        shipmentStatusRunRepository.deleteAll();
+        carrier = new CountingCarrierTrackingService();
+    }
+
+    @Test
+    void concurrentWorkersPollEachDueShipmentExactlyOnce() throws Exception {
+        shipmentRepository.saveAll(IntStream.range(0, SHIPMENT_COUNT).mapToObj(this::dueShipment).toList());
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(WORKER_COUNT)) {
+            List<Future<?>> runs = IntStream.range(0, WORKER_COUNT)
+                    .mapToObj(i -> newWorker())
+                    .<Future<?>>map(worker -> executor.submit(worker::processShipmentStatusUpdates))
+                    .toList();
+            for (Future<?> run : runs) {
+                run.get(2, TimeUnit.MINUTES);
+            }
+        }
+
+        assertThat(carrier.callsByTrackingNumber).hasSize(SHIPMENT_COUNT);
+        assertThat(carrier.callsByTrackingNumber.values()).allSatisfy(calls -> assertThat(calls.get()).isEqualTo(1));
+        assertThat(shipmentRepository.findAll()).allSatisfy(shipment -> {
+            assertThat(shipment.getProcessingInProgress()).isFalse();
+            assertThat(shipment.getLeaseOwner()).isNull();
+            assertThat(shipment.getLeaseExpiresAt()).isNull();
+            assertThat(shipment.getLastEventType()).isEqualTo(EventType.SHIPMENT_IN_PROGRESS.name());
+            assertThat(shipment.getNextCheckDate()).isAfter(LocalDateTime.now());
+        });
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedAndLiveLeaseIsLeftAlone() {
+        Shipment abandoned = dueShipment("s-0", CARRIER_NAME)
+                .processingInProgress(true)
+                .leaseOwner("dead-worker")
+                .leaseExpiresAt(LocalDateTime.now().minusMinutes(1))
+                .build();
+        Shipment leased = dueShipment("s-1", CARRIER_NAME)
+                .processingInProgress(true)
+                .leaseOwner("live-worker")
+                .leaseExpiresAt(LocalDateTime.now().plusMinutes(10))
+                .build();
+        shipmentRepository.saveAll(List.of(abandoned, leased));
+
+        newWorker().processShipmentStatusUpdates();
+
+        assertThat(carrier.callsByTrackingNumber).containsOnlyKeys(abandoned.getTrackingNumber());
+        assertThat(shipmentRepository.findByTrackingNumber(leased.getTrackingNumber()))
+                .hasValueSatisfying(shipment -> assertThat(shipment.getLeaseOwner()).isEqualTo("live-worker"));
+    }
+
+    private ShipmentStatusUpdateJob newWorker() {
+        return ShipmentStatusJobBuilder.withCarriers(carrier)
+                .carrierCallGuard(new CarrierCallGuard(
+                        CircuitBreakerRegistry.ofDefaults(),
+                        RateLimiterRegistry.ofDefaults(),
+                        BulkheadRegistry.of(BulkheadConfig.custom()
+                                .maxConcurrentCalls(10)
+                                .maxWaitDuration(Duration.ofMinutes(1))
+                                .build())))
+                .ledger(ShipmentStatusJobBuilder.enabledLedger(shipmentStatusRunRepository))
+                .executionMode(ShipmentStatusUpdateJob.ExecutionMode.PARALLEL)
+                .pageSize(50)
+                .build(shipmentRepository);
+    }
+
+    private static class CountingCarrierTrackingService implements CarrierTrackingService {
+
+        private final Map<String, AtomicInteger> callsByTrackingNumber = new ConcurrentHashMap<>();
+
+        @Override
+        public String getCarrierName() {
+            return CARRIER_NAME;
+        }
+
+        @Override
+        public ShippingStatus getShippingStatus(String trackingNumber) {
+            callsByTrackingNumber.computeIfAbsent(trackingNumber, key -> new AtomicInteger()).incrementAndGet();
+            return ShippingStatus.builder()
+                    .trackingNumber(trackingNumber)
+                    .events(List.of(ShippingStatus.ShippingEvent.builder()
+                            .eventType(EventType.SHIPMENT_IN_PROGRESS)
+                            .date(LocalDateTime.now())
+                            .build()))
+                    .build();
+        }
+    }
+}
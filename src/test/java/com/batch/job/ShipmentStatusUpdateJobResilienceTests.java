@@ -0,0 +1,157 @@
+package com.batch.job;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.repository.BulkUpdateResult;
+import com.batch.repository.DueShipmentCursor;
+import com.batch.repository.ShipmentRepository;
+import com.batch.repository.ShipmentStateUpdate;
+import com.batch.service.carrier.CarrierCallGuard;
+import com.batch.service.carrier.FaultInjectingCarrierTrackingService;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.batch.job.DueShipments.dueShipment;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the job against a failing and a healthy stub carrier, one tracking call per shipment.
+ */
+class ShipmentStatusUpdateJobResilienceTests {
+
+    private static final int FLAKY_SHIPMENTS = 20;
+    private static final int HEALTHY_SHIPMENTS = 10;
+    private static final int MINIMUM_NUMBER_OF_CALLS = 5;
+
+    private final List<ShipmentStateUpdate> writtenUpdates = new CopyOnWriteArrayList<>();
+    private FaultInjectingCarrierTrackingService flakyCarrier;
+    private FaultInjectingCarrierTrackingService healthyCarrier;
+    private ShipmentStatusUpdateJob job;
+
+    @BeforeEach
+    void setUp() {
+        flakyCarrier = new FaultInjectingCarrierTrackingService("FLAKY").failing(true);
+        healthyCarrier = new FaultInjectingCarrierTrackingService("HEALTHY");
+
+        List<Shipment> shipments = Stream.concat(
+                IntStream.range(0, FLAKY_SHIPMENTS).mapToObj(i -> dueShipment("flaky-" + i, "FLAKY").build()),
+                IntStream.range(0, HEALTHY_SHIPMENTS).mapToObj(i -> dueShipment("healthy-" + i, "HEALTHY").build())
+        ).toList();
+        job = ShipmentStatusJobBuilder.withCarriers(flakyCarrier, healthyCarrier)
+                .carrierCallGuard(new CarrierCallGuard(
+                        CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                                .slidingWindowSize(10)
+                                .minimumNumberOfCalls(MINIMUM_NUMBER_OF_CALLS)
+                                .failureRateThreshold(50)
+                                .waitDurationInOpenState(Duration.ofMinutes(1))
+                                .build()),
+                        RateLimiterRegistry.ofDefaults(),
+                        BulkheadRegistry.ofDefaults()))
+                .build(inMemoryRepository(shipments));
+    }
+
+    @Test
+    void openCircuitDefersShipmentsWithoutSpendingRetries() {
+        ShipmentStatusRunResult result = job.processShipmentStatusUpdates();
+
+        assertThat(result.processedShipments()).isEqualTo(FLAKY_SHIPMENTS + HEALTHY_SHIPMENTS);
+        // The circuit opens once the minimum number of calls failed, the carrier is not called after that
+        assertThat(flakyCarrier.calls()).isEqualTo(MINIMUM_NUMBER_OF_CALLS);
+        assertThat(healthyCarrier.calls()).isEqualTo(HEALTHY_SHIPMENTS);
+
+        Map<String, ShipmentStateUpdate> updatesById = writtenUpdates.stream()
+                .collect(Collectors.toMap(ShipmentStateUpdate::id, Function.identity()));
+        assertThat(updatesById).hasSize(FLAKY_SHIPMENTS + HEALTHY_SHIPMENTS);
+
+        List<ShipmentStateUpdate> flakyUpdates = updatesById.values().stream()
+                .filter(update -> update.id().startsWith("flaky-"))
+                .toList();
+        assertThat(flakyUpdates).filteredOn(update -> update.retryCount() == 1).hasSize(MINIMUM_NUMBER_OF_CALLS);
+        assertThat(flakyUpdates).filteredOn(update -> update.retryCount() == 0)
+                .hasSize(FLAKY_SHIPMENTS - MINIMUM_NUMBER_OF_CALLS)
+                .allSatisfy(deferred -> {
+                    assertThat(deferred.statusChanged()).isFalse();
+                    assertThat(deferred.processingInProgress()).isFalse();
+                    assertThat(deferred.nextCheckDate())
+                            .isCloseTo(LocalDateTime.now().plusMinutes(5), within(1, ChronoUnit.MINUTES));
+                });
+
+        assertThat(updatesById.values()).filteredOn(update -> update.id().startsWith("healthy-"))
+                .allSatisfy(update -> {
+                    assertThat(update.statusChanged()).isTrue();
+                    assertThat(update.lastEventType()).isEqualTo(EventType.SHIPMENT_IN_PROGRESS.name());
+                });
+    }
+
+    @Test
+    void slowCarrierHoldsParallelChunksBackInsteadOfDeferringThem() {
+        FaultInjectingCarrierTrackingService slowCarrier =
+                new FaultInjectingCarrierTrackingService("SLOW").latency(Duration.ofMillis(50));
+        List<Shipment> shipments = IntStream.range(0, 40).mapToObj(i -> dueShipment("slow-" + i, "SLOW").build()).toList();
+        // One shipment per chunk, 40 chunks for 4 call slots, each call far longer than the bulkhead wait
+        ShipmentStatusUpdateJob parallelJob = ShipmentStatusJobBuilder.withCarriers(slowCarrier)
+                .carrierCallGuard(new CarrierCallGuard(
+                        CircuitBreakerRegistry.ofDefaults(),
+                        RateLimiterRegistry.ofDefaults(),
+                        BulkheadRegistry.of(BulkheadConfig.custom()
+                                .maxConcurrentCalls(4)
+                                .maxWaitDuration(Duration.ofMillis(10))
+                                .build())))
+                .executionMode(ShipmentStatusUpdateJob.ExecutionMode.PARALLEL)
+                .build(inMemoryRepository(shipments));
+
+        ShipmentStatusRunResult result = parallelJob.processShipmentStatusUpdates();
+
+        assertThat(result.processedShipments()).isEqualTo(40);
+        assertThat(slowCarrier.calls()).isEqualTo(40);
+        assertThat(writtenUpdates).hasSize(40)
+                .allSatisfy(update -> assertThat(update.statusChanged()).isTrue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ShipmentRepository inMemoryRepository(List<Shipment> shipments) {
+        ShipmentRepository shipmentRepository = mock(ShipmentRepository.class);
+        when(shipmentRepository.findDueShipmentsAfter(any(), any(), any(), anyInt())).thenAnswer(invocation ->
+                invocation.getArgument(0) == null
+                        ? shipments.stream().map(s -> new DueShipmentCursor(s.getNextCheckDate(), s.getId())).toList()
+                        : List.of());
+        when(shipmentRepository.claimShipments(anyCollection(), any(), any(), any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            String leaseOwner = invocation.getArgument(2);
+            return shipments.stream()
+                    .filter(shipment -> ids.contains(shipment.getId()))
+                    .map(shipment -> shipment.toBuilder().processingInProgress(true).leaseOwner(leaseOwner).build())
+                    .toList();
+        });
+        when(shipmentRepository.updateShipmentStates(anyList())).thenAnswer(invocation -> {
+            List<ShipmentStateUpdate> updates = invocation.getArgument(0);
+            writtenUpdates.addAll(updates);
+            return new BulkUpdateResult(updates.size(), updates.size(), 0);
+        });
+        return shipmentRepository;
+    }
+}
@@ -0,0 +1,97 @@
+package com.batch.repository;
+
+import com.batch.MongoTestContainers;
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.batch.job.DueShipments;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.context.ImportTestcontainers;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Claims and writes shipments through the reactive driver against a local Mongo.
+ */
+@DataMongoTest
+@Import(ReactiveShipmentRepositoryImpl.class)
+@ImportTestcontainers(MongoTestContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+class ReactiveShipmentRepositoryTests {
+
+    private static final List<String> TERMINAL_STATUSES = List.of(
+            EventType.SHIPMENT_DELIVERED.name(), EventType.UNKNOWN.name());
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private ReactiveShipmentRepository reactiveShipmentRepository;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void setUp() {
+        shipmentRepository.deleteAll();
+        shipmentRepository.saveAll(List.of(
+                dueShipment("a", 30), dueShipment("b", 20), dueShipment("c", 10),
+                dueShipment("delivered", 40).toBuilder().lastEventType(EventType.SHIPMENT_DELIVERED.name()).build()));
+    }
+
+    @Test
+    void dueShipmentsAreReadInKeysetOrder() {
+        List<DueShipmentCursor> firstPage = reactiveShipmentRepository
+                .findDueShipmentsAfter(null, now, TERMINAL_STATUSES, 2).block();
+        List<DueShipmentCursor> secondPage = reactiveShipmentRepository
+                .findDueShipmentsAfter(firstPage.getLast(), now, TERMINAL_STATUSES, 2).block();
+
+        assertThat(firstPage).extracting(DueShipmentCursor::id).containsExactly("a", "b");
+        assertThat(secondPage).extracting(DueShipmentCursor::id).containsExactly("c");
+        assertThat(reactiveShipmentRepository.countShipmentsForStatusUpdate(now, TERMINAL_STATUSES).block()).isEqualTo(3);
+    }
+
+    @Test
+    void claimedShipmentsAreWrittenBackFencedOnTheLease() {
+        List<String> ids = List.of("a", "b");
+        List<Shipment> claimed = reactiveShipmentRepository
+                .claimShipments(ids, now, "worker-1", now.plusMinutes(10)).collectList().block();
+        List<Shipment> claimedAgain = reactiveShipmentRepository
+                .claimShipments(ids, now, "worker-2", now.plusMinutes(10)).collectList().block();
+
+        assertThat(claimed).extracting(Shipment::getId).containsExactlyInAnyOrder("a", "b");
+        assertThat(claimedAgain).isEmpty();
+
+        Shipment delivered = claimed.getFirst();
+        delivered.setLastEventType(EventType.SHIPMENT_DELIVERED.name());
+        delivered.setNextCheckDate(null);
+        delivered.setProcessingInProgress(false);
+        ShipmentStateUpdate lostLease = ShipmentStateUpdate.unchanged(
+                claimed.getLast().toBuilder().processingInProgress(false).leaseOwner("worker-2").build());
+
+        BulkUpdateResult result = reactiveShipmentRepository
+                .updateShipmentStates(List.of(ShipmentStateUpdate.of(delivered), lostLease)).block();
+
+        assertThat(result).isEqualTo(new BulkUpdateResult(2, 1, 1));
+        assertThat(shipmentRepository.findById(delivered.getId())).hasValueSatisfying(shipment -> {
+            assertThat(shipment.getLastEventType()).isEqualTo(EventType.SHIPMENT_DELIVERED.name());
+            assertThat(shipment.getProcessingInProgress()).isFalse();
+            assertThat(shipment.getLeaseOwner()).isNull();
+        });
+        assertThat(shipmentRepository.findById(claimed.getLast().getId()))
+                .hasValueSatisfying(shipment -> assertThat(shipment.getLeaseOwner()).isEqualTo("worker-1"));
+    }
+
+    private Shipment dueShipment(String id, int overdueMinutes) {
+        return DueShipments.dueShipment(id, "STUB")
+                .lastEventType(EventType.SHIPMENT_IN_PROGRESS.name())
+                .nextCheckDate(now.minusMinutes(overdueMinutes))
+                .build();
+    }
+}
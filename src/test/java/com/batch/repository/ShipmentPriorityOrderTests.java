@@ -0,0 +1,111 @@
+package com.batch.repository;
+
+import com.batch.MongoTestContainers;
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.context.ImportTestcontainers;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reads due shipments in priority order against a local Mongo.
+ */
+@DataMongoTest(properties = "spring.data.mongodb.auto-index-creation=true")
+@Import(ShipmentPriorityCallback.class)
+@ImportTestcontainers(MongoTestContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+class ShipmentPriorityOrderTests {
+
+    private static final List<String> TERMINAL_STATUSES = List.of(
+            EventType.SHIPMENT_DELIVERED.name(), EventType.UNKNOWN.name());
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void setUp() {
+        shipmentRepository.deleteAll();
+    }
+
+    @Test
+    void dueShipmentsAreReadByPriorityThenMostOverdue() {
+        shipmentRepository.saveAll(List.of(
+                shipment("retried-twice", EventType.SHIPMENT_IN_PROGRESS, 2, 3, 300),
+                shipment("ready", EventType.SHIPMENT_READY, 0, 3, 600),
+                shipment("in-transit-recent", EventType.SHIPMENT_IN_PROGRESS, 0, 3, 10),
+                shipment("in-transit-overdue", EventType.SHIPMENT_IN_PROGRESS, 0, 3, 120),
+                // Created today, not ahead of older shipments in transit
+                shipment("in-transit-created-today", EventType.SHIPMENT_IN_PROGRESS, 0, 0, 5),
+                shipment("new", null, 0, 0, 5),
+                shipment("handled", EventType.SHIPMENT_HANDLED, 0, 3, 60),
+                shipment("delivered", EventType.SHIPMENT_DELIVERED, 0, 3, 60)));
+        // Written before priorities existed
+        shipmentRepository.save(shipment("legacy", EventType.SHIPMENT_IN_PROGRESS, 0, 3, 900));
+        mongoTemplate.getCollection("shipment_requests").updateOne(
+                new Document("_id", "legacy"), new Document("$unset", new Document("processingPriority", "")));
+
+        List<String> ids = new ArrayList<>();
+        DueShipmentCursor cursor = null;
+        List<DueShipmentCursor> batch;
+        do {
+            batch = shipmentRepository.findPrioritizedDueShipmentsAfter(cursor, now, TERMINAL_STATUSES, 2);
+            batch.forEach(key -> ids.add(key.id()));
+            cursor = batch.isEmpty() ? null : batch.getLast();
+        } while (batch.size() == 2);
+
+        assertThat(ids).containsExactly(
+                "in-transit-overdue", "in-transit-recent", "in-transit-created-today", "handled",
+                "retried-twice", "new", "ready", "legacy");
+    }
+
+    @Test
+    void priorityOrderIsReadFromTheIndexWithoutSorting() {
+        Query query = ShipmentRepositoryCustomImpl.prioritizedDueShipmentsQuery(
+                new DueShipmentCursor(30, now.minusHours(1), "a"), now, TERMINAL_STATUSES, 100);
+
+        QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(Shipment.class);
+        Document explain = mongoTemplate.getCollection("shipment_requests")
+                .find(queryMapper.getMappedObject(query.getQueryObject(), entity))
+                .projection(queryMapper.getMappedFields(query.getFieldsObject(), entity))
+                .sort(queryMapper.getMappedSort(query.getSortObject(), entity))
+                .limit(100)
+                .explain();
+
+        String winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertThat(winningPlan).contains("prioritized_due_shipments_open_idx").doesNotContain("\"SORT\"");
+    }
+
+    private Shipment shipment(String id, EventType lastEventType, int retryCount, int ageInDays, int overdueMinutes) {
+        return Shipment.builder()
+                .id(id)
+                .trackingNumber("TN-" + id)
+                .carrierName("STUB")
+                .creationDate(now.minusDays(ageInDays))
+                .lastEventType(lastEventType == null ? null : lastEventType.name())
+                .processingInProgress(false)
+                .retryCount(retryCount)
+                .nextCheckDate(now.minusMinutes(overdueMinutes))
+                .build();
+    }
+}
@@ -0,0 +1,305 @@
+package com.batch.repository;
+
+import com.batch.MongoTestContainers;
+import com.batch.config.MongoIndexConfiguration;
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.Shipment;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.context.ImportTestcontainers;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Explains every query the repository sends to a local Mongo, on a collection where terminal shipments
+ * are the majority. Fails when a query scans the collection, sorts in memory or examines far more keys than it matches.
+ */
+@DataMongoTest
+@Import({ShipmentPriorityCallback.class, MongoIndexConfiguration.class})
+@ImportTestcontainers(MongoTestContainers.class)
+@Testcontainers(disabledWithoutDocker = true)
+class ShipmentRepositoryQueryPlanTests {
+
+    private static final List<String> TERMINAL_STATUSES = List.of(
+            EventType.SHIPMENT_DELIVERED.name(), EventType.UNKNOWN.name());
+    private static final Set<String> EXPLAINED_COMMANDS = Set.of("find", "aggregate", "count", "update", "delete");
+    private static final Set<String> COMMAND_METADATA = Set.of(
+            "$db", "lsid", "$clusterTime", "txnNumber", "$readPreference", "apiVersion", "ordered");
+    // A few keys per matched document, plus the keys of the $or branches stopping at the limit
+    private static final int MAX_KEYS_PER_MATCH = 4;
+    private static final int MAX_EXTRA_KEYS = 10;
+
+    private static final List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+    private static volatile boolean recording;
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexConfiguration mongoIndexConfiguration;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void setUp() {
+        recording = false;
+        commands.clear();
+        // Dropped rather than emptied, the indexes left by other test classes would compete in the plans
+        mongoTemplate.dropCollection(Shipment.class);
+        mongoTemplate.dropCollection(ShipmentRepositoryCustom.ARCHIVE_COLLECTION);
+        mongoIndexConfiguration.ensureShipmentIndexes();
+        seedShipments();
+    }
+
+    private void seedShipments() {
+        List<Shipment> shipments = new ArrayList<>();
+        IntStream.range(0, 2_000).forEach(i -> shipments.add(shipment("delivered-" + i, EventType.SHIPMENT_DELIVERED)
+                .nextCheckDate(null).build()));
+        IntStream.range(0, 50).forEach(i -> shipments.add(shipment("unknown-" + i, EventType.UNKNOWN)
+                .nextCheckDate(null).retryCount(3).build()));
+        IntStream.range(0, 500).forEach(i -> shipments.add(shipment("due-" + i, EventType.SHIPMENT_IN_PROGRESS)
+                .nextCheckDate(now.minusMinutes(i)).build()));
+        IntStream.range(0, 300).forEach(i -> shipments.add(shipment("later-" + i, EventType.SHIPMENT_HANDLED)
+                .nextCheckDate(now.plusMinutes(i + 1)).build()));
+        IntStream.range(0, 100).forEach(i -> shipments.add(shipment("retried-" + i, EventType.SHIPMENT_READY)
+                .retryCount(1 + i % 2).nextCheckDate(now.plusHours(1)).lastUpdateDate(now.minusMinutes(i)).build()));
+        IntStream.range(0, 20).forEach(i -> shipments.add(shipment("expired-" + i, EventType.SHIPMENT_IN_PROGRESS)
+                .processingInProgress(true).leaseOwner("dead-worker").leaseExpiresAt(now.minusMinutes(1)).build()));
+        IntStream.range(0, 20).forEach(i -> shipments.add(shipment("leased-" + i, EventType.SHIPMENT_IN_PROGRESS)
+                .processingInProgress(true).leaseOwner("live-worker").leaseExpiresAt(now.plusMinutes(10)).build()));
+        shipmentRepository.saveAll(shipments);
+    }
+
+    @Test
+    void repositoryQueriesAreServedByIndexes() {
+        recording = true;
+
+        shipmentRepository.findByTrackingNumber("TN-due-10");
+        shipmentRepository.findByReference("REF-due-10");
+        shipmentRepository.findShipmentsForStatusUpdate(false, now, TERMINAL_STATUSES, PageRequest.of(0, 100));
+        shipmentRepository.findShipmentsByCarrierForProcessing("CARRIER-1", false, now, PageRequest.of(0, 100));
+        shipmentRepository.findPendingUpdateShipments(false, now, 2, PageRequest.of(0, 100));
+        shipmentRepository.countShipmentsForStatusUpdate(now, TERMINAL_STATUSES);
+
+        List<DueShipmentCursor> dueShipments = shipmentRepository.findDueShipmentsAfter(null, now, TERMINAL_STATUSES, 100);
+        shipmentRepository.findDueShipmentsAfter(dueShipments.getLast(), now, TERMINAL_STATUSES, 100);
+        List<DueShipmentCursor> prioritizedShipments =
+                shipmentRepository.findPrioritizedDueShipmentsAfter(null, now, TERMINAL_STATUSES, 100);
+        shipmentRepository.findPrioritizedDueShipmentsAfter(prioritizedShipments.getLast(), now, TERMINAL_STATUSES, 100);
+
+        shipmentRepository.releaseExpiredLeases(now);
+        List<Shipment> claimed = shipmentRepository.claimShipments(
+                dueShipments.stream().map(DueShipmentCursor::id).toList(), now, "worker", now.plusMinutes(10));
+        claimed.forEach(shipment -> {
+            shipment.setProcessingInProgress(false);
+            shipment.setNextCheckDate(now.plusHours(2));
+        });
+        shipmentRepository.updateShipmentStates(claimed.stream().map(ShipmentStateUpdate::unchanged).toList());
+
+        List<String> archivable = shipmentRepository.findArchivableShipmentIds(now.minusHours(12), TERMINAL_STATUSES, 100);
+        shipmentRepository.archiveShipments(archivable, now.minusHours(12), TERMINAL_STATUSES);
+        shipmentRepository.findByTrackingNumber("TN-" + archivable.getFirst());
+        shipmentRepository.findByReference("REF-" + archivable.getFirst());
+
+        recording = false;
+        assertThat(commands).extracting(BsonDocument::getFirstKey).contains("find", "aggregate", "update", "delete");
+
+        // Explain the commands against the documents they were sent on, the writes changed them
+        shipmentRepository.deleteAll();
+        seedShipments();
+
+        for (BsonDocument command : commands) {
+            for (BsonDocument explainable : singleStatements(command)) {
+                Document explain = mongoTemplate.getDb().runCommand(
+                        new Document("explain", explainable).append("verbosity", "executionStats"));
+
+                String winningPlans = winningPlans(explain).stream().map(Document::toJson).collect(Collectors.joining());
+                assertThat(winningPlans).as("plan of %s", explainable.toJson())
+                        .isNotEmpty()
+                        .doesNotContain("COLLSCAN")
+                        .doesNotContain("\"SORT\"");
+
+                long matched = matchedDocuments(explainable);
+                assertThat(maxKeysExamined(explain)).as("keys examined by %s", explainable.toJson())
+                        .isLessThanOrEqualTo(matched * MAX_KEYS_PER_MATCH + MAX_EXTRA_KEYS);
+            }
+        }
+    }
+
+    @Test
+    void replacedIndexesAreDropped() {
+        mongoTemplate.indexOps(Shipment.class).ensureIndex(new Index()
+                .on("lastEventType", Sort.Direction.ASC)
+                .on("lastUpdateDate", Sort.Direction.DESC)
+                .named("status_date_idx"));
+
+        mongoIndexConfiguration.ensureShipmentIndexes();
+
+        assertThat(mongoTemplate.indexOps(Shipment.class).getIndexInfo()).extracting(IndexInfo::getName)
+                .doesNotContain("status_date_idx", "carrier_status_idx", "creationDate")
+                .contains("due_shipments_open_idx", "prioritized_due_shipments_open_idx", "carrier_due_shipments_open_idx",
+                        "retried_shipments_idx", "leased_shipments_idx", "terminal_shipments_idx", "trackingNumber", "reference");
+        assertThat(mongoTemplate.indexOps(ShipmentRepositoryCustom.ARCHIVE_COLLECTION).getIndexInfo())
+                .extracting(IndexInfo::getName)
+                .contains("trackingNumber", "reference");
+    }
+
+    /**
+     * Explain supports a single statement per write command, split the bulk writes.
+     * Pipelines writing to a collection cannot be explained with execution stats, their $merge is left out.
+     */
+    private static List<BsonDocument> singleStatements(BsonDocument command) {
+        String commandName = command.getFirstKey();
+        if (commandName.equals("aggregate")) {
+            BsonArray pipeline = new BsonArray();
+            command.getArray("pipeline").stream()
+                    .filter(stage -> !stage.asDocument().containsKey("$merge"))
+                    .forEach(pipeline::add);
+            BsonDocument readOnly = command.clone();
+            readOnly.put("pipeline", pipeline);
+            return List.of(readOnly);
+        }
+        if (!commandName.equals("update") && !commandName.equals("delete")) {
+            return List.of(command);
+        }
+        String statementsField = commandName + "s";
+        List<BsonDocument> statements = new ArrayList<>();
+        for (BsonValue statement : command.getArray(statementsField)) {
+            statements.add(new BsonDocument(commandName, command.get(commandName))
+                    .append(statementsField, new BsonArray(List.of(statement))));
+        }
+        return statements;
+    }
+
+    /**
+     * How many documents the statement matches, bounded by its limit.
+     */
+    private long matchedDocuments(BsonDocument command) {
+        BsonDocument filter;
+        long limit = Long.MAX_VALUE;
+        switch (command.getFirstKey()) {
+            case "find" -> {
+                filter = command.getDocument("filter", new BsonDocument());
+                if (command.containsKey("limit")) {
+                    limit = command.getNumber("limit").longValue();
+                }
+            }
+            case "count" -> filter = command.getDocument("query", new BsonDocument());
+            case "aggregate" -> filter = command.getArray("pipeline").stream()
+                    .map(BsonValue::asDocument)
+                    .filter(stage -> stage.containsKey("$match"))
+                    .map(stage -> stage.getDocument("$match"))
+                    .findFirst()
+                    .orElseGet(BsonDocument::new);
+            case "update" -> {
+                BsonDocument statement = command.getArray("updates").get(0).asDocument();
+                filter = statement.getDocument("q");
+                if (!statement.getBoolean("multi", BsonBoolean.FALSE).getValue()) {
+                    limit = 1;
+                }
+            }
+            case "delete" -> {
+                BsonDocument statement = command.getArray("deletes").get(0).asDocument();
+                filter = statement.getDocument("q");
+                if (statement.getNumber("limit").intValue() == 1) {
+                    limit = 1;
+                }
+            }
+            default -> throw new IllegalArgumentException(command.getFirstKey());
+        }
+        String collection = command.getString(command.getFirstKey()).getValue();
+        return Math.min(mongoTemplate.getCollection(collection).countDocuments(filter), limit);
+    }
+
+    private static List<Document> winningPlans(Document explain) {
+        List<Document> plans = new ArrayList<>();
+        collect(explain, "winningPlan", plans);
+        return plans;
+    }
+
+    private static long maxKeysExamined(Document explain) {
+        List<Object> values = new ArrayList<>();
+        collect(explain, "totalKeysExamined", values);
+        return values.stream().mapToLong(value -> ((Number) value).longValue()).max().orElse(0);
+    }
+
+    /**
+     * Find the values of a field anywhere in the explain output, its layout differs for finds, aggregates and writes.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void collect(Object node, String field, List<T> values) {
+        if (node instanceof Document document) {
+            document.forEach((key, value) -> {
+                if (key.equals(field)) {
+                    values.add((T) value);
+                } else {
+                    collect(value, field, values);
+                }
+            });
+        } else if (node instanceof List<?> list) {
+            list.forEach(element -> collect(element, field, values));
+        }
+    }
+
+    private Shipment.ShipmentBuilder shipment(String id, EventType lastEventType) {
+        return Shipment.builder()
+                .id(id)
+                .reference("REF-" + id)
+                .trackingNumber("TN-" + id)
+                .carrierName("CARRIER-" + Math.floorMod(id.hashCode(), 3))
+                .creationDate(now.minusDays(3))
+                .lastUpdateDate(now.minusDays(1))
+                .lastEventType(lastEventType.name())
+                .processingInProgress(false)
+                .retryCount(0)
+                .nextCheckDate(now.minusMinutes(5));
+    }
+
+    @TestConfiguration
+    static class CommandRecordingConfiguration {
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandRecorder() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (recording && EXPLAINED_COMMANDS.contains(event.getCommandName())) {
+                        BsonDocument command = event.getCommand().clone();
+                        COMMAND_METADATA.forEach(command::remove);
+                        commands.add(command);
+                    }
+                }
+            });
+        }
+    }
+}
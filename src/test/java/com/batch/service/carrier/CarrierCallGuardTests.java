@@ -0,0 +1,133 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.model.ShippingStatus;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CarrierCallGuardTests {
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private FaultInjectingCarrierTrackingService flakyCarrier;
+    private FaultInjectingCarrierTrackingService healthyCarrier;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(10)
+                .minimumNumberOfCalls(5)
+                .failureRateThreshold(50)
+                .slowCallDurationThreshold(Duration.ofMillis(100))
+                .slowCallRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build());
+        flakyCarrier = new FaultInjectingCarrierTrackingService("FLAKY");
+        healthyCarrier = new FaultInjectingCarrierTrackingService("HEALTHY");
+    }
+
+    @Test
+    void failingCarrierOpensItsOwnCircuitOnly() {
+        CarrierCallGuard guard = newGuard(RateLimiterRegistry.ofDefaults(), BulkheadRegistry.ofDefaults());
+        flakyCarrier.failing(true);
+
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> track(guard, flakyCarrier)).isInstanceOf(IllegalStateException.class);
+        }
+        assertThatThrownBy(() -> track(guard, flakyCarrier))
+                .isInstanceOf(CarrierUnavailableException.class)
+                .hasFieldOrPropertyWithValue("carrierName", "FLAKY");
+
+        assertThat(flakyCarrier.calls()).isEqualTo(5);
+        assertThat(track(guard, healthyCarrier).getTrackingNumber()).isEqualTo("TN-1");
+        assertThat(circuitBreakerRegistry.circuitBreaker("HEALTHY").getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void slowCarrierOpensItsCircuit() {
+        CarrierCallGuard guard = newGuard(RateLimiterRegistry.ofDefaults(), BulkheadRegistry.ofDefaults());
+        flakyCarrier.latency(Duration.ofMillis(150));
+
+        for (int i = 0; i < 5; i++) {
+            track(guard, flakyCarrier);
+        }
+
+        assertThat(circuitBreakerRegistry.circuitBreaker("FLAKY").getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> track(guard, flakyCarrier)).isInstanceOf(CarrierUnavailableException.class);
+    }
+
+    @Test
+    void exhaustedQuotaIsRejectedWithoutCountingAsCarrierFailure() {
+        CarrierCallGuard guard = newGuard(
+                RateLimiterRegistry.of(RateLimiterConfig.custom()
+                        .limitForPeriod(2)
+                        .limitRefreshPeriod(Duration.ofMinutes(1))
+                        .timeoutDuration(Duration.ZERO)
+                        .build()),
+                BulkheadRegistry.ofDefaults());
+
+        track(guard, healthyCarrier);
+        track(guard, healthyCarrier);
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> track(guard, healthyCarrier)).isInstanceOf(CarrierUnavailableException.class);
+        }
+
+        assertThat(healthyCarrier.calls()).isEqualTo(2);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("HEALTHY");
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+    }
+
+    @Test
+    void fullBulkheadRejectsExtraConcurrentCalls() throws Exception {
+        CarrierCallGuard guard = newGuard(
+                RateLimiterRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom()
+                        .maxConcurrentCalls(1)
+                        .maxWaitDuration(Duration.ZERO)
+                        .build()));
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<?> blockingCall = executor.submit(() -> guard.execute("HEALTHY", () -> {
+                inFlight.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            inFlight.await();
+
+            assertThatThrownBy(() -> track(guard, healthyCarrier)).isInstanceOf(CarrierUnavailableException.class);
+            release.countDown();
+            blockingCall.get();
+        }
+
+        assertThat(track(guard, healthyCarrier).getTrackingNumber()).isEqualTo("TN-1");
+    }
+
+    private CarrierCallGuard newGuard(RateLimiterRegistry rateLimiterRegistry, BulkheadRegistry bulkheadRegistry) {
+        return new CarrierCallGuard(circuitBreakerRegistry, rateLimiterRegistry, bulkheadRegistry);
+    }
+
+    private static ShippingStatus track(CarrierCallGuard guard, CarrierTrackingService carrier) {
+        return guard.execute(carrier.getCarrierName(), () -> carrier.getShippingStatus("TN-1"));
+    }
+}
@@ -0,0 +1,156 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.ShippingStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Reads the Chronopost tracking response fixtures of src/test/resources/chronopost.
+ */
+class ChronopostTrackingResponseParserTests {
+
+    private final ChronopostTrackingResponseParser parser = new ChronopostTrackingResponseParser();
+
+    @Test
+    void everyEventIsKeptWithoutLastKnownEvent() throws IOException {
+        ShippingStatus status = parse("trackSkybillV2-delivered.xml", null);
+
+        assertThat(status.getTrackingNumber()).isEqualTo("XY100000002FR");
+        assertThat(status.getEvents()).hasSize(10);
+        assertThat(status.getLatestEvent()).hasValueSatisfying(event -> {
+            assertThat(event.getEventType()).isEqualTo(EventType.SHIPMENT_DELIVERED);
+            assertThat(event.getLabel()).isEqualTo("Livraison effectuée");
+            assertThat(event.getDate()).isEqualTo(localDate("2024-06-12T11:57:11+02:00"));
+        });
+        assertThat(status.getEvents())
+                .filteredOn(event -> event.getEventType() == EventType.SHIPMENT_READY)
+                .singleElement()
+                .satisfies(event -> assertThat(event.getDate()).isEqualTo(localDate("2024-06-10T18:02:11+02:00")));
+    }
+
+    @Test
+    void eventsNotAfterLastKnownEventAreSkipped() throws IOException {
+        ShippingStatus status = parse("trackSkybillV2-delivered.xml", localDate("2024-06-12T09:00:00+02:00"));
+
+        assertThat(status.getEvents())
+                .extracting(ShippingStatus.ShippingEvent::getEventType)
+                .containsExactly(EventType.SHIPMENT_DELIVERED, EventType.SHIPMENT_IN_PROGRESS);
+    }
+
+    @Test
+    void latestEventIsKeptWhenAlreadyKnown() throws IOException {
+        LocalDateTime lastKnownEventDate = localDate("2024-06-11T08:07:11+02:00");
+
+        ShippingStatus status = parse("trackSkybillV2-in-transit.xml", lastKnownEventDate);
+
+        assertThat(status.getEvents()).singleElement().satisfies(event -> {
+            assertThat(event.getDate()).isEqualTo(lastKnownEventDate);
+            assertThat(event.getEventType()).isEqualTo(EventType.SHIPMENT_IN_PROGRESS);
+            assertThat(event.getLabel()).isEqualTo("Tri effectué dans l'agence de distribution");
+        });
+    }
+
+    @Test
+    void latestEventIsPickedAcrossParcels() throws IOException {
+        ShippingStatus allEvents = parse("trackSkybillV2-multi-parcel.xml", null);
+        ShippingStatus latestOnly = parse("trackSkybillV2-multi-parcel.xml", LocalDateTime.MAX);
+
+        assertThat(allEvents.getEvents()).hasSize(241);
+        assertThat(latestOnly.getEvents()).singleElement()
+                .isEqualTo(allEvents.getLatestEvent().orElseThrow());
+    }
+
+    @Test
+    void carrierErrorIsRaised() {
+        assertThatThrownBy(() -> parse("trackSkybillV2-unknown-skybill.xml", null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Chronopost tracking error 3 for TN: Numero de colis inconnu");
+    }
+
+    @Test
+    void soapFaultIsRaised() {
+        String fault = """
+                <soap:Envelope xmlns:soap="http://schemas.xmlsoap.org/soap/envelope/">
+                    <soap:Body>
+                        <soap:Fault>
+                            <faultcode>soap:Server</faultcode>
+                            <faultstring>Service indisponible</faultstring>
+                        </soap:Fault>
+                    </soap:Body>
+                </soap:Envelope>
+                """;
+
+        assertThatThrownBy(() -> parser.parse(
+                new ByteArrayInputStream(fault.getBytes(StandardCharsets.UTF_8)), "TN", null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Chronopost tracking fault for TN: Service indisponible");
+    }
+
+    @Test
+    void invalidEventDateIsRaised() {
+        assertThatThrownBy(() -> parse("trackSkybillV2-bad-date.xml", null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Unreadable Chronopost tracking response for TN")
+                .hasCauseInstanceOf(DateTimeException.class);
+
+        String garbage = """
+                <soap:Envelope xmlns:soap="http://schemas.xmlsoap.org/soap/envelope/">
+                    <soap:Body>
+                        <return>
+                            <errorCode>0</errorCode>
+                            <listEventInfoComp>
+                                <events>
+                                    <code>TA</code>
+                                    <eventDate>lundi 10 juin</eventDate>
+                                </events>
+                            </listEventInfoComp>
+                        </return>
+                    </soap:Body>
+                </soap:Envelope>
+                """;
+        assertThatThrownBy(() -> parser.parse(
+                new ByteArrayInputStream(garbage.getBytes(StandardCharsets.UTF_8)), "TN", null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(DateTimeException.class);
+    }
+
+    @Test
+    void eventDatesAreReadInLocalTime() {
+        ZoneId zone = ZoneId.of("Europe/Paris");
+
+        assertThat(ChronopostTrackingResponseParser.eventDate("2024-06-10T18:02:11+02:00", zone))
+                .isEqualTo(LocalDateTime.of(2024, 6, 10, 18, 2, 11));
+        assertThat(ChronopostTrackingResponseParser.eventDate(" 2024-06-10T16:02:11.25Z ", zone))
+                .isEqualTo(LocalDateTime.of(2024, 6, 10, 18, 2, 11, 250_000_000));
+        assertThat(ChronopostTrackingResponseParser.eventDate("2024-12-31T23:30:00.000-05:00", zone))
+                .isEqualTo(LocalDateTime.of(2025, 1, 1, 5, 30));
+        assertThat(ChronopostTrackingResponseParser.eventDate("2024-06-10T18:02:11", zone))
+                .isEqualTo(LocalDateTime.of(2024, 6, 10, 18, 2, 11));
+        assertThat(ChronopostTrackingResponseParser.eventDate("2024-06-10T18:02+02:00", zone))
+                .isEqualTo(LocalDateTime.of(2024, 6, 10, 18, 2));
+        assertThat(ChronopostTrackingResponseParser.eventDate("", zone)).isNull();
+    }
+
+    private ShippingStatus parse(String fixture, LocalDateTime lastKnownEventDate) throws IOException {
+        try (InputStream response = getClass().getResourceAsStream("/chronopost/" + fixture)) {
+            String trackingNumber = fixture.contains("delivered") ? "XY100000002FR" : "TN";
+            return parser.parse(response, trackingNumber, lastKnownEventDate);
+        }
+    }
+
+    private static LocalDateTime localDate(String carrierDate) {
+        return OffsetDateTime.parse(carrierDate).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+}
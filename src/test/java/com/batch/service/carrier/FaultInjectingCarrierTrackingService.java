@@ -0,0 +1,65 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.ShippingStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stub carrier answering in-progress statuses, with injectable failures and latency.
+ */
+public class FaultInjectingCarrierTrackingService implements CarrierTrackingService {
+
+    private final String carrierName;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile boolean failing;
+    private volatile Duration latency = Duration.ZERO;
+
+    public FaultInjectingCarrierTrackingService(String carrierName) {
+        this.carrierName = carrierName;
+    }
+
+    public FaultInjectingCarrierTrackingService failing(boolean failing) {
+        this.failing = failing;
+        return this;
+    }
+
+    public FaultInjectingCarrierTrackingService latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+
+    @Override
+    public String getCarrierName() {
+        return carrierName;
+    }
+
+    @Override
+    public ShippingStatus getShippingStatus(String trackingNumber) {
+        calls.incrementAndGet();
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failing) {
+            throw new IllegalStateException("Injected failure for " + trackingNumber);
+        }
+        return ShippingStatus.builder()
+                .trackingNumber(trackingNumber)
+                .events(List.of(ShippingStatus.ShippingEvent.builder()
+                        .eventType(EventType.SHIPMENT_IN_PROGRESS)
+                        .date(LocalDateTime.now())
+                        .build()))
+                .build();
+    }
+}
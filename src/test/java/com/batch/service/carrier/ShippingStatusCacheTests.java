@@ -0,0 +1,104 @@
+package com.batch.service.carrier;
+
+import com.batch.domain.enumeration.EventType;
+import com.batch.domain.model.ShippingStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShippingStatusCacheTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShippingStatusCache cache;
+    private final List<Collection<String>> loads = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ShippingStatusCache(new ShippingStatusCacheProperties(), meterRegistry);
+        loads.clear();
+    }
+
+    @Test
+    void onlyMissingTrackingNumbersAreLoaded() {
+        assertThat(cache.getShippingStatuses("STUB", List.of("TN-1", "TN-2"), loader(EventType.SHIPMENT_IN_PROGRESS)))
+                .containsOnlyKeys("TN-1", "TN-2");
+        assertThat(cache.getShippingStatuses("STUB", List.of("TN-1", "TN-2", "TN-3"), loader(EventType.SHIPMENT_IN_PROGRESS)))
+                .containsOnlyKeys("TN-1", "TN-2", "TN-3");
+        // Same tracking number with another carrier
+        cache.getShippingStatuses("OTHER", List.of("TN-1"), loader(EventType.SHIPMENT_IN_PROGRESS));
+
+        assertThat(loads).containsExactly(List.of("TN-1", "TN-2"), List.of("TN-3"), List.of("TN-1"));
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "carrier.shipping.status").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "carrier.shipping.status").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(4);
+    }
+
+    @Test
+    void missingStatusesAndStatusesWithoutEventAreNotCached() {
+        Function<Collection<String>, Map<String, ShippingStatus>> loader = trackingNumbers -> {
+            loads.add(List.copyOf(trackingNumbers));
+            return Map.of("TN-1", ShippingStatus.builder().trackingNumber("TN-1").build());
+        };
+
+        assertThat(cache.getShippingStatuses("STUB", List.of("TN-1", "TN-2"), loader)).containsOnlyKeys("TN-1");
+        cache.getShippingStatuses("STUB", List.of("TN-1", "TN-2"), loader);
+
+        assertThat(loads).containsExactly(List.of("TN-1", "TN-2"), List.of("TN-1", "TN-2"));
+    }
+
+    @Test
+    void disabledCacheAlwaysLoads() {
+        ShippingStatusCacheProperties properties = new ShippingStatusCacheProperties();
+        properties.setEnabled(false);
+        ShippingStatusCache disabled = new ShippingStatusCache(properties, meterRegistry);
+
+        disabled.getShippingStatuses("STUB", List.of("TN-1"), loader(EventType.SHIPMENT_DELIVERED));
+        disabled.getShippingStatuses("STUB", List.of("TN-1"), loader(EventType.SHIPMENT_DELIVERED));
+
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    void inTransitStatusesExpireBeforeTerminalOnes() throws InterruptedException {
+        ShippingStatusCacheProperties properties = new ShippingStatusCacheProperties();
+        properties.getTtls().put(EventType.SHIPMENT_IN_PROGRESS, Duration.ofMillis(50));
+        ShippingStatusCache shortLived = new ShippingStatusCache(properties, meterRegistry);
+
+        shortLived.getShippingStatus("STUB", "TN-1", trackingNumber -> status(trackingNumber, EventType.SHIPMENT_IN_PROGRESS));
+        shortLived.getShippingStatus("STUB", "TN-2", trackingNumber -> status(trackingNumber, EventType.SHIPMENT_DELIVERED));
+        Thread.sleep(100);
+
+        assertThat(shortLived.getShippingStatus("STUB", "TN-1", trackingNumber -> null)).isEmpty();
+        assertThat(shortLived.getShippingStatus("STUB", "TN-2", trackingNumber -> null)).isPresent();
+    }
+
+    private Function<Collection<String>, Map<String, ShippingStatus>> loader(EventType eventType) {
+        return trackingNumbers -> {
+            loads.add(List.copyOf(trackingNumbers));
+            return trackingNumbers.stream().collect(Collectors.toMap(Function.identity(), trackingNumber -> status(trackingNumber, eventType)));
+        };
+    }
+
+    private static ShippingStatus status(String trackingNumber, EventType eventType) {
+        return ShippingStatus.builder()
+                .trackingNumber(trackingNumber)
+                .events(List.of(ShippingStatus.ShippingEvent.builder()
+                        .eventType(eventType)
+                        .date(LocalDateTime.now())
+                        .build()))
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.batch.service.carrier;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Lends the port proxies of a pool one call at a time, with plain objects standing for the proxies.
+ */
+class SoapPortPoolTests {
+
+    @Test
+    void portIsReturnedAfterAFailedCall() {
+        SoapPortPool<String> pool = new SoapPortPool<>("STUB", List.of("port-1"), Duration.ofMillis(50));
+
+        assertThatThrownBy(() -> pool.call(port -> {
+            throw new IllegalStateException("SOAP fault");
+        })).isInstanceOf(IllegalStateException.class);
+
+        String result = pool.call(port -> port + " called");
+        assertThat(result).isEqualTo("port-1 called");
+        assertThat(pool.idle()).isEqualTo(1);
+    }
+
+    @Test
+    void callsBeyondPoolSizeWaitThenGiveUp() throws Exception {
+        SoapPortPool<String> pool = new SoapPortPool<>("STUB", List.of("port-1"), Duration.ofMillis(100));
+        CountDownLatch borrowed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<String> inFlight = executor.submit(() -> pool.call(port -> {
+                borrowed.countDown();
+                awaitQuietly(release);
+                return port;
+            }));
+            borrowed.await();
+
+            assertThatThrownBy(() -> pool.call(port -> port))
+                    .isInstanceOf(CarrierUnavailableException.class)
+                    .hasFieldOrPropertyWithValue("carrierName", "STUB");
+
+            release.countDown();
+            assertThat(inFlight.get()).isEqualTo("port-1");
+        }
+        assertThat(pool.idle()).isEqualTo(pool.size());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
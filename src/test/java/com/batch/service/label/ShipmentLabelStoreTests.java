@@ -0,0 +1,128 @@
+package com.batch.service.label;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Stores labels in a temporary directory, with a maximum size of a few labels.
+ */
+class ShipmentLabelStoreTests {
+
+    private static final int LABEL_SIZE = 1000;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void identicalLabelsAreStoredOnce() throws IOException {
+        ShipmentLabelStore store = newStore(10 * LABEL_SIZE);
+
+        StoredLabel first = put(store, "TN1", 'a');
+        StoredLabel second = put(store, "TN2", 'a');
+
+        assertThat(second.path()).isEqualTo(first.path());
+        assertThat(second.digest()).isEqualTo(first.digest());
+        assertThat(store.count()).isEqualTo(2);
+        assertThat(store.size()).isEqualTo(LABEL_SIZE);
+        assertThat(Files.size(first.path())).isEqualTo(LABEL_SIZE);
+    }
+
+    @Test
+    void leastRecentlyUsedLabelsAreEvicted() throws IOException {
+        ShipmentLabelStore store = newStore(2 * LABEL_SIZE);
+        StoredLabel first = put(store, "TN1", 'a');
+        put(store, "TN2", 'b');
+        // TN2 becomes the least recently used
+        assertThat(store.find("TN1")).isPresent();
+
+        put(store, "TN3", 'c');
+
+        assertThat(store.find("TN2")).isEmpty();
+        assertThat(store.find("TN1")).isPresent();
+        assertThat(store.find("TN3")).isPresent();
+        assertThat(store.size()).isEqualTo(2 * LABEL_SIZE);
+        assertThat(first.path()).exists();
+        assertThat(directory.resolve("refs").resolve("TN2")).doesNotExist();
+    }
+
+    @Test
+    void sharedLabelIsKeptUntilNoLongerReferenced() throws IOException {
+        ShipmentLabelStore store = newStore(2 * LABEL_SIZE);
+        StoredLabel shared = put(store, "TN1", 'a');
+        put(store, "TN2", 'a');
+        put(store, "TN3", 'b');
+
+        put(store, "TN4", 'c');
+
+        assertThat(store.find("TN1")).isEmpty();
+        assertThat(store.find("TN2")).isEmpty();
+        assertThat(shared.path()).doesNotExist();
+        assertThat(store.size()).isEqualTo(2 * LABEL_SIZE);
+    }
+
+    @Test
+    void labelReplacedForATrackingNumberIsDeleted() throws IOException {
+        ShipmentLabelStore store = newStore(10 * LABEL_SIZE);
+        StoredLabel previous = put(store, "TN1", 'a');
+
+        StoredLabel current = put(store, "TN1", 'b');
+
+        assertThat(store.find("TN1")).contains(current);
+        assertThat(previous.path()).doesNotExist();
+        assertThat(store.size()).isEqualTo(LABEL_SIZE);
+    }
+
+    @Test
+    void storeIsReloadedAfterRestart() throws IOException {
+        ShipmentLabelStore store = newStore(10 * LABEL_SIZE);
+        StoredLabel label = put(store, "TN1", 'a');
+        put(store, "TN2", 'b');
+        Path interrupted = store.createTempFile();
+        // Reloaded in order of last write of their refs
+        Files.setLastModifiedTime(directory.resolve("refs").resolve("TN1"), FileTime.fromMillis(0));
+
+        ShipmentLabelStore restarted = newStore(LABEL_SIZE);
+
+        // Over the new maximum size: the oldest label is evicted
+        assertThat(restarted.find("TN1")).isEmpty();
+        assertThat(restarted.find("TN2")).isPresent();
+        assertThat(restarted.size()).isEqualTo(LABEL_SIZE);
+        assertThat(label.path()).doesNotExist();
+        assertThat(interrupted).doesNotExist();
+    }
+
+    @Test
+    void trackingNumbersAreFileNames() {
+        ShipmentLabelStore store = newStore(LABEL_SIZE);
+
+        assertThat(ShipmentLabelStore.isValidTrackingNumber("XY100000002FR")).isTrue();
+        assertThat(ShipmentLabelStore.isValidTrackingNumber("../TN1")).isFalse();
+        assertThat(ShipmentLabelStore.isValidTrackingNumber("")).isFalse();
+        assertThatThrownBy(() -> store.put("..", store.createTempFile()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ShipmentLabelStore newStore(long maxSize) {
+        ShipmentLabelStoreProperties properties = new ShipmentLabelStoreProperties();
+        properties.setDirectory(directory);
+        properties.setMaxSize(DataSize.ofBytes(maxSize));
+        return new ShipmentLabelStore(properties);
+    }
+
+    private static StoredLabel put(ShipmentLabelStore store, String trackingNumber, char content) throws IOException {
+        Path file = store.createTempFile();
+        Files.writeString(file, String.valueOf(content).repeat(LABEL_SIZE));
+        StoredLabel label = store.put(trackingNumber, file);
+        assertThat(file).doesNotExist();
+        return label;
+    }
+}